@@ -0,0 +1,69 @@
+/*
+ * Copyright 1999 - 2017 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.powersurgepub.psfiles;
+
+  import java.lang.ref.*;
+  import java.util.*;
+
+/**
+ A pool of attribute values shared between file specs. <p>
+
+ Many file specs typically name the same handful of backup, archive,
+ templates, scripts and HTML folders, and the same sync prefix. Passing
+ these values through the pool lets all the specs share a single copy of
+ each distinct value. <p>
+
+ The pool only holds weak references, so a value that is no longer used
+ by any file spec may be garbage collected, and will then drop out of the
+ pool.
+ */
+final class AttributePool {
+
+  private static final WeakHashMap<String, WeakReference<String>> pool
+      = new WeakHashMap<String, WeakReference<String>>();
+
+  private AttributePool() {
+    // No instances required
+  }
+
+  /**
+   Return the pooled copy of the given value, adding the value to the pool
+   if an equal value is not already present.
+
+   @param value The value to be pooled.
+
+   @return An equal value, shared with any other file specs using it.
+  */
+  static String intern(String value) {
+    if (value == null || value.length() == 0) {
+      return value;
+    }
+    synchronized (pool) {
+      WeakReference<String> ref = pool.get(value);
+      String pooled = null;
+      if (ref != null) {
+        pooled = ref.get();
+      }
+      if (pooled == null) {
+        pool.put(value, new WeakReference<String>(value));
+        pooled = value;
+      }
+      return pooled;
+    }
+  }
+
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright 1999 - 2017 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.powersurgepub.psfiles;
+
+/**
+ A compact, immutable set of named attribute values belonging to a file
+ spec. <p>
+
+ Names and values are held in a single array, alternating between the two,
+ with the names kept in case-insensitive order so that a value may be found
+ with a binary search. Only attributes having non-empty values are stored,
+ so a spec using only a few of its optional attributes carries only a few
+ entries. Names not recognized by this version of the code are kept along
+ with the rest, so they can be written back out unchanged. <p>
+
+ Since a store is never modified once built, the same store may safely be
+ shared between a file spec and any number of snapshots taken from it.
+ Each change produces a new store.
+ */
+final class AttributeStore {
+
+  static final AttributeStore EMPTY = new AttributeStore(new String[0]);
+
+  /** Names at even indices, each followed by its value. */
+  private final String[] entries;
+
+  private AttributeStore(String[] entries) {
+    this.entries = entries;
+  }
+
+  /**
+   Return the number of attributes stored.
+
+   @return The number of attributes.
+  */
+  int size() {
+    return entries.length / 2;
+  }
+
+  /**
+   Return the name of an attribute, given its position.
+
+   @param i The position of the attribute, in case-insensitive name order.
+
+   @return The name of the attribute.
+  */
+  String getName(int i) {
+    return entries[i * 2];
+  }
+
+  /**
+   Return the value of an attribute, given its position.
+
+   @param i The position of the attribute, in case-insensitive name order.
+
+   @return The value of the attribute.
+  */
+  String getValue(int i) {
+    return entries[(i * 2) + 1];
+  }
+
+  /**
+   Return the value of the named attribute.
+
+   @param name The name of the attribute, in any case.
+
+   @return The value of the attribute, or an empty string if the attribute
+           is not present.
+  */
+  String get(String name) {
+    int i = find(name);
+    if (i >= 0) {
+      return entries[(i * 2) + 1];
+    } else {
+      return "";
+    }
+  }
+
+  /**
+   Return a store with the named attribute set to the given value.
+
+   @param name  The name of the attribute.
+   @param value The new value. Null or empty values remove the attribute.
+
+   @return A store reflecting the change, or this store if nothing changed.
+  */
+  AttributeStore with(String name, String value) {
+    if (value == null || value.length() == 0) {
+      return without(name);
+    }
+    int i = find(name);
+    String[] newEntries;
+    if (i >= 0) {
+      if (value.equals(entries[(i * 2) + 1])) {
+        return this;
+      }
+      newEntries = entries.clone();
+      newEntries[(i * 2) + 1] = value;
+    } else {
+      int insertAt = (-(i + 1)) * 2;
+      newEntries = new String[entries.length + 2];
+      System.arraycopy(entries, 0, newEntries, 0, insertAt);
+      newEntries[insertAt] = name;
+      newEntries[insertAt + 1] = value;
+      System.arraycopy(entries, insertAt,
+          newEntries, insertAt + 2, entries.length - insertAt);
+    }
+    return new AttributeStore(newEntries);
+  }
+
+  /**
+   Return a store without the named attribute.
+
+   @param name The name of the attribute.
+
+   @return A store reflecting the change, or this store if the attribute
+           was not present.
+  */
+  AttributeStore without(String name) {
+    int i = find(name);
+    if (i < 0) {
+      return this;
+    }
+    if (entries.length == 2) {
+      return EMPTY;
+    }
+    int removeAt = i * 2;
+    String[] newEntries = new String[entries.length - 2];
+    System.arraycopy(entries, 0, newEntries, 0, removeAt);
+    System.arraycopy(entries, removeAt + 2,
+        newEntries, removeAt, entries.length - removeAt - 2);
+    return new AttributeStore(newEntries);
+  }
+
+  /**
+   Find the position of the named attribute.
+
+   @param name The name of the attribute.
+
+   @return The position of the attribute if found; otherwise, the
+           negative of one more than the position at which it would be
+           inserted.
+  */
+  private int find(String name) {
+    int low = 0;
+    int high = size() - 1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      int comparison = String.CASE_INSENSITIVE_ORDER.compare
+          (entries[mid * 2], name);
+      if (comparison < 0) {
+        low = mid + 1;
+      }
+      else
+      if (comparison > 0) {
+        high = mid - 1;
+      } else {
+        return mid;
+      }
+    }
+    return -(low + 1);
+  }
+
+}
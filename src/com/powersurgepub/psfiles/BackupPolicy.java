@@ -0,0 +1,271 @@
+/*
+ * Copyright 1999 - 2017 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.powersurgepub.psfiles;
+
+  import com.powersurgepub.psutils.*;
+  import java.io.*;
+  import java.text.*;
+  import java.util.*;
+
+/**
+ The user's preferences in terms of backups: how often backups are to be
+ made, and how many are to be kept. <p>
+
+ This class makes no use of Swing, so that tools without a user interface
+ may apply the same policy as the programs that have one. FilePrefs lets
+ the user view and change the policy, and asks the user whether a
+ suggested backup should be made.
+
+ @author Herb Bowie
+ */
+public class BackupPolicy {
+
+  public static final String BACKUP_FREQUENCY             = "backup-frequency";
+  public static final String OCCASIONAL_BACKUPS           = "occasional-backups";
+  public static final String MANUAL_BACKUPS               = "manual-backups";
+  public static final String AUTOMATIC_BACKUPS            = "automatic-backups";
+
+  public static final String BACKUPS_TO_KEEP              = "backups-to-keep";
+
+  public static final DateFormat  BACKUP_DATE_FORMATTER
+      = new SimpleDateFormat ("yyyy-MM-dd-HH-mm");
+
+  private             String frequency                    = OCCASIONAL_BACKUPS;
+
+  private             int    backupsToKeep                = 0;
+
+  private             long   daysBetweenBackups           = 7;
+
+  /**
+   Construct a policy of occasional backups, with all backups kept.
+   */
+  public BackupPolicy () {
+
+  }
+
+  /**
+   Load the policy from stored user preferences.
+   */
+  public void loadFromPrefs () {
+    setFrequency(UserPrefs.getShared().getPref
+        (BACKUP_FREQUENCY, OCCASIONAL_BACKUPS));
+    setBackupsToKeep(UserPrefs.getShared().getPrefAsInt
+        (BACKUPS_TO_KEEP, 0));
+  }
+
+  /**
+   Save the policy to user preferences.
+   */
+  public void savePrefs () {
+    UserPrefs.getShared().setPref(BACKUP_FREQUENCY, frequency);
+    UserPrefs.getShared().setPref(BACKUPS_TO_KEEP, backupsToKeep);
+  }
+
+  /**
+   Set the frequency of backups.
+
+   @param frequency MANUAL_BACKUPS, OCCASIONAL_BACKUPS or AUTOMATIC_BACKUPS.
+                    Anything else is taken as OCCASIONAL_BACKUPS.
+   */
+  public void setFrequency (String frequency) {
+    if (frequency != null
+        && frequency.equalsIgnoreCase(MANUAL_BACKUPS)) {
+      this.frequency = MANUAL_BACKUPS;
+    }
+    else
+    if (frequency != null
+        && frequency.equalsIgnoreCase(AUTOMATIC_BACKUPS)) {
+      this.frequency = AUTOMATIC_BACKUPS;
+    } else {
+      this.frequency = OCCASIONAL_BACKUPS;
+    }
+  }
+
+  public String getFrequency () {
+    return frequency;
+  }
+
+  /**
+   Are backups only to be made when requested by the user?
+   */
+  public boolean isManual () {
+    return frequency.equals(MANUAL_BACKUPS);
+  }
+
+  /**
+   Are backups to be suggested to the user every so often?
+   */
+  public boolean isOccasional () {
+    return frequency.equals(OCCASIONAL_BACKUPS);
+  }
+
+  /**
+   Are backups to be made without asking, at every close and major event?
+   */
+  public boolean isAutomatic () {
+    return frequency.equals(AUTOMATIC_BACKUPS);
+  }
+
+  /**
+   Set the number of backups to be kept when older ones are pruned.
+
+   @param backupsToKeep The number of backups to keep, or zero to keep
+                        them all. A negative number is taken as zero.
+   */
+  public void setBackupsToKeep (int backupsToKeep) {
+    this.backupsToKeep = Math.max(0, backupsToKeep);
+  }
+
+  public int getBackupsToKeep () {
+    return backupsToKeep;
+  }
+
+  public void setDaysBetweenBackups (long daysBetweenBackups) {
+    this.daysBetweenBackups = daysBetweenBackups;
+  }
+
+  public long getDaysBetweenBackups () {
+    return daysBetweenBackups;
+  }
+
+  /**
+   Has it been long enough since the given file was last backed up that
+   a backup should be suggested?
+
+   @param fileSpec The file to be checked.
+
+   @return True if the file has never been backed up, or if its last backup
+           was at least the given number of days ago.
+   */
+  public boolean isBackupDue (FileSpec fileSpec) {
+    long daysBetween = daysBetweenBackups;
+    Calendar today =  Calendar.getInstance();
+    today.setTime(new Date());
+    Date lastBackupDate = fileSpec.getLastBackupDate();
+    if (lastBackupDate == null) {
+      daysBetween = daysBetweenBackups;
+    } else {
+      Calendar last = Calendar.getInstance();
+      last.setTime(lastBackupDate);
+      daysBetween = 0;
+      while (last.before(today)) {
+        last.add(Calendar.DAY_OF_MONTH, 1);
+        daysBetween++;
+      }
+    }
+    return (daysBetween >= daysBetweenBackups);
+  }
+
+  /**
+   Get the default file name to be used for backups.
+
+   @param primaryFile The file or folder to be backed up.
+
+   @param ext The intended extension for the backup file.
+
+   @return THe suggested name for the backup file.
+  */
+  public String getBackupFileName(File primaryFile, String ext) {
+    StringBuilder backupFileName = new StringBuilder ();
+    FileName name = new FileName (primaryFile);
+    int numberOfFolders = name.getNumberOfFolders();
+    int i = numberOfFolders - 1;
+    if (i < 0) {
+      i = 0;
+    }
+    while (i <= numberOfFolders) {
+      if (backupFileName.length() > 0) {
+        backupFileName.append (' ');
+      }
+      backupFileName.append (name.getFolder (i));
+      i++;
+    }
+    backupFileName.append (" backup ");
+    backupFileName.append (getBackupDate());
+    if (ext.length() == 0) {
+      // no extension
+    }
+    else
+    if (ext.charAt(0) == '.') {
+      backupFileName.append(ext);
+    } else {
+      backupFileName.append (".");
+      backupFileName.append(ext);
+    }
+    return backupFileName.toString();
+  }
+
+  /**
+   Remove older backup files or folders, keeping only the number of
+   backups called for by this policy.
+
+   @param backupFolder The folder containing all the backups.
+   @param fileNameWithoutDate The file name, without any date.
+
+   @return The number of backups pruned.
+  */
+  public int pruneBackups(File backupFolder, String fileNameWithoutDate) {
+    int pruned = 0;
+    if (backupsToKeep > 0) {
+      ArrayList<String> backups = new ArrayList<String>();
+      String[] dirEntries = backupFolder.list();
+      for (int i = 0; i < dirEntries.length; i++) {
+        String dirEntryName = dirEntries[i];
+        if (dirEntryName.startsWith(fileNameWithoutDate)) {
+          boolean added = false;
+          int j = 0;
+          while ((! added) && (j < backups.size())) {
+            if (dirEntryName.compareTo(backups.get(j)) > 0) {
+              backups.add(j, dirEntryName);
+              added = true;
+            } else {
+              j++;
+            }
+          } // end while looking for insertion point
+          if (! added) {
+            backups.add(dirEntryName);
+          }
+        } // end if file/folder name matches prefix
+      } // end of directory entries
+      while (backups.size() > backupsToKeep) {
+        String toDelete = backups.get(backups.size() - 1);
+        File toDeleteFile = new File (backupFolder, toDelete);
+        if (toDeleteFile.isDirectory()) {
+          FileUtils.deleteFolderContents(toDeleteFile);
+        }
+        toDeleteFile.delete();
+        Logger.getShared().recordEvent(LogEvent.NORMAL,
+            "Pruning older backup: " + toDeleteFile.toString(),
+            false);
+        pruned++;
+        backups.remove(backups.size() - 1);
+      }
+    } // if we have a backups to keep number
+    return pruned;
+  }
+
+  /**
+   Return the current date and time formatted in a way that can be
+   easily appended to a file or folder name.
+
+   @return Current date and time.
+  */
+  public static String getBackupDate() {
+    return BACKUP_DATE_FORMATTER.format (new Date());
+  }
+
+}
@@ -0,0 +1,241 @@
+/*
+ * Copyright 1999 - 2017 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.powersurgepub.psfiles;
+
+  import java.io.*;
+  import java.util.*;
+  import java.util.concurrent.*;
+  import java.util.function.*;
+
+/**
+ A bounded, process-wide cache of canonical paths, keyed by absolute path. <p>
+
+ Resolving a canonical path may require many file system calls, which can
+ be slow on network mounts or with long chains of symbolic links. This cache
+ lets those calls be made once, and optionally ahead of time on background
+ threads, so that the Swing event dispatch thread does not have to wait for
+ them. <p>
+
+ The least recently used entries are evicted once the maximum number of
+ entries is reached. An optional time to live may also be set, after which
+ an entry is resolved again, in case links have changed in the meantime.
+ */
+public class CanonicalPathCache {
+
+  public static final int     DEFAULT_MAX_ENTRIES   = 1000;
+
+  /** Single shared occurrence of CanonicalPathCache. */
+  private static  CanonicalPathCache  cache = null;
+
+  private         int                 maxEntries = DEFAULT_MAX_ENTRIES;
+
+  /** Milliseconds before an entry expires, or zero to never expire. */
+  private         long                timeToLive = 0;
+
+  private final   LinkedHashMap<String, CachedPath> paths
+      = new LinkedHashMap<String, CachedPath>(64, 0.75f, true) {
+        protected boolean removeEldestEntry
+            (Map.Entry<String, CachedPath> eldest) {
+          return size() > maxEntries;
+        }
+      };
+
+  private         ExecutorService     executor = null;
+
+  /**
+   Returns a single instance of CanonicalPathCache that can be shared by
+   the entire process.
+
+   @return A single, shared instance of CanonicalPathCache.
+   */
+  public static synchronized CanonicalPathCache getShared() {
+    if (cache == null) {
+      cache = new CanonicalPathCache();
+    }
+    return cache;
+  }
+
+  private CanonicalPathCache() {
+
+  }
+
+  /**
+   Set the maximum number of paths to be retained.
+
+   @param maxEntries The maximum number of paths to be retained.
+   */
+  public synchronized void setMaxEntries(int maxEntries) {
+    if (maxEntries > 0) {
+      this.maxEntries = maxEntries;
+      Iterator<String> iterator = paths.keySet().iterator();
+      while (paths.size() > maxEntries && iterator.hasNext()) {
+        iterator.next();
+        iterator.remove();
+      }
+    }
+  }
+
+  /**
+   Set the length of time for which a resolved path may be used.
+
+   @param timeToLive The time to live in milliseconds, or zero if entries
+                     should never expire.
+   */
+  public synchronized void setTimeToLive(long timeToLive) {
+    this.timeToLive = timeToLive;
+  }
+
+  /**
+   Forget all the paths resolved so far.
+   */
+  public synchronized void clear() {
+    paths.clear();
+  }
+
+  /**
+   Return the canonical path for the given file, resolving it only if it
+   has not already been resolved. If the canonical path cannot be
+   determined, then the absolute path is returned, and nothing is cached.
+
+   @param file The file whose canonical path is desired.
+
+   @return The canonical path, or the absolute path if the canonical path
+           cannot be determined.
+   */
+  public String getCanonicalPath(File file) {
+    String absolutePath = file.getAbsolutePath();
+    String canonicalPath = lookup(absolutePath);
+    if (canonicalPath == null) {
+      try {
+        canonicalPath = file.getCanonicalPath();
+        store(absolutePath, canonicalPath);
+      } catch (IOException e) {
+        canonicalPath = absolutePath;
+      }
+    }
+    return canonicalPath;
+  }
+
+  /**
+   Return the canonical path for the given file, only if it has already 
+   been resolved. The file system is not consulted. 
+  
+   @param file The file whose canonical path is desired.
+  
+   @return The canonical path, or null if it has yet to be resolved. 
+   */
+  public String getCachedPath(File file) {
+    return lookup(file.getAbsolutePath());
+  }
+
+  private synchronized String lookup(String absolutePath) {
+    CachedPath cached = paths.get(absolutePath);
+    if (cached == null) {
+      return null;
+    }
+    else
+    if (timeToLive > 0
+        && System.currentTimeMillis() - cached.resolved > timeToLive) {
+      paths.remove(absolutePath);
+      return null;
+    } else {
+      return cached.canonicalPath;
+    }
+  }
+
+  private synchronized void store(String absolutePath, String canonicalPath) {
+    paths.put(absolutePath,
+        new CachedPath(canonicalPath, System.currentTimeMillis()));
+  }
+
+  /**
+   Resolve the canonical path for one file on a background thread. The
+   cache is updated as well, but the path is also passed to the future, in
+   case it has been evicted from the cache by the time it is wanted.
+
+   @param file The file whose canonical path is desired.
+
+   @return A future that completes with the canonical path, or with the
+           absolute path if the canonical path cannot be determined.
+   */
+  public CompletableFuture<String> resolveInBackground(final File file) {
+    return CompletableFuture.supplyAsync(new Supplier<String>() {
+      public String get() {
+        return getCanonicalPath(file);
+      }
+    }, getExecutor());
+  }
+
+  /**
+   Resolve the canonical paths for many file specs in parallel, on
+   background threads. Only the cache is updated by the background threads;
+   each file spec picks up its resolved path from the cache the next time
+   its path is requested, on whatever thread it is being used.
+
+   @param specs The file specs whose paths are to be resolved.
+
+   @return A future that completes once all the paths have been resolved.
+   */
+  public CompletableFuture<Void> resolveInBackground
+      (Collection<FileSpec> specs) {
+    ArrayList<CompletableFuture<Void>> futures
+        = new ArrayList<CompletableFuture<Void>>();
+    ExecutorService service = getExecutor();
+    for (FileSpec spec : specs) {
+      final File file = spec.getUnresolvedFile();
+      if (file != null) {
+        futures.add(CompletableFuture.runAsync(new Runnable() {
+          public void run() {
+            getCanonicalPath(file);
+          }
+        }, service));
+      }
+    }
+    return CompletableFuture.allOf
+        (futures.toArray(new CompletableFuture<?>[0]));
+  }
+
+  private synchronized ExecutorService getExecutor() {
+    if (executor == null) {
+      int threads = Math.max(2,
+          Math.min(8, Runtime.getRuntime().availableProcessors()));
+      executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+        public Thread newThread(Runnable r) {
+          Thread thread = new Thread(r, "psfiles-canonical-path");
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+    }
+    return executor;
+  }
+
+  /**
+   One resolved path, along with the time at which it was resolved.
+   */
+  private static class CachedPath {
+
+    private final String canonicalPath;
+    private final long   resolved;
+
+    CachedPath(String canonicalPath, long resolved) {
+      this.canonicalPath = canonicalPath;
+      this.resolved = resolved;
+    }
+  }
+
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright 1999 - 2017 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.powersurgepub.psfiles;
+
+  import java.text.*;
+  import java.time.*;
+  import java.time.format.*;
+  import java.util.*;
+
+/**
+ Converts the dates stored with a file spec to and from strings. <p>
+
+ Dates are written as ISO-8601 instants in UTC (for example,
+ 2017-03-14T15:09:26.535Z), so that the stored form no longer depends on the
+ default locale of the JVM that wrote it. The formatter used is immutable,
+ and so may be shared freely between threads. <p>
+
+ When reading, the ISO form is tried first, then a plain count of
+ milliseconds since the epoch, and finally the locale-dependent date and time
+ format written by earlier versions, so that existing preferences can still
+ be read.
+ */
+public final class DateCodec {
+
+  private static final DateTimeFormatter ISO_FORMATTER
+      = DateTimeFormatter.ISO_INSTANT;
+
+  /** Lazily created, and only ever used while synchronized on the class. */
+  private static       DateFormat        legacyFormatter = null;
+  private static       DateFormat        legacyUSFormatter = null;
+
+  private DateCodec() {
+    // No instances required
+  }
+
+  /**
+   Format a date for storage.
+
+   @param date The date to be formatted.
+
+   @return The date as an ISO-8601 instant, or an empty string if the date
+           is null.
+  */
+  public static String format(Date date) {
+    if (date == null) {
+      return "";
+    } else {
+      return ISO_FORMATTER.format(Instant.ofEpochMilli(date.getTime()));
+    }
+  }
+
+  /**
+   Parse a stored date.
+
+   @param dateStr The string to be parsed, in any of the supported forms.
+
+   @return The resulting date, or null if the string is empty or could not
+           be parsed.
+  */
+  public static Date parse(String dateStr) {
+    if (dateStr == null) {
+      return null;
+    }
+    String str = dateStr.trim();
+    if (str.length() == 0) {
+      return null;
+    }
+
+    // Current ISO-8601 form
+    if (str.indexOf('T') > 0) {
+      try {
+        return new Date(Instant.from(ISO_FORMATTER.parse(str)).toEpochMilli());
+      } catch (DateTimeException e) {
+        // Fall through and try other forms
+      }
+    }
+
+    // Milliseconds since the epoch
+    if (isDigits(str)) {
+      try {
+        return new Date(Long.parseLong(str));
+      } catch (NumberFormatException e) {
+        // Fall through and try other forms
+      }
+    }
+
+    return parseLegacy(str);
+  }
+
+  /**
+   Parse a date written by earlier versions, using the default locale's
+   date and time format, and then the US format, since the preferences may
+   have been written under a different locale.
+
+   @param str The string to be parsed.
+
+   @return The resulting date, or null if it could not be parsed.
+  */
+  private static synchronized Date parseLegacy(String str) {
+    if (legacyFormatter == null) {
+      legacyFormatter = DateFormat.getDateTimeInstance();
+      legacyUSFormatter = DateFormat.getDateTimeInstance
+          (DateFormat.DEFAULT, DateFormat.DEFAULT, Locale.US);
+    }
+    try {
+      return legacyFormatter.parse(str);
+    } catch (ParseException e) {
+      try {
+        return legacyUSFormatter.parse(str);
+      } catch (ParseException e2) {
+        return null;
+      }
+    }
+  }
+
+  private static boolean isDigits(String str) {
+    for (int i = 0; i < str.length(); i++) {
+      char c = str.charAt(i);
+      if (c < '0' || c > '9') {
+        return false;
+      }
+    }
+    return true;
+  }
+
+}
@@ -24,21 +24,29 @@ package com.powersurgepub.psfiles;
   import javax.swing.*;
 
 /**
- Allow the user to express their preferences in terms of backups.
+ Allow the user to express their preferences in terms of backups. <p>
+
+ The preferences themselves are held in plain fields, and in the backup
+ policy and combo box models, so that they may be loaded, used and saved
+ without the panel ever being shown. The panel's components are only built
+ when it is first made displayable, as when the preferences window holding
+ it is first packed or shown.
 
  @author Herb Bowie
  */
 public class FilePrefs 
   extends javax.swing.JPanel {
   
-  public static final String BACKUP_FREQUENCY             = "backup-frequency";
-  public static final String OCCASIONAL_BACKUPS           = "occasional-backups";
-  public static final String MANUAL_BACKUPS               = "manual-backups";
-  public static final String AUTOMATIC_BACKUPS            = "automatic-backups";
+  private static final long  serialVersionUID             = 1L;
+  
+  public static final String BACKUP_FREQUENCY             = BackupPolicy.BACKUP_FREQUENCY;
+  public static final String OCCASIONAL_BACKUPS           = BackupPolicy.OCCASIONAL_BACKUPS;
+  public static final String MANUAL_BACKUPS               = BackupPolicy.MANUAL_BACKUPS;
+  public static final String AUTOMATIC_BACKUPS            = BackupPolicy.AUTOMATIC_BACKUPS;
   public static final String LAST_BACKUP_DATE             = "last-backup-date";
   public static final String NO_DATE                      = "no-date";
   
-  public static final String BACKUPS_TO_KEEP              = "backups-to-keep";
+  public static final String BACKUPS_TO_KEEP              = BackupPolicy.BACKUPS_TO_KEEP;
   
   public static final String RECENT_FILES_MAX             = "recent-files-max";
   
@@ -60,11 +68,20 @@ public class FilePrefs
   public static final int    NOW_INDEX                    = 1;
   
   public static final DateFormat  BACKUP_DATE_FORMATTER 
-      = new SimpleDateFormat ("yyyy-MM-dd-HH-mm");
+      = BackupPolicy.BACKUP_DATE_FORMATTER;
   
   private             int    purgeInaccessiblePref        = NEVER_INDEX;
   
-  private             long   daysBetweenBackups           = 7;
+  private             int    recentFilesMax               = RECENT_FILES_MAX_DEFAULT;
+  
+  /** The fixed rows preceding the recent files in each combo box. */
+  private static final String[] STARTUP_LITERALS 
+      = { "Nothing", "Last File Opened" };
+  private static final String[] ESSENTIAL_LITERALS 
+      = { "Nothing" };
+  
+  /** Have the panel's components been built yet? */
+  private             boolean panelBuilt                  = false;
   
   private             boolean recentFilesMaxUpdateInProgress = false;
   private             boolean backupsToKeepUpdateInProgress  = false;
@@ -76,8 +93,15 @@ public class FilePrefs
   
   private         AppToBackup       appToBackup;
   
+  /** The backup preferences, as last specified by the user. */
+  private final   BackupPolicy      backupPolicy = new BackupPolicy();
+  
   private         RecentFiles       recentFiles = null;
   
+  /** The models for the startup and essential combo boxes. */
+  private         RecentFilesComboBoxModel startupModel;
+  private         RecentFilesComboBoxModel essentialModel;
+  
   private         String            specificFileAtStartup = "";
   
   public static final String        ESSENTIAL_PATH        = "essential-path";
@@ -118,66 +142,91 @@ public class FilePrefs
     
     this.appToBackup = appToBackup;
     
-    initComponents();
+    // Both combo boxes will view the recent files list directly
+    startupModel = new RecentFilesComboBoxModel(STARTUP_LITERALS);
+    essentialModel = new RecentFilesComboBoxModel(ESSENTIAL_LITERALS);
     
   } // end constructor
   
   /**
-   Load preference fields from stored user preferences. 
-   */
-  public void loadFromPrefs () {
+   Build the panel's components, if not already built, before the panel is
+   made displayable. 
+  */
+  public void addNotify() {
+    buildPanel();
+    super.addNotify();
+  }
+  
+  /**
+   Build the panel's components, the first time this is called, and show 
+   the current preferences on them. 
+  */
+  private void buildPanel() {
+    if (! panelBuilt) {
+      panelBuilt = true;
+      initComponents();
+      essentialUserSelection = false;
+      startupComboBox.setModel(startupModel);
+      startupComboBox.setRenderer(RecentFilesComboBoxModel.getRenderer());
+      essentialComboBox.setModel(essentialModel);
+      essentialComboBox.setRenderer(RecentFilesComboBoxModel.getRenderer());
+      essentialUserSelection = true;
+      showPrefs();
+    }
+  }
+  
+  /**
+   Show the current preferences on the panel's components. 
+  */
+  private void showPrefs() {
     
-    // Load frequency of backups
-    String freq = UserPrefs.getShared().getPref 
-        (BACKUP_FREQUENCY, OCCASIONAL_BACKUPS);
-    if (freq.equalsIgnoreCase(MANUAL_BACKUPS)) {
+    if (backupPolicy.isManual()) {
       manualBackupsButton.setSelected(true);
     }
     else
-    if (freq.equalsIgnoreCase(AUTOMATIC_BACKUPS)) {
+    if (backupPolicy.isAutomatic()) {
       automaticBackupsButton.setSelected(true);
     } else {
       occasionalBackupsButton.setSelected(true);
     }
     
-    // Load number of backups to keep
-    int backupsToKeep = UserPrefs.getShared().getPrefAsInt 
-        (BACKUPS_TO_KEEP, 0);
+    int backupsToKeep = backupPolicy.getBackupsToKeep();
     backupsToKeepTextField.setText(String.valueOf(backupsToKeep));
     backupsToKeepSlider.setValue(backupsToKeep);
     
+    int recentMax = recentFilesMax;
+    recentFilesMaxTextField.setText(String.valueOf(recentMax));
+    recentFilesMaxSlider.setValue(recentMax);
+    
+    purgeWhenComboBox.setSelectedIndex(purgeInaccessiblePref);
+  }
+  
+  /**
+   Load preference fields from stored user preferences. 
+   */
+  public void loadFromPrefs () {
+    
+    // Load frequency of backups, and number of backups to keep
+    backupPolicy.loadFromPrefs();
+    
     // Load number of recent files
-    int recentMax = UserPrefs.getShared().getPrefAsInt
+    recentFilesMax = UserPrefs.getShared().getPrefAsInt
         (RECENT_FILES_MAX, RECENT_FILES_MAX_DEFAULT);
-    recentFilesMaxTextField.setText
-        (String.valueOf(recentMax));
-    recentFilesMaxSlider.setValue(recentMax);
     if (recentFiles != null) {
-      recentFiles.setRecentFilesMax(recentMax);
+      recentFiles.setRecentFilesMax(recentFilesMax);
     }
     
     // Load launch at startup preferences
     String launchAtStartup = UserPrefs.getShared().getPref 
         (LAUNCH_AT_STARTUP, LAST_FILE_OPENED);
     if (launchAtStartup.equalsIgnoreCase(NO_FILE)) {
-      startupComboBox.setSelectedIndex(NO_FILE_INDEX);
+      startupModel.setSelectedIndex(NO_FILE_INDEX);
     }
     else
     if (launchAtStartup.equalsIgnoreCase(LAST_FILE_OPENED)) {
-      startupComboBox.setSelectedIndex(LAST_FILE_OPENED_INDEX);
+      startupModel.setSelectedIndex(LAST_FILE_OPENED_INDEX);
     } else {
-      int i = STARTUP_COMBO_BOX_LITERALS;
-      boolean found = false;
-      while (i < startupComboBox.getItemCount() && (! found)) {
-        FileSpec comboBoxFileSpec = getStartupFileSpec (i);
-        if (launchAtStartup.equalsIgnoreCase(comboBoxFileSpec.getPath())) {
-          startupComboBox.setSelectedIndex(i);
-          found = true;
-        } else {
-          i++;
-        }
-      } // while looking for a match
-      if (! found) {
+      if (! startupModel.selectPath(launchAtStartup)) {
         specificFileAtStartup = launchAtStartup;
       }
     } // end if startup value is not a literal
@@ -191,34 +240,36 @@ public class FilePrefs
     String purgeInaccessible = UserPrefs.getShared().getPref 
         (PURGE_INACCESSIBLE_FILES, NEVER);
     if (purgeInaccessible.equalsIgnoreCase(AT_STARTUP)) {
-      purgeWhenComboBox.setSelectedIndex(AT_STARTUP_INDEX);
+      purgeInaccessiblePref = AT_STARTUP_INDEX;
     } else {
-      purgeWhenComboBox.setSelectedIndex(NEVER_INDEX);
+      purgeInaccessiblePref = NEVER_INDEX;
+    }
+    
+    if (panelBuilt) {
+      showPrefs();
     }
-    purgeInaccessiblePref = purgeWhenComboBox.getSelectedIndex();
   }
   
   /**
    Set the essential combo box selection to reflect the current value of 
-   the essential file path. 
+   the essential file path. The file is only looked up if the file selected
+   is not already the essential file, and then by its path, without reading
+   the other entries. 
   */
   private void setEssentialSelection() {
 
     essentialUserSelection = false;
+    Object selected = essentialModel.getSelectedItem();
     if (essentialPath.length() == 0) {
-      essentialComboBox.setSelectedIndex(NO_FILE_INDEX);
+      essentialModel.setSelectedIndex(NO_FILE_INDEX);
+    }
+    else
+    if (selected instanceof FileSpec
+        && essentialPath.equalsIgnoreCase
+            (((FileSpec)selected).getKnownPath())) {
+      // Already selected
     } else {
-      int i = ESSENTIAL_COMBO_BOX_LITERALS;
-      boolean found = false;
-      while (i < essentialComboBox.getItemCount() && (! found)) {
-        FileSpec comboBoxFileSpec = getEssentialFileSpec (i);
-        if (essentialPath.equalsIgnoreCase(comboBoxFileSpec.getPath())) {
-          essentialComboBox.setSelectedIndex(i);
-          found = true;
-        } else {
-          i++;
-        }
-      } // while looking for a match
+      essentialModel.selectPath(essentialPath);
     } // end if essential value is not a literal
     essentialUserSelection = true;
   }
@@ -230,61 +281,67 @@ public class FilePrefs
   */
   public void setRecentFiles (RecentFiles recentFiles) {
     this.recentFiles = recentFiles;
+    essentialUserSelection = false;
+    startupModel.setRecentFiles(recentFiles);
+    essentialModel.setRecentFiles(recentFiles);
+    essentialUserSelection = true;
     if (recentFiles != null) {
       recentFiles.setFilePrefs(this);
-      recentFiles.setRecentFilesMax(recentFilesMaxSlider.getValue());
+      recentFiles.setRecentFilesMax(recentFilesMax);
     }
   }
   
+  RecentFilesComboBoxModel getStartupModel () {
+    return startupModel;
+  }
+  
+  RecentFilesComboBoxModel getEssentialModel () {
+    return essentialModel;
+  }
+  
   public void addRecentFileAtEnd (FileSpec recentFile) {
 
-    essentialUserSelection = false;
-    startupComboBox.addItem(recentFile.getBriefDisplayName());
-    if (recentFile.getPath().equalsIgnoreCase(specificFileAtStartup)) {
-      startupComboBox.setSelectedIndex(startupComboBox.getItemCount() - 1);
+    startupModel.recentFileAdded
+        (startupModel.getSize() - STARTUP_COMBO_BOX_LITERALS);
+    if (recentFile.getKnownPath().equalsIgnoreCase(specificFileAtStartup)) {
+      startupModel.setSelectedIndex(startupModel.getSize() - 1);
     }
     
-    essentialComboBox.addItem(recentFile.getBriefDisplayName());
-    if (recentFile.getPath().equalsIgnoreCase(essentialPath)) {
-      essentialComboBox.setSelectedIndex(essentialComboBox.getItemCount() - 1);
+    essentialUserSelection = false;
+    essentialModel.recentFileAdded
+        (essentialModel.getSize() - ESSENTIAL_COMBO_BOX_LITERALS);
+    if (recentFile.getKnownPath().equalsIgnoreCase(essentialPath)) {
+      essentialModel.setSelectedIndex(essentialModel.getSize() - 1);
     }
     essentialUserSelection = true;
 
   }
   
   public void addRecentFileAtTop (FileSpec recentFile) {
-
-    essentialUserSelection = false;
-    startupComboBox.insertItemAt
-        (recentFile.getBriefDisplayName(), STARTUP_COMBO_BOX_LITERALS);
-    if (recentFile.getPath().equalsIgnoreCase(specificFileAtStartup)) {
-      startupComboBox.setSelectedIndex(STARTUP_COMBO_BOX_LITERALS);
-    }
-    
-    essentialComboBox.insertItemAt
-        (recentFile.getBriefDisplayName(), ESSENTIAL_COMBO_BOX_LITERALS);
-    if (recentFile.getPath().equalsIgnoreCase(essentialPath)) {
-      essentialComboBox.setSelectedIndex(ESSENTIAL_COMBO_BOX_LITERALS);
-    } else {
-      setEssentialSelection();
-    }
-    essentialUserSelection = true;
-
+    addRecentFileAt (recentFile, 0);
   }
   
   public void addNotSoRecentFile (FileSpec notSoRecentFile) {
+    addRecentFileAt (notSoRecentFile, 1);
+  }
+  
+  /**
+   Add a recent file part way down the list. 
+  
+   @param recentFile The file to be added. 
+   @param i          The position of the file in the list of recent files. 
+  */
+  public void addRecentFileAt (FileSpec recentFile, int i) {
     
-    startupComboBox.insertItemAt
-        (notSoRecentFile.getBriefDisplayName(), STARTUP_COMBO_BOX_LITERALS + 1);
-    if (notSoRecentFile.getPath().equalsIgnoreCase(specificFileAtStartup)) {
-      startupComboBox.setSelectedIndex(STARTUP_COMBO_BOX_LITERALS + 1);
+    startupModel.recentFileAdded(i);
+    if (recentFile.getKnownPath().equalsIgnoreCase(specificFileAtStartup)) {
+      startupModel.setSelectedIndex(STARTUP_COMBO_BOX_LITERALS + i);
     }
     
     essentialUserSelection = false;
-    essentialComboBox.insertItemAt
-        (notSoRecentFile.getBriefDisplayName(), ESSENTIAL_COMBO_BOX_LITERALS + 1);
-    if (notSoRecentFile.getPath().equalsIgnoreCase(essentialPath)) {
-      essentialComboBox.setSelectedIndex(ESSENTIAL_COMBO_BOX_LITERALS + 1);
+    essentialModel.recentFileAdded(i);
+    if (recentFile.getKnownPath().equalsIgnoreCase(essentialPath)) {
+      essentialModel.setSelectedIndex(ESSENTIAL_COMBO_BOX_LITERALS + i);
     } else {
       setEssentialSelection();
     }
@@ -294,13 +351,25 @@ public class FilePrefs
   
   public void removeRecentFile (int i) {
 
-    if (startupComboBox.getItemCount() > (i + STARTUP_COMBO_BOX_LITERALS)) {
-      startupComboBox.removeItemAt (i + STARTUP_COMBO_BOX_LITERALS);
-    }
+    startupModel.recentFileRemoved(i);
     
     essentialUserSelection = false;
-    if (essentialComboBox.getItemCount() > (i + ESSENTIAL_COMBO_BOX_LITERALS)) {
-      essentialComboBox.removeItemAt (i + ESSENTIAL_COMBO_BOX_LITERALS);
+    essentialModel.recentFileRemoved(i);
+    setEssentialSelection();
+    essentialUserSelection = true;
+  }
+  
+  /**
+   Bring the recent files shown in the combo boxes up to date with the 
+   list, after a batch of changes, and look up the selections once. 
+  */
+  public void recentFilesChanged () {
+    
+    essentialUserSelection = false;
+    startupModel.recentFilesChanged();
+    essentialModel.recentFilesChanged();
+    if (specificFileAtStartup.length() > 0) {
+      startupModel.selectPath(specificFileAtStartup);
     }
     setEssentialSelection();
     essentialUserSelection = true;
@@ -311,13 +380,14 @@ public class FilePrefs
   */
   public void clearHistory () {
 
-    while (startupComboBox.getItemCount() > (STARTUP_COMBO_BOX_LITERALS + 1)) {
-      startupComboBox.remove(STARTUP_COMBO_BOX_LITERALS + 1);
-    }
-    
     essentialUserSelection = false;
-    while (essentialComboBox.getItemCount() > (ESSENTIAL_COMBO_BOX_LITERALS + 1)) {
-      essentialComboBox.remove(ESSENTIAL_COMBO_BOX_LITERALS + 1);
+    while (startupModel.getSize() > (STARTUP_COMBO_BOX_LITERALS + 1)) {
+      startupModel.recentFileRemoved
+          (startupModel.getSize() - STARTUP_COMBO_BOX_LITERALS - 1);
+    }
+    while (essentialModel.getSize() > (ESSENTIAL_COMBO_BOX_LITERALS + 1)) {
+      essentialModel.recentFileRemoved
+          (essentialModel.getSize() - ESSENTIAL_COMBO_BOX_LITERALS - 1);
     }
     essentialUserSelection = true;
   }
@@ -333,9 +403,7 @@ public class FilePrefs
   private void setRecentFilesMax (int recentFilesMax) {
     if (recentFilesMax >= 1
         && recentFilesMax <= recentFilesMaxSlider.getMaximum()) {
-      if (recentFiles != null) {
-        recentFiles.setRecentFilesMax(recentFilesMax);
-      }
+      updateRecentFilesMax(recentFilesMax);
       if (recentFilesMax != getRecentFilesMaxFromText()) {
         recentFilesMaxTextField.setText(String.valueOf(recentFilesMax));
       }
@@ -376,6 +444,7 @@ public class FilePrefs
       if (backupsToKeep != backupsToKeepSlider.getValue()) {
         backupsToKeepSlider.setValue(backupsToKeep);
       }
+      backupPolicy.setBackupsToKeep(backupsToKeep);
     }
   }
   
@@ -400,7 +469,7 @@ public class FilePrefs
    */
   public String getStartupFilePath () {
     // Return startup file launch prefs
-    int i = startupComboBox.getSelectedIndex();
+    int i = startupModel.getSelectedIndex();
     if (specificFileAtStartup != null
         && specificFileAtStartup.length() > 0) {
       return specificFileAtStartup;
@@ -445,7 +514,7 @@ public class FilePrefs
    @return The File Spec identifying the preferred file.  
    */
   public FileSpec getStartupFileSpec () {
-    return getStartupFileSpec (startupComboBox.getSelectedIndex());
+    return getStartupFileSpec (startupModel.getSelectedIndex());
   }
   
   /**
@@ -457,7 +526,7 @@ public class FilePrefs
   */
   public FileSpec getStartupFileSpec (int i) {
 
-    if (startupComboBox.getItemCount() <= STARTUP_COMBO_BOX_LITERALS
+    if (startupModel.getSize() <= STARTUP_COMBO_BOX_LITERALS
         && specificFileAtStartup != null
         && specificFileAtStartup.length() > 0) {
       return new FileSpec (specificFileAtStartup);
@@ -491,7 +560,7 @@ public class FilePrefs
    @return The File Spec identifying the essential file.  
    */
   public FileSpec getEssentialFileSpec () {
-    return getEssentialFileSpec (essentialComboBox.getSelectedIndex());
+    return getEssentialFileSpec (essentialModel.getSelectedIndex());
   }
   
   /**
@@ -503,7 +572,7 @@ public class FilePrefs
   */
   public FileSpec getEssentialFileSpec (int i) {
 
-    if (essentialComboBox.getItemCount() <= ESSENTIAL_COMBO_BOX_LITERALS) {
+    if (essentialModel.getSize() <= ESSENTIAL_COMBO_BOX_LITERALS) {
       return null;
     }
     else
@@ -526,12 +595,12 @@ public class FilePrefs
   */
   private void setEssentialIndex(int i) {
     essentialUserSelection = false;
-    essentialComboBox.setSelectedIndex(i);
+    essentialModel.setSelectedIndex(i);
     essentialUserSelection = true;
   }
   
   public boolean purgeRecentFilesAtStartup () {
-    return (purgeWhenComboBox.getSelectedIndex() == AT_STARTUP_INDEX);
+    return (purgeInaccessiblePref == AT_STARTUP_INDEX);
   }
   
   /**
@@ -539,31 +608,19 @@ public class FilePrefs
    */
   public void savePrefs() {
     
-    // Save backup prefs
-    if (manualBackupsButton.isSelected()) {
-      UserPrefs.getShared().setPref(BACKUP_FREQUENCY, MANUAL_BACKUPS);
-    }
-    else
-    if (automaticBackupsButton.isSelected()) {
-      UserPrefs.getShared().setPref(BACKUP_FREQUENCY, AUTOMATIC_BACKUPS);
-    } else {
-      UserPrefs.getShared().setPref(BACKUP_FREQUENCY, OCCASIONAL_BACKUPS);
-    }
-    
-    // Save backups to keep
-    UserPrefs.getShared().setPref
-        (BACKUPS_TO_KEEP, backupsToKeepSlider.getValue());
+    // Save backup prefs, including backups to keep
+    backupPolicy.savePrefs();
     
     // Save recent files max
     UserPrefs.getShared().setPref
-        (RECENT_FILES_MAX, recentFilesMaxSlider.getValue());
+        (RECENT_FILES_MAX, recentFilesMax);
     
     // Save startup file launch prefs
-    if (startupComboBox.getSelectedIndex() == NO_FILE_INDEX) {
+    if (startupModel.getSelectedIndex() == NO_FILE_INDEX) {
       UserPrefs.getShared().setPref(LAUNCH_AT_STARTUP, NO_FILE);
     }
     else
-    if (startupComboBox.getSelectedIndex() == LAST_FILE_OPENED_INDEX) {
+    if (startupModel.getSelectedIndex() == LAST_FILE_OPENED_INDEX) {
       UserPrefs.getShared().setPref(LAUNCH_AT_STARTUP, LAST_FILE_OPENED);
     } else {
       FileSpec selectedFileSpec = getStartupFileSpec();
@@ -575,7 +632,7 @@ public class FilePrefs
     UserPrefs.getShared().setPref(ESSENTIAL_PATH, essentialPath);
     
     // Save purge inaccessible files prefs
-    if (purgeWhenComboBox.getSelectedIndex() == AT_STARTUP_INDEX) {
+    if (purgeInaccessiblePref == AT_STARTUP_INDEX) {
       UserPrefs.getShared().setPref(PURGE_INACCESSIBLE_FILES, AT_STARTUP);
     } else {
       UserPrefs.getShared().setPref(PURGE_INACCESSIBLE_FILES, NEVER);
@@ -597,11 +654,11 @@ public class FilePrefs
     if (fileSpec != null
         && fileSpec.hasPath()) {
     
-      if (automaticBackupsButton.isSelected()) {
+      if (backupPolicy.isAutomatic()) {
         backedUp = appToBackup.backupWithoutPrompt();
       }
       else
-      if (occasionalBackupsButton.isSelected()) {
+      if (backupPolicy.isOccasional()) {
         backedUp = promptForBackup();
       } 
       if (backedUp) {
@@ -637,37 +694,14 @@ public class FilePrefs
         && fileSpec.hasPath()) {
     
       // For automatic backups, backup with every quit
-      if (automaticBackupsButton.isSelected()) {
+      if (backupPolicy.isAutomatic()) {
         backedUp = appToBackup.backupWithoutPrompt();
       }
       else
 
       // For occasional backups, offer to backup every 7 days
-      if (occasionalBackupsButton.isSelected()) {
-        long daysBetween = daysBetweenBackups; 
-        Calendar today =  Calendar.getInstance();
-        today.setTime(new Date());
-        String lastBackupDateString = fileSpec.getLastBackupDateAsString();
-        if (lastBackupDateString.equals(NO_DATE)
-            || lastBackupDateString.length() == 0) {
-          daysBetween = daysBetweenBackups;
-        } else {
-          try {
-            DateFormat formatter = DateFormat.getDateTimeInstance();
-            Date lastBackupDate = formatter.parse(lastBackupDateString);
-            Calendar last = Calendar.getInstance();
-            last.setTime(lastBackupDate);
-            daysBetween = 0;
-            while (last.before(today)) {  
-              last.add(Calendar.DAY_OF_MONTH, 1);  
-              daysBetween++;  
-            } 
-          } catch (ParseException e) {
-            System.out.println ("  Parse Exception " + e.toString());
-            daysBetween = daysBetweenBackups;
-          } 
-        }
-        if (daysBetween >= daysBetweenBackups) {
+      if (backupPolicy.isOccasional()) {
+        if (backupPolicy.isBackupDue(fileSpec)) {
           backedUp = promptForBackup();
         }
       } 
@@ -714,33 +748,7 @@ public class FilePrefs
    @return THe suggested name for the backup file. 
   */
   public String getBackupFileName(File primaryFile, String ext) {
-    StringBuilder backupFileName = new StringBuilder ();
-    FileName name = new FileName (primaryFile);
-    int numberOfFolders = name.getNumberOfFolders();
-    int i = numberOfFolders - 1;
-    if (i < 0) {
-      i = 0;
-    }
-    while (i <= numberOfFolders) {
-      if (backupFileName.length() > 0) {
-        backupFileName.append (' ');
-      }
-      backupFileName.append (name.getFolder (i));
-      i++;
-    }
-    backupFileName.append (" backup ");
-    backupFileName.append (getBackupDate());
-    if (ext.length() == 0) {
-      // no extension
-    }
-    else
-    if (ext.charAt(0) == '.') {
-      backupFileName.append(ext);
-    } else {
-      backupFileName.append (".");
-      backupFileName.append(ext);
-    }
-    return backupFileName.toString();
+    return backupPolicy.getBackupFileName(primaryFile, ext);
   }
   
   /**
@@ -752,44 +760,7 @@ public class FilePrefs
    @return The number of backups pruned. 
   */
   public int pruneBackups(File backupFolder, String fileNameWithoutDate) {
-    int pruned = 0;
-    int backupsToKeep = backupsToKeepSlider.getValue();
-    if (backupsToKeep > 0) {
-      ArrayList<String> backups = new ArrayList<String>();
-      String[] dirEntries = backupFolder.list();
-      for (int i = 0; i < dirEntries.length; i++) {
-        String dirEntryName = dirEntries[i];
-        if (dirEntryName.startsWith(fileNameWithoutDate)) {
-          boolean added = false;
-          int j = 0;
-          while ((! added) && (j < backups.size())) {
-            if (dirEntryName.compareTo(backups.get(j)) > 0) {
-              backups.add(j, dirEntryName);
-              added = true;
-            } else {
-              j++;
-            }
-          } // end while looking for insertion point
-          if (! added) {
-            backups.add(dirEntryName);
-          }
-        } // end if file/folder name matches prefix
-      } // end of directory entries
-      while (backups.size() > backupsToKeep) {
-        String toDelete = backups.get(backups.size() - 1);
-        File toDeleteFile = new File (backupFolder, toDelete);
-        if (toDeleteFile.isDirectory()) {
-          FileUtils.deleteFolderContents(toDeleteFile);
-        }
-        toDeleteFile.delete(); 
-        Logger.getShared().recordEvent(LogEvent.NORMAL, 
-            "Pruning older backup: " + toDeleteFile.toString(), 
-            false);
-        pruned++;
-        backups.remove(backups.size() - 1);
-      }
-    } // if we have a backups to keep number
-    return pruned;
+    return backupPolicy.pruneBackups(backupFolder, fileNameWithoutDate);
   }
   
   /**
@@ -799,7 +770,16 @@ public class FilePrefs
    @return Current date and time. 
   */
   public static String getBackupDate() {
-    return BACKUP_DATE_FORMATTER.format (new Date());
+    return BackupPolicy.getBackupDate();
+  }
+  
+  /**
+   Return the backup preferences last specified by the user. 
+  
+   @return The backup policy. 
+  */
+  public BackupPolicy getBackupPolicy() {
+    return backupPolicy;
   }
   
   public void saveLastBackupDate(
@@ -808,7 +788,8 @@ public class FilePrefs
       int recentFileNumber) {
     
     fileSpec.setLastBackupDateToNow();
-    fileSpec.saveToRecentPrefs(prefsQualifier, recentFileNumber);
+    fileSpec.saveToRecentPrefs(prefsQualifier, recentFileNumber, 
+        recentFiles != null && recentFiles.isCompactEncoding());
   }
   
   private void updateRecentFilesMaxTextField() {
@@ -835,6 +816,7 @@ public class FilePrefs
   }
   
   private void updateRecentFilesMax(int recentFilesMax) {
+    this.recentFilesMax = recentFilesMax;
     if (recentFiles != null) {
       recentFiles.setRecentFilesMax(recentFilesMax);
     }
@@ -863,7 +845,7 @@ public class FilePrefs
     }
   }
 
-  /** This method is called from within the constructor to
+  /** This method is called from buildPanel to
    * initialize the form.
    * WARNING: Do NOT modify this code. The content of this method is
    * always regenerated by the Form Editor.
@@ -883,11 +865,11 @@ public class FilePrefs
     backupsToKeepTextField = new javax.swing.JTextField();
     backupsToKeepSlider = new javax.swing.JSlider();
     startupLabel = new javax.swing.JLabel();
-    startupComboBox = new javax.swing.JComboBox();
+    startupComboBox = new javax.swing.JComboBox<>();
     essentialLabel = new javax.swing.JLabel();
-    essentialComboBox = new javax.swing.JComboBox();
+    essentialComboBox = new javax.swing.JComboBox<>();
     purgeWhenLabel = new javax.swing.JLabel();
-    purgeWhenComboBox = new javax.swing.JComboBox();
+    purgeWhenComboBox = new javax.swing.JComboBox<>();
     bottomSpacer = new javax.swing.JLabel();
     msgToUser = new javax.swing.JLabel();
     recentFilesMaxLabel = new javax.swing.JLabel();
@@ -1024,7 +1006,7 @@ public class FilePrefs
     gridBagConstraints.insets = new java.awt.Insets(4, 4, 4, 4);
     add(startupLabel, gridBagConstraints);
 
-    startupComboBox.setModel(new javax.swing.DefaultComboBoxModel(new String[] { "Nothing", "Last File Opened" }));
+    startupComboBox.setModel(new javax.swing.DefaultComboBoxModel<>(new String[] { "Nothing", "Last File Opened" }));
     startupComboBox.addActionListener(new java.awt.event.ActionListener() {
       public void actionPerformed(java.awt.event.ActionEvent evt) {
         startupComboBoxActionPerformed(evt);
@@ -1047,7 +1029,7 @@ public class FilePrefs
     gridBagConstraints.insets = new java.awt.Insets(4, 4, 4, 4);
     add(essentialLabel, gridBagConstraints);
 
-    essentialComboBox.setModel(new javax.swing.DefaultComboBoxModel(new String[] { "Nothing" }));
+    essentialComboBox.setModel(new javax.swing.DefaultComboBoxModel<>(new String[] { "Nothing" }));
     essentialComboBox.addActionListener(new java.awt.event.ActionListener() {
       public void actionPerformed(java.awt.event.ActionEvent evt) {
         essentialComboBoxActionPerformed(evt);
@@ -1070,7 +1052,7 @@ public class FilePrefs
     gridBagConstraints.insets = new java.awt.Insets(4, 4, 4, 4);
     add(purgeWhenLabel, gridBagConstraints);
 
-    purgeWhenComboBox.setModel(new javax.swing.DefaultComboBoxModel(new String[] { "Never", "Now", "At startup" }));
+    purgeWhenComboBox.setModel(new javax.swing.DefaultComboBoxModel<>(new String[] { "Never", "Now", "At startup" }));
     purgeWhenComboBox.addActionListener(new java.awt.event.ActionListener() {
       public void actionPerformed(java.awt.event.ActionEvent evt) {
         purgeWhenComboBoxActionPerformed(evt);
@@ -1158,16 +1140,19 @@ public class FilePrefs
 
 private void manualBackupsButtonActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_manualBackupsButtonActionPerformed
   msgToUser.setText(" ");
+  backupPolicy.setFrequency(MANUAL_BACKUPS);
   savePrefs();
 }//GEN-LAST:event_manualBackupsButtonActionPerformed
 
 private void occasionalBackupsButtonActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_occasionalBackupsButtonActionPerformed
   msgToUser.setText(" ");
+  backupPolicy.setFrequency(OCCASIONAL_BACKUPS);
   savePrefs();
 }//GEN-LAST:event_occasionalBackupsButtonActionPerformed
 
 private void automaticBackupsButtonActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_automaticBackupsButtonActionPerformed
   msgToUser.setText(" ");
+  backupPolicy.setFrequency(AUTOMATIC_BACKUPS);
   savePrefs();
 }//GEN-LAST:event_automaticBackupsButtonActionPerformed
 
@@ -1224,6 +1209,9 @@ private void automaticBackupsButtonActionPerformed(java.awt.event.ActionEvent ev
         backupsToKeepSliderValue = 0;
       }
       backupsToKeepTextField.setText(String.valueOf(backupsToKeepSliderValue));
+      if (! backupsToKeepSlider.getValueIsAdjusting()) {
+        backupPolicy.setBackupsToKeep(backupsToKeepSliderValue);
+      }
       backupsToKeepUpdateInProgress = false;
     }
   }//GEN-LAST:event_backupsToKeepSliderStateChanged
@@ -1234,7 +1222,7 @@ private void automaticBackupsButtonActionPerformed(java.awt.event.ActionEvent ev
 
   private void essentialComboBoxActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_essentialComboBoxActionPerformed
 
-    int i = essentialComboBox.getSelectedIndex();
+    int i = essentialModel.getSelectedIndex();
     if (essentialUserSelection) {
       if (i <= 0) {
         essentialPath = "";
@@ -1254,19 +1242,19 @@ private void automaticBackupsButtonActionPerformed(java.awt.event.ActionEvent ev
   private javax.swing.JSlider backupsToKeepSlider;
   private javax.swing.JTextField backupsToKeepTextField;
   private javax.swing.JLabel bottomSpacer;
-  private javax.swing.JComboBox essentialComboBox;
+  private javax.swing.JComboBox<Object> essentialComboBox;
   private javax.swing.JLabel essentialLabel;
   private javax.swing.JLabel filePrefsForLabel;
   private javax.swing.ButtonGroup frequencyButtonGroup;
   private javax.swing.JRadioButton manualBackupsButton;
   private javax.swing.JLabel msgToUser;
   private javax.swing.JRadioButton occasionalBackupsButton;
-  private javax.swing.JComboBox purgeWhenComboBox;
+  private javax.swing.JComboBox<String> purgeWhenComboBox;
   private javax.swing.JLabel purgeWhenLabel;
   private javax.swing.JLabel recentFilesMaxLabel;
   private javax.swing.JSlider recentFilesMaxSlider;
   private javax.swing.JTextField recentFilesMaxTextField;
-  private javax.swing.JComboBox startupComboBox;
+  private javax.swing.JComboBox<Object> startupComboBox;
   private javax.swing.JLabel startupLabel;
   // End of variables declaration//GEN-END:variables
 }
@@ -18,7 +18,6 @@ package com.powersurgepub.psfiles;
 
   import com.powersurgepub.psutils.*;
   import java.io.*;
-  import java.text.*;
   import java.util.*;
 
 /**
@@ -30,6 +29,8 @@ public class FileSpec {
   
   public static final String EQUALS = "=";
   public static final String DELIMITER = ";";
+  private static final char  EQUALS_CHAR    = '=';
+  private static final char  DELIMITER_CHAR = ';';
   
   public static final String PATH             = "path";
   public static final String TYPE             = "type";
@@ -47,6 +48,28 @@ public class FileSpec {
   public static final String SYNC_PREFIX      = "sync-prefix";
   public static final String LAST_TITLE       = "last-title";
   public static final String NOTE_SORT_PARM   = "note-sort-parm";
+  
+  /** Kept by RecentFiles when ranking by frecency, as unknown attributes. */
+  public static final String ACCESS_COUNT     = "access-count";
+  public static final String FRECENCY         = "frecency";
+  
+  static final int    UNKNOWN_ATTRIBUTE          = -1;
+  static final int    PATH_ATTRIBUTE             = 0;
+  static final int    TYPE_ATTRIBUTE             = 1;
+  static final int    FORMAT_ATTRIBUTE           = 2;
+  static final int    COLLECTION_TITLE_ATTRIBUTE = 3;
+  static final int    LAST_ACCESS_ATTRIBUTE      = 4;
+  static final int    LAST_BACKUP_ATTRIBUTE      = 5;
+  static final int    BACKUP_FOLDER_ATTRIBUTE    = 6;
+  static final int    ARCHIVE_FOLDER_ATTRIBUTE   = 7;
+  static final int    TEMPLATES_FOLDER_ATTRIBUTE = 8;
+  static final int    SCRIPTS_FOLDER_ATTRIBUTE   = 9;
+  static final int    HTML_FOLDER_ATTRIBUTE      = 10;
+  static final int    EASYPLAY_ATTRIBUTE         = 11;
+  static final int    SYNC_ATTRIBUTE             = 12;
+  static final int    SYNC_PREFIX_ATTRIBUTE      = 13;
+  static final int    LAST_TITLE_ATTRIBUTE       = 14;
+  static final int    NOTE_SORT_PARM_ATTRIBUTE   = 15;
 
   public static final String RECENT_FILE            = "recent-file";
   public static final String RECENT_FILE_TYPE       = "recent-file-type";
@@ -54,6 +77,8 @@ public class FileSpec {
   public static final String RECENT_FILE_FORMAT     = "recent-file-format";
   public static final String RECENT_FILE_DATE       = "recent-file-date";
   public static final String OLD_RECENT_FILE_PREFIX = "recent.file";
+  public static final String RECENT_FILE_COUNT      = "recent-file-count";
+  public static final String RECENT_FILE_SCHEMA     = "recent-file-schema";
   
   public static final int    BRIEF_DISPLAY_NAME_MAX_LENGTH = 30;
   
@@ -61,20 +86,24 @@ public class FileSpec {
   private             File   file = null;
   private             String type   = "";
   private             String path   = "";
+  private             boolean canonicalPending = false;
+  private             String displayName = null;
+  private             String briefDisplayName = null;
   private             String format = "";
   private             String collectionTitle = "";
   private             Date   lastAccessDate   = new Date();
   private             Date   lastBackupDate   = new Date();
-  private             String backupFolder = "";
-  private             String archiveFolder = "";
-  private             String templatesFolder = "";
-  private             String scriptsFolder = "";
-  private             String htmlFolder = "";
-  private             String easyplay = "";
-  private             String sync = "";
-  private             String syncPrefix = "";
-  private             String lastTitle = "";
+  /** Folders, sync settings, and any attributes we don't recognize. */
+  private             AttributeStore attributes = AttributeStore.EMPTY;
   private             int    noteSortParm = 0;
+  
+  /** Incremented whenever any of the data held by this spec changes. */
+  private             int    modCount = 0;
+
+  /** Told of each change to the collection title, by those indexing it. */
+  private volatile    Runnable[] titleWatchers = NO_WATCHERS;
+
+  private static final Runnable[] NO_WATCHERS = new Runnable[0];
 
   /**
    Construct a FileSpec without any data.
@@ -99,6 +128,37 @@ public class FileSpec {
   public FileSpec (File file) {
     setFile(file);
   }
+  
+  /**
+   Construct a file spec from a snapshot. 
+  
+   @param snapshot The snapshot supplying the data for the new spec. 
+  */
+  FileSpec (FileSpecSnapshot snapshot) {
+    file = snapshot.getFile();
+    path = snapshot.getPath();
+    type = snapshot.getType();
+    format = snapshot.getFormat();
+    collectionTitle = snapshot.getCollectionTitle();
+    lastAccessDate = snapshot.getLastAccessDate();
+    lastBackupDate = snapshot.getLastBackupDate();
+    attributes = snapshot.getAttributes();
+    noteSortParm = snapshot.getNoteSortParm();
+  }
+  
+  /**
+   Return an immutable copy of this file spec, which may be safely shared
+   with other threads. The canonical path is resolved first, if it has not 
+   been already. 
+  
+   @return A snapshot of this file spec as it stands now. 
+  */
+  public FileSpecSnapshot snapshot () {
+    resolvePath();
+    return new FileSpecSnapshot(file, path, type, format, collectionTitle, 
+        lastAccessDate.getTime(), lastBackupDate.getTime(), 
+        attributes, noteSortParm);
+  }
 
   /**
    Load this file specification from a recent file user preference.
@@ -119,7 +179,7 @@ public class FileSpec {
     UserPrefs prefs = UserPrefs.getShared();
     
     String fileInfo = prefs.getPref
-        (prefsQualifier + RECENT_FILE + "-" + keySuffix, "");
+        (recentFileKey(prefsQualifier, recentFileNumber), "");
     if (fileInfo.length() > 0) {
       setFileInfo (fileInfo);
     } else {
@@ -167,14 +227,49 @@ public class FileSpec {
                            accessed.
    */
   public void saveToRecentPrefs (String prefsQualifier, int recentFileNumber) {
-    
-    // Apend the file number to the keys
-    String keySuffix = String.valueOf(recentFileNumber);
+    saveToRecentPrefs (prefsQualifier, recentFileNumber, false);
+  }
+  
+  /**
+   Save this file specification to a recent file user preference.
+
+   @param prefsQualifier Used to qualify a particular group of recent files
+                         within an application. Typically supplied as an
+                         empty string.
+   @param recentFileNumber The number identifying the position of the recent
+                           file in a list. Zero would identify the first
+                           file in the list, and the file most recently
+                           accessed.
+   @param compact True to save the compact binary encoding, false to save
+                  the key-value text. Either may be read back by 
+                  loadFromRecentPrefs. 
+   */
+  public void saveToRecentPrefs 
+      (String prefsQualifier, int recentFileNumber, boolean compact) {
 
     UserPrefs prefs = UserPrefs.getShared();
     
     // Save the entire bundle as one preference
-    prefs.setPref(prefsQualifier + RECENT_FILE + "-" + keySuffix, getFileInfo());
+    if (compact) {
+      prefs.setPref(recentFileKey(prefsQualifier, recentFileNumber), 
+          getCompactFileInfo());
+    } else {
+      prefs.setPref(recentFileKey(prefsQualifier, recentFileNumber), 
+          getFileInfo());
+    }
+  }
+  
+  /**
+   Return the key of the user preference holding an entire recent file
+   specification. 
+  
+   @param prefsQualifier   Used to qualify a particular group of recent files.
+   @param recentFileNumber The position of the recent file in a list. 
+  
+   @return The preference key. 
+  */
+  static String recentFileKey (String prefsQualifier, int recentFileNumber) {
+    return prefsQualifier + RECENT_FILE + "-" + String.valueOf(recentFileNumber);
   }
   
   /**
@@ -184,107 +279,433 @@ public class FileSpec {
    @param fileInfo A string containing encoded file spec attributes, with each
                    attribute separated by a semi-colon, and each attribute 
                    consisting of a key-value pair, using an equals sign as 
-                   a separator.
+                   a separator. The compact form returned by 
+                   getCompactFileInfo is also accepted; if it has been
+                   damaged, then this spec is left unchanged. 
   */
   public void setFileInfo(String fileInfo) {
+    if (FileSpecCodec.isCompactText(fileInfo)) {
+      FileSpecCodec.decodeText(fileInfo, this);
+    } else {
+      setFileInfo((CharSequence)fileInfo);
+    }
+  }
+  
+  /**
+   Set the various File Spec variables based on the info encoded in the passed
+   character sequence. The sequence is scanned once, from front to back, and 
+   attribute names are resolved in place, so that the only Strings created
+   are the values of recognized attributes. 
+  
+   @param fileInfo A sequence containing encoded file spec attributes, with 
+                   each attribute separated by a semi-colon, and each 
+                   attribute consisting of a key-value pair, using an equals
+                   sign as a separator.
+  */
+  public void setFileInfo(CharSequence fileInfo) {
+    int length = fileInfo.length();
     int i = 0;
     int equalsIndex;
     int delimIndex;
-    while (i >= 0 && i < fileInfo.length()) {
-      while (i < fileInfo.length()
+    while (i >= 0 && i < length) {
+      while (i < length
           && Character.isWhitespace(fileInfo.charAt(i))) {
         i++;
       }
-      equalsIndex = fileInfo.indexOf(EQUALS, i);
-      delimIndex = -1;
+      equalsIndex = indexOf(fileInfo, EQUALS_CHAR, i);
       if (equalsIndex > 0) {
-        delimIndex = fileInfo.indexOf(DELIMITER, equalsIndex);
+        delimIndex = indexOf(fileInfo, DELIMITER_CHAR, equalsIndex);
         if (delimIndex < 0) {
-          delimIndex = fileInfo.length();
+          delimIndex = length;
         } // end if we found a delimiter
-        String name = fileInfo.substring(i, equalsIndex);
-        String data = fileInfo.substring(equalsIndex + 1, delimIndex);
-        setAttribute (name, data);
+        int attribute = lookupAttribute(fileInfo, i, equalsIndex);
+        if (attribute != UNKNOWN_ATTRIBUTE) {
+          setAttribute (attribute, 
+              fileInfo.subSequence(equalsIndex + 1, delimIndex).toString());
+        } else {
+          setUnknownAttribute (
+              fileInfo.subSequence(i, equalsIndex).toString(), 
+              fileInfo.subSequence(equalsIndex + 1, delimIndex).toString());
+        }
+        i = delimIndex;
+        if (i < length) {
+          i++;
+        }
+      } else {
+        // No more key-value pairs, so stop here rather than starting over
+        i = length;
       } // end if we found an equals sign
-      i = delimIndex;
-      if (i < fileInfo.length()) {
-        i++;
-      }
     } // end while more characters to evaluate
   } // end method setFileInfo
   
-  public void setAttribute (String name, String data) {
-    if (name.equalsIgnoreCase(PATH)) {
-      setPath (data);
-    }
-    else
-    if (name.equalsIgnoreCase(TYPE)) {
-      setType (data);
-    }
-    else
-    if (name.equalsIgnoreCase(FORMAT)) {
-      setFormat (data);
-    }
-    else
-    if (name.equalsIgnoreCase(COLLECTION_TITLE)) {
-      setCollectionTitle (data);
-    }
-    else
-    if (name.equalsIgnoreCase(LAST_ACCESS)) {
-      setLastAccessDate (data);
-    }
-    else
-    if (name.equalsIgnoreCase(LAST_BACKUP)) {
-      setLastBackupDate (data);
-    }
-    else
-    if (name.equalsIgnoreCase(BACKUP_FOLDER)) {
-      setBackupFolder (data);
+  /**
+   Find the next occurrence of a character within a sequence. 
+  
+   @param seq   The sequence to be searched. 
+   @param c     The character to look for. 
+   @param from  The index at which to start looking. 
+  
+   @return The index of the next occurrence, or -1 if none. 
+  */
+  private static int indexOf(CharSequence seq, char c, int from) {
+    int length = seq.length();
+    for (int j = from; j < length; j++) {
+      if (seq.charAt(j) == c) {
+        return j;
+      }
     }
-    else
-    if (name.equalsIgnoreCase(TEMPLATES_FOLDER)) {
-      setTemplatesFolder (data);
+    return -1;
+  }
+  
+  /**
+   Set the named attribute. Attributes not recognized by this version are 
+   retained, so that they may be written back out by getFileInfo. 
+  
+   @param name The name of the attribute, in any case. 
+   @param data The value of the attribute. 
+  */
+  public void setAttribute (String name, String data) {
+    int attribute = lookupAttribute(name, 0, name.length());
+    if (attribute != UNKNOWN_ATTRIBUTE) {
+      setAttribute (attribute, data);
+    } else {
+      setUnknownAttribute (name, data);
     }
-    else
-    if (name.equalsIgnoreCase(ARCHIVE_FOLDER)) {
-      setArchiveFolder (data);
+  }
+  
+  /**
+   Retain an attribute not recognized by this version, perhaps written by a
+   later version. Names that could not be written back out and then read 
+   again are ignored. 
+  
+   @param name The name of the attribute. 
+   @param data The value of the attribute. 
+  */
+  private void setUnknownAttribute (String name, String data) {
+    if (name.length() > 0
+        && name.indexOf(DELIMITER_CHAR) < 0
+        && name.indexOf(EQUALS_CHAR) < 0
+        && (! Character.isWhitespace(name.charAt(0)))) {
+      setStoredAttribute(name, data);
     }
-    else
-    if (name.equalsIgnoreCase(SCRIPTS_FOLDER)) {
-      setScriptsFolder (data);
+  }
+  
+  /**
+   Return the value of an attribute not recognized by this version. 
+  
+   @param name The name of the attribute, in any case. 
+  
+   @return The value of the attribute, or an empty string if none. 
+  */
+  public String getUnknownAttribute (String name) {
+    if (isUnknownAttribute(name)) {
+      return attributes.get(name);
+    } else {
+      return "";
     }
-    else
-    if (name.equalsIgnoreCase(HTML_FOLDER)) {
-      setHTMLFolder (data);
+  }
+  
+  /**
+   Is the stored attribute at the given position one not recognized by 
+   this version?
+  
+   @param i The position of the attribute within the attribute store. 
+  
+   @return True if the attribute is not one we recognize. 
+  */
+  private boolean isUnknownAttribute (int i) {
+    return isUnknownAttribute(attributes.getName(i));
+  }
+  
+  /**
+   Is the given attribute name one not recognized by this version?
+  
+   @param name The attribute name. 
+  
+   @return True if the attribute is not one we recognize. 
+  */
+  static boolean isUnknownAttribute (String name) {
+    return (lookupAttribute(name, 0, name.length()) == UNKNOWN_ATTRIBUTE);
+  }
+  
+  /**
+   Set one of the attributes held in the attribute store. 
+  
+   @param name  The name of the attribute. 
+   @param value The new value, or an empty string to remove the attribute. 
+  */
+  private void setStoredAttribute (String name, String value) {
+    AttributeStore updated = attributes.with(name, value);
+    if (updated != attributes) {
+      attributes = updated;
+      modCount++;
     }
-    else
-    if (name.equalsIgnoreCase(EASYPLAY)) {
-      setEasyPlay (data);
+  }
+  
+  /**
+   Return a number that changes whenever the data held by this spec changes,
+   so that callers may tell whether a previous encoding is still current. 
+   Resolving the canonical path only counts as a change if it differs from
+   the absolute path known before, since encodings are written with the 
+   path as known at the time. Changes made directly to a Date returned by
+   this spec are not detected. 
+  
+   @return The modification count. 
+  */
+  int getModCount () {
+    return modCount;
+  }
+  
+  /**
+   Ask to be told whenever the collection title of this spec changes, as an
+   index of specs by title must be. The watcher is run on the thread making
+   the change, once the new title is in place, and so should only note that
+   the title has changed.
+
+   @param watcher Run after each change to the title.
+  */
+  synchronized void watchTitle (Runnable watcher) {
+    Runnable[] watchers
+        = Arrays.copyOf(titleWatchers, titleWatchers.length + 1);
+    watchers[titleWatchers.length] = watcher;
+    titleWatchers = watchers;
+  }
+
+  /**
+   Stop telling the given watcher of changes to the collection title.
+
+   @param watcher A watcher passed to watchTitle.
+  */
+  synchronized void unwatchTitle (Runnable watcher) {
+    Runnable[] watchers = titleWatchers;
+    for (int i = 0; i < watchers.length; i++) {
+      if (watchers[i] == watcher) {
+        Runnable[] kept = new Runnable[watchers.length - 1];
+        System.arraycopy(watchers, 0, kept, 0, i);
+        System.arraycopy(watchers, i + 1, kept, i, kept.length - i);
+        titleWatchers = (kept.length == 0 ? NO_WATCHERS : kept);
+        return;
+      }
     }
-    else
-    if (name.equalsIgnoreCase(SYNC)) {
-      setSync(data);
+  }
+
+  private void titleChanged () {
+    for (Runnable watcher : titleWatchers) {
+      watcher.run();
     }
-    else
-    if (name.equalsIgnoreCase(SYNC_PREFIX)) {
-      setSyncPrefix(data);
+  }
+
+  /**
+   Return the store holding the optional attributes of this spec, including
+   any not recognized by this version. 
+  
+   @return The attribute store, which is never modified once built. 
+  */
+  AttributeStore getAttributes () {
+    return attributes;
+  }
+  
+  /**
+   Set the attribute identified by one of the attribute codes. 
+  
+   @param attribute The attribute code, as returned by lookupAttribute.
+   @param data      The value to be assigned. 
+  */
+  private void setAttribute (int attribute, String data) {
+    switch (attribute) {
+      case PATH_ATTRIBUTE:
+        setPath (data);
+        break;
+      case TYPE_ATTRIBUTE:
+        setType (data);
+        break;
+      case FORMAT_ATTRIBUTE:
+        setFormat (data);
+        break;
+      case COLLECTION_TITLE_ATTRIBUTE:
+        setCollectionTitle (data);
+        break;
+      case LAST_ACCESS_ATTRIBUTE:
+        setLastAccessDate (data);
+        break;
+      case LAST_BACKUP_ATTRIBUTE:
+        setLastBackupDate (data);
+        break;
+      case BACKUP_FOLDER_ATTRIBUTE:
+        setBackupFolder (data);
+        break;
+      case TEMPLATES_FOLDER_ATTRIBUTE:
+        setTemplatesFolder (data);
+        break;
+      case ARCHIVE_FOLDER_ATTRIBUTE:
+        setArchiveFolder (data);
+        break;
+      case SCRIPTS_FOLDER_ATTRIBUTE:
+        setScriptsFolder (data);
+        break;
+      case HTML_FOLDER_ATTRIBUTE:
+        setHTMLFolder (data);
+        break;
+      case EASYPLAY_ATTRIBUTE:
+        setEasyPlay (data);
+        break;
+      case SYNC_ATTRIBUTE:
+        setSync (data);
+        break;
+      case SYNC_PREFIX_ATTRIBUTE:
+        setSyncPrefix (data);
+        break;
+      case LAST_TITLE_ATTRIBUTE:
+        setLastTitle (data);
+        break;
+      case NOTE_SORT_PARM_ATTRIBUTE:
+        setNoteSortParm (data);
+        break;
+      default:
+        break;
     }
-    else
-    if (name.equalsIgnoreCase(LAST_TITLE)) {
-      setLastTitle(data);
+  }
+  
+  /**
+   Identify the attribute whose name occupies the given region of a sequence,
+   ignoring case, without creating any new objects. Candidates are first 
+   narrowed down by the length of the name, and then by its first character. 
+  
+   @param seq   The sequence containing the name. 
+   @param start The index of the first character of the name. 
+   @param end   The index just past the last character of the name. 
+  
+   @return One of the attribute codes, or UNKNOWN_ATTRIBUTE. 
+  */
+  static int lookupAttribute (CharSequence seq, int start, int end) {
+    switch (end - start) {
+      case 4:
+        switch (fold(seq.charAt(start))) {
+          case 'p':
+            return matchAttribute (seq, start, PATH, PATH_ATTRIBUTE);
+          case 't':
+            return matchAttribute (seq, start, TYPE, TYPE_ATTRIBUTE);
+          case 's':
+            return matchAttribute (seq, start, SYNC, SYNC_ATTRIBUTE);
+          default:
+            break;
+        }
+        break;
+      case 6:
+        return matchAttribute (seq, start, FORMAT, FORMAT_ATTRIBUTE);
+      case 8:
+        return matchAttribute (seq, start, EASYPLAY, EASYPLAY_ATTRIBUTE);
+      case 10:
+        return matchAttribute (seq, start, LAST_TITLE, LAST_TITLE_ATTRIBUTE);
+      case 11:
+        switch (fold(seq.charAt(start))) {
+          case 'l':
+            if (fold(seq.charAt(start + 5)) == 'a') {
+              return matchAttribute 
+                  (seq, start, LAST_ACCESS, LAST_ACCESS_ATTRIBUTE);
+            } else {
+              return matchAttribute 
+                  (seq, start, LAST_BACKUP, LAST_BACKUP_ATTRIBUTE);
+            }
+          case 'h':
+            return matchAttribute (seq, start, HTML_FOLDER, HTML_FOLDER_ATTRIBUTE);
+          case 's':
+            return matchAttribute (seq, start, SYNC_PREFIX, SYNC_PREFIX_ATTRIBUTE);
+          default:
+            break;
+        }
+        break;
+      case 13:
+        return matchAttribute (seq, start, BACKUP_FOLDER, BACKUP_FOLDER_ATTRIBUTE);
+      case 14:
+        switch (fold(seq.charAt(start))) {
+          case 'a':
+            return matchAttribute 
+                (seq, start, ARCHIVE_FOLDER, ARCHIVE_FOLDER_ATTRIBUTE);
+          case 's':
+            return matchAttribute 
+                (seq, start, SCRIPTS_FOLDER, SCRIPTS_FOLDER_ATTRIBUTE);
+          case 'n':
+            return matchAttribute 
+                (seq, start, NOTE_SORT_PARM, NOTE_SORT_PARM_ATTRIBUTE);
+          default:
+            break;
+        }
+        break;
+      case 16:
+        switch (fold(seq.charAt(start))) {
+          case 'c':
+            return matchAttribute 
+                (seq, start, COLLECTION_TITLE, COLLECTION_TITLE_ATTRIBUTE);
+          case 't':
+            return matchAttribute 
+                (seq, start, TEMPLATES_FOLDER, TEMPLATES_FOLDER_ATTRIBUTE);
+          default:
+            break;
+        }
+        break;
+      default:
+        break;
     }
-    else
-    if (name.equalsIgnoreCase(NOTE_SORT_PARM)) {
-      setNoteSortParm(data);
+    return UNKNOWN_ATTRIBUTE;
+  }
+  
+  /**
+   Fold a character to a single case, consistent with the comparison 
+   performed by String.equalsIgnoreCase. 
+  
+   @param c The character to be folded. 
+  
+   @return The folded character. 
+  */
+  private static char fold(char c) {
+    return Character.toLowerCase(Character.toUpperCase(c));
+  }
+  
+  /**
+   See if the name at the given position matches the given attribute name, 
+   using the same rules as String.equalsIgnoreCase. 
+  
+   @param seq       The sequence containing the name.
+   @param start     The index of the first character of the name. 
+   @param name      The attribute name to compare against. The caller has 
+                    already determined that the lengths are equal. 
+   @param attribute The code to be returned if the names match. 
+  
+   @return The passed attribute code if the names match, otherwise
+           UNKNOWN_ATTRIBUTE. 
+  */
+  private static int matchAttribute 
+      (CharSequence seq, int start, String name, int attribute) {
+    for (int j = 0; j < name.length(); j++) {
+      char c1 = seq.charAt(start + j);
+      char c2 = name.charAt(j);
+      if (c1 != c2) {
+        char u1 = Character.toUpperCase(c1);
+        char u2 = Character.toUpperCase(c2);
+        if (u1 != u2
+            && Character.toLowerCase(u1) != Character.toLowerCase(u2)) {
+          return UNKNOWN_ATTRIBUTE;
+        }
+      }
     }
+    return attribute;
   }
   
+  /**
+   Return the attributes of this spec as a string that may be passed to 
+   setFileInfo. A path whose canonical form has yet to be resolved is 
+   written in its absolute form, and no title is derived from it, so that 
+   the file system is never consulted. 
+  
+   @return The encoded attributes. 
+  */
   public String getFileInfo() {
     StringBuilder str = new StringBuilder();
-    addAttribute(str, PATH, path);
+    addAttribute(str, PATH, getKnownPath());
     addAttribute(str, TYPE, type);
     addAttribute(str, FORMAT, format);
-    addAttribute(str, COLLECTION_TITLE, getCollectionTitle());
+    addAttribute(str, COLLECTION_TITLE, getKnownCollectionTitle());
     addAttribute(str, LAST_ACCESS, getLastAccessDateAsString());
     addAttribute(str, LAST_BACKUP, getLastBackupDateAsString());
     addAttribute(str, BACKUP_FOLDER, getBackupFolder());
@@ -297,9 +718,24 @@ public class FileSpec {
     addAttribute(str, SYNC_PREFIX, getSyncPrefix());
     addAttribute(str, LAST_TITLE, getLastTitle());
     addAttribute(str, NOTE_SORT_PARM, getNoteSortParmAsString());
+    for (int i = 0; i < attributes.size(); i++) {
+      if (isUnknownAttribute(i)) {
+        addAttribute(str, attributes.getName(i), attributes.getValue(i));
+      }
+    }
     return str.toString();
   }
   
+  /**
+   Return the attributes of this file spec in a compact binary encoding, 
+   expressed as text so that it may be stored as a user preference. 
+  
+   @return The compact form, which may be passed to setFileInfo. 
+  */
+  public String getCompactFileInfo() {
+    return FileSpecCodec.encodeAsText(this);
+  }
+  
   private void addAttribute (StringBuilder str, String name, String data) {
     if (data != null && data.length() > 0) {
       str.append(name);
@@ -326,22 +762,123 @@ public class FileSpec {
     setSync(file2.getSync());
     setLastTitle(file2.getLastTitle());
     setNoteSortParm(file2.getNoteSortParm());
-    setCollectionTitle(file2.getCollectionTitle());
+    setCollectionTitle(file2.getKnownCollectionTitle());
+    for (int i = 0; i < file2.attributes.size(); i++) {
+      if (file2.isUnknownAttribute(i)) {
+        setStoredAttribute
+            (file2.attributes.getName(i), file2.attributes.getValue(i));
+      }
+    }
   }
   
+  /**
+   Identify the file. Its absolute path is used until its canonical path is
+   actually needed, at which point the canonical path is obtained from the
+   shared CanonicalPathCache. 
+  
+   @param file The file to be identified by this spec. 
+  */
   public void setFile (File file) {
     this.file = file;
     path = file.getAbsolutePath();
-    try {
-      path = file.getCanonicalPath();
-    } catch (java.io.IOException e) {
-      
+    modCount++;
+    canonicalPending = true;
+    clearDisplayNames();
+  }
+  
+  /**
+   If the canonical path has not yet been resolved, then resolve it now, 
+   and derive a collection title from it, if we don't already have one. 
+  */
+  private void resolvePath() {
+    if (canonicalPending) {
+      adoptCanonicalPath(CanonicalPathCache.getShared().getCanonicalPath(file));
+    }
+  }
+  
+  /**
+   Return the path as far as it is known without going to the file system:
+   the canonical path, if it has been resolved or is already in the shared 
+   CanonicalPathCache, and otherwise the absolute path. 
+  
+   @return The path as known so far. 
+  */
+  String getKnownPath() {
+    if (canonicalPending) {
+      String canonicalPath 
+          = CanonicalPathCache.getShared().getCachedPath(file);
+      if (canonicalPath != null) {
+        adoptCanonicalPath(canonicalPath);
+      }
+    }
+    return path;
+  }
+  
+  /**
+   Is the canonical path known, either because it has been resolved, or 
+   because it is already in the shared CanonicalPathCache?
+  
+   @return True if the canonical path is known without going to the 
+           file system. 
+  */
+  boolean isCanonicalPathKnown() {
+    getKnownPath();
+    return (! canonicalPending);
+  }
+  
+  /**
+   Use a canonical path resolved elsewhere, such as on a background thread,
+   unless the path has been resolved already, or the spec has since been 
+   given another file. 
+  
+   @param resolvedFile  The file whose canonical path was resolved. 
+   @param canonicalPath The canonical path of that file. 
+  */
+  void adoptResolvedPath(File resolvedFile, String canonicalPath) {
+    if (canonicalPending && resolvedFile == file) {
+      adoptCanonicalPath(canonicalPath);
+    }
+  }
+  
+  /**
+   Use the canonical path, once resolved, in place of the absolute path. A 
+   title derived from it counts as a change, so that an encoding written 
+   without the title is written again. 
+  
+   @param canonicalPath The canonical path of the file. 
+  */
+  private void adoptCanonicalPath(String canonicalPath) {
+    canonicalPending = false;
+    if (! canonicalPath.equals(path)) {
+      path = canonicalPath;
+      modCount++;
+    }
+    clearDisplayNames();
+    if (collectionTitle == null || collectionTitle.length() == 0) {
+      setCollectionTitleFromPath();
+      modCount++;
+    }
+  }
+  
+  /**
+   Return the file whose canonical path has yet to be resolved. 
+  
+   @return The file, if its canonical path has yet to be resolved, 
+           otherwise null. 
+  */
+  File getUnresolvedFile() {
+    if (canonicalPending) {
+      return file;
+    } else {
+      return null;
     }
-    setCollectionTitleFromPath();
   }
   
   public void setPath(String path) {
     this.path = path;
+    modCount++;
+    canonicalPending = false;
+    clearDisplayNames();
     setCollectionTitleFromPath();
     file = new File(path);
   }
@@ -397,6 +934,7 @@ public class FileSpec {
    */
   public void setType (String type) {
     this.type = type;
+    modCount++;
   }
 
   /**
@@ -423,12 +961,23 @@ public class FileSpec {
    @return Name of the file or url.
    */
   public String getPath () {
+    resolvePath();
     return path;
   }
   
+  /**
+   If we don't yet have a collection title, then derive one from the path, 
+   using the file or folder name plus as many enclosing folders as will fit
+   within the brief display name length. Folder names are separated by 
+   spaces, and percent-encoded characters are decoded. 
+  */
   private void setCollectionTitleFromPath() {
     if (collectionTitle == null || collectionTitle.length() == 0) {
-      StringBuilder work = new StringBuilder();
+      
+      // Scan the path from the back to see where the title should start,
+      // measuring each segment as it will appear once decoded
+      int workLength = 0;
+      int contentStart = -1;
       int i = path.length();
       int end = path.length();
       char c = ' ';
@@ -437,70 +986,146 @@ public class FileSpec {
         i--;
         c = path.charAt(i);
         if (c == '%') {
-          if (((i + 2) < path.length())
-              && ((i + 2) < end)
-              && (path.substring(i, i + 3).equals("%20"))) {
-            work.insert(0, path.substring(i + 3, end));
+          if (isSpaceEscape(i)) {
+            int segmentLength 
+                = PercentDecoder.decodedLength(path, i + 3, end);
+            if (workLength == 0 && segmentLength > 0) {
+              contentStart = i + 3;
+            }
+            workLength += segmentLength;
             end = i;
           }
         }
         else
         if (c == '/') {
-          if (work.length() == 0
-              || (work.length() + (end - i) < BRIEF_DISPLAY_NAME_MAX_LENGTH)) {
-            if (work.length() > 0) {
-              work.insert(0, " ");
+          int segmentLength = PercentDecoder.decodedLength(path, i + 1, end);
+          if (workLength == 0
+              || (workLength + segmentLength + 1 
+                < BRIEF_DISPLAY_NAME_MAX_LENGTH)) {
+            if (workLength > 0) {
+              workLength++;
+            } 
+            else
+            if (segmentLength > 0) {
+              contentStart = i + 1;
             }
-            work.insert(0, path.substring(i + 1, end));
+            workLength += segmentLength;
             end = i;
           } else {
             done = true;
           }
         } // end if we found a slash
       } // end while scanning path from the back
+      
+      // Now build the title from the front, decoding each segment directly
+      // into the result. A segment following a slash is separated from 
+      // whatever follows it by a space, while one following an encoded 
+      // space is not. 
+      StringBuilder work = new StringBuilder(workLength);
+      int j = end;
+      while (j < path.length()) {
+        boolean afterSlash = (path.charAt(j) == '/');
+        int segmentStart = j + (afterSlash ? 1 : 3);
+        int segmentEnd = nextTitleBoundary(segmentStart);
+        PercentDecoder.decode(path, segmentStart, segmentEnd, work);
+        if (afterSlash && segmentEnd < contentStart) {
+          work.append(' ');
+        }
+        j = segmentEnd;
+      } // end while building title from the front
       collectionTitle = work.toString();
+      titleChanged();
     } // end if we don't yet have a collection title
   } // end method 
+  
+  /**
+   Find the next slash or encoded space within the path. 
+  
+   @param from The index at which to start looking. 
+  
+   @return The index of the next boundary, or the length of the path if 
+           there are no more. 
+  */
+  private int nextTitleBoundary(int from) {
+    int j = from;
+    while (j < path.length()
+        && path.charAt(j) != '/'
+        && (! isSpaceEscape(j))) {
+      j++;
+    }
+    return j;
+  }
+  
+  /**
+   Does an encoded space begin at the given position within the path?
+  
+   @param i The index to be checked. 
+  
+   @return True if "%20" starts at this index. 
+  */
+  private boolean isSpaceEscape(int i) {
+    return (path.startsWith("%20", i));
+  }
 
   /**
-   Return a path suitable for display. Currently replaces occurrences of "%20"
-   with spaces.
+   Forget any display names derived from the path, so that they will be 
+   derived again when next requested. 
+  */
+  private void clearDisplayNames() {
+    displayName = null;
+    briefDisplayName = null;
+  }
+
+  /**
+   Return a path suitable for display, with any percent-encoded characters
+   (such as "%20" for a space) decoded. The result is derived once, and then
+   retained until the path changes. 
 
    @return A path suitable for display.
    */
   public String getDisplayName () {
-    StringBuffer work = new StringBuffer (path);
-    int i = 0;
-    while (i >= 0) {
-      i = work.indexOf("%20", i);
-      if (i >= 0) {
-        work.delete (i, i + 3);
-        work.insert (i, " ");
-        i++;
-      } // end if search string was found
-    } // end while still finding occurrences of the search string
-    return work.toString();
+    resolvePath();
+    if (displayName == null) {
+      displayName = PercentDecoder.decode(path);
+    }
+    return displayName;
   }
 
   /**
-   Replaces occurrences of "%20" with spaces, and only show the file name
+   Decodes percent-encoded characters, and only show the file name
    and as many of its enclosing folders as can fit in a reasonable length.
+   The result is derived once, and then retained until the path changes. 
 
    @return A brief path suitable for display.
    */
   public String getBriefDisplayName () {
-    String displayName = getDisplayName();
+    String fullName = getDisplayName();
+    if (briefDisplayName == null) {
+      briefDisplayName = briefName(fullName);
+    }
+    return briefDisplayName;
+  }
+  
+  /**
+   Return the file name and as many of its enclosing folders as can fit in 
+   a reasonable length. 
+  
+   @param fullName The full display name. 
+  
+   @return The brief display name. 
+  */
+  static String briefName (String fullName) {
     int lastSlashIndex = -1;
-    int j = displayName.length() - 1;
+    int j = fullName.length() - 1;
     int length = 0;
     while (j >= 0 && length < BRIEF_DISPLAY_NAME_MAX_LENGTH) {
-      if (displayName.charAt(j) == '/' || displayName.charAt(j) == '\\') {
+      if (fullName.charAt(j) == '/' || fullName.charAt(j) == '\\') {
         lastSlashIndex = j;
       }
       j--;
       length++;
     }
-    return displayName.substring(lastSlashIndex + 1);
+    return fullName.substring(lastSlashIndex + 1);
   }
 
   /**
@@ -510,6 +1135,7 @@ public class FileSpec {
    */
   public void setFormat (String format) {
     this.format = format;
+    modCount++;
   }
 
   /**
@@ -529,16 +1155,13 @@ public class FileSpec {
                   accessed by the application currently running.
    */
   public void setLastAccessDate (String dateStr) {
-    DateFormat formatter = DateFormat.getDateTimeInstance();
-    if (dateStr.length() == 0) {
+    Date parsed = DateCodec.parse(dateStr);
+    if (parsed == null) {
       setLastAccessDateToNow();
     } else {
-      try {
-        lastAccessDate = formatter.parse(dateStr);
-      } catch (ParseException e) {
-        setLastAccessDateToNow();
-      } // end catch Parse Exception
-    } // end if lastAccessDate string length > 0
+      lastAccessDate = parsed;
+      modCount++;
+    }
   } // end method setLastAccessDate
 
   /**
@@ -550,6 +1173,7 @@ public class FileSpec {
    */
   public void setLastAccessDate (Date lastAccessDate) {
     this.lastAccessDate = lastAccessDate;
+    modCount++;
   }
 
   /**
@@ -557,6 +1181,7 @@ public class FileSpec {
    */
   public void setLastAccessDateToNow () {
     lastAccessDate = new Date();
+    modCount++;
   }
 
   /**
@@ -575,11 +1200,10 @@ public class FileSpec {
    accessed this file.
 
    @return The lastAccessDate and time on which the currently running application last
-   accessed this file.
+   accessed this file, formatted as an ISO-8601 instant. 
    */
   public String getLastAccessDateAsString () {
-    DateFormat formatter = DateFormat.getDateTimeInstance();
-    return (formatter.format(getLastAccessDate()));
+    return DateCodec.format(getLastAccessDate());
   }
 
   /**
@@ -590,16 +1214,13 @@ public class FileSpec {
                   accessed by the application currently running.
    */
   public void setLastBackupDate (String dateStr) {
-    DateFormat formatter = DateFormat.getDateTimeInstance();
-    if (dateStr.length() == 0) {
+    Date parsed = DateCodec.parse(dateStr);
+    if (parsed == null) {
       setLastBackupDateToNow();
     } else {
-      try {
-        lastBackupDate = formatter.parse(dateStr);
-      } catch (ParseException e) {
-        setLastBackupDateToNow();
-      } // end catch Parse Exception
-    } // end if lastBackupDate string length > 0
+      lastBackupDate = parsed;
+      modCount++;
+    }
   } // end method setLastBackupDate
 
   /**
@@ -611,6 +1232,7 @@ public class FileSpec {
    */
   public void setLastBackupDate (Date lastBackupDate) {
     this.lastBackupDate = lastBackupDate;
+    modCount++;
   }
 
   /**
@@ -618,6 +1240,7 @@ public class FileSpec {
    */
   public void setLastBackupDateToNow () {
     lastBackupDate = new Date();
+    modCount++;
   }
 
   /**
@@ -636,167 +1259,163 @@ public class FileSpec {
    accessed this file.
 
    @return The lastBackupDate and time on which the currently running application last
-   accessed this file.
+   accessed this file, formatted as an ISO-8601 instant. 
    */
   public String getLastBackupDateAsString () {
-    DateFormat formatter = DateFormat.getDateTimeInstance();
-    return (formatter.format(getLastBackupDate()));
+    return DateCodec.format(getLastBackupDate());
   }
   
   public void setBackupFolder (File backupFolder) {
     if (backupFolder.isFile()) {
       backupFolder = backupFolder.getParentFile();
     }
-    try {
-      this.backupFolder = backupFolder.getCanonicalPath();
-    } catch (java.io.IOException e) {
-      this.backupFolder = backupFolder.getAbsolutePath();
-    }
+    setBackupFolder 
+        (CanonicalPathCache.getShared().getCanonicalPath(backupFolder));
   }
   
   public void setBackupFolder (String backupFolder) {
-    this.backupFolder = backupFolder;
+    setStoredAttribute(BACKUP_FOLDER, AttributePool.intern(backupFolder));
   }
   
   public String getBackupFolder () {
-    return backupFolder;
+    return attributes.get(BACKUP_FOLDER);
   }
   
   public void setArchiveFolder (File archiveFolder) {
     if (archiveFolder.isFile()) {
       archiveFolder = archiveFolder.getParentFile();
     }
-    try {
-      this.archiveFolder = archiveFolder.getCanonicalPath();
-    } catch (IOException e) {
-      this.archiveFolder = archiveFolder.getAbsolutePath();
-    }
+    setArchiveFolder 
+        (CanonicalPathCache.getShared().getCanonicalPath(archiveFolder));
   }
   
   public void setArchiveFolder (String archiveFolder) {
-    this.archiveFolder = archiveFolder;
+    setStoredAttribute(ARCHIVE_FOLDER, AttributePool.intern(archiveFolder));
   }
   
   public String getArchiveFolder() {
-    return archiveFolder;
+    return attributes.get(ARCHIVE_FOLDER);
   }
   
   public void setTemplatesFolder (File templatesFolder) {
     if (templatesFolder.isFile()) {
       templatesFolder = templatesFolder.getParentFile();
     }
-    try {
-      this.templatesFolder = templatesFolder.getCanonicalPath();
-    } catch (java.io.IOException e) {
-      this.templatesFolder = templatesFolder.getAbsolutePath();
-    }
+    setTemplatesFolder 
+        (CanonicalPathCache.getShared().getCanonicalPath(templatesFolder));
   }
   
   public void setTemplatesFolder (String templatesFolder) {
-    this.templatesFolder = templatesFolder;
+    setStoredAttribute(TEMPLATES_FOLDER, AttributePool.intern(templatesFolder));
   }
   
   public String getTemplatesFolder () {
-    return templatesFolder;
+    return attributes.get(TEMPLATES_FOLDER);
   }
   
   public void setScriptsFolder (File scriptsFolder) {
     if (scriptsFolder.isFile()) {
       scriptsFolder = scriptsFolder.getParentFile();
     }
-    try {
-      this.scriptsFolder = scriptsFolder.getCanonicalPath();
-    } catch (java.io.IOException e) {
-      this.scriptsFolder = scriptsFolder.getAbsolutePath();
-    }
+    setScriptsFolder 
+        (CanonicalPathCache.getShared().getCanonicalPath(scriptsFolder));
   }
   
   public void setHTMLFolder (File htmlFolder) {
     if (htmlFolder.isFile()) {
       htmlFolder = htmlFolder.getParentFile();
     }
-    try {
-      this.htmlFolder = htmlFolder.getCanonicalPath();
-    } catch (java.io.IOException e) {
-      this.htmlFolder = htmlFolder.getAbsolutePath();
-    }
+    setHTMLFolder 
+        (CanonicalPathCache.getShared().getCanonicalPath(htmlFolder));
   }
   
   public void setScriptsFolder (String scriptsFolder) {
-    this.scriptsFolder = scriptsFolder;
+    setStoredAttribute(SCRIPTS_FOLDER, AttributePool.intern(scriptsFolder));
   }
   
   public void setHTMLFolder (String htmlFolder) {
-    this.htmlFolder = htmlFolder;
+    setStoredAttribute(HTML_FOLDER, AttributePool.intern(htmlFolder));
   }
   
   public String getScriptsFolder () {
-    return scriptsFolder;
+    return attributes.get(SCRIPTS_FOLDER);
   }
   
   public String getHTMLFolder () {
-    return htmlFolder;
+    return attributes.get(HTML_FOLDER);
   }
   
   public void setEasyPlay (String easyplay) {
-    this.easyplay = easyplay;
+    setStoredAttribute(EASYPLAY, easyplay);
   }
   
   public String getEasyPlay () {
-    return easyplay;
+    return attributes.get(EASYPLAY);
   }
   
   public void setSync(String sync) {
-    this.sync = sync;
+    setStoredAttribute(SYNC, sync);
   }
   
   public void setSync(boolean sync) {
     if (sync) {
-      this.sync = "Yes";
+      setSync("Yes");
     } else {
-      this.sync = "No";
+      setSync("No");
     }
   }
   
   public boolean getSync() {
+    return isSyncOn(getSyncAsString());
+  }
+  
+  /**
+   Does the given sync value indicate that sync is on?
+  
+   @param sync The sync value, such as "Yes" or "No". 
+  
+   @return True if the value starts with 'y' or 't', in any case. 
+  */
+  static boolean isSyncOn (String sync) {
     return (sync.length() > 0
         && (sync.toLowerCase().charAt(0) == 'y'
           || sync.toLowerCase().charAt(0) == 't'));
-    
   }
   
   public String getSyncAsString() {
-    return sync;
+    return attributes.get(SYNC);
   }
   
   public void setSyncPrefix(String syncPrefix) {
-    this.syncPrefix = syncPrefix;
+    setStoredAttribute(SYNC_PREFIX, AttributePool.intern(syncPrefix));
   }
   
   public String getSyncPrefix() {
-    return syncPrefix;
+    return attributes.get(SYNC_PREFIX);
   }
   
   public void setLastTitle(String lastTitle) {
-    this.lastTitle = lastTitle;
+    setStoredAttribute(LAST_TITLE, lastTitle);
   }
   
   public boolean hasLastTitle() {
-    return (lastTitle != null && lastTitle.length() > 0);
+    return (getLastTitle().length() > 0);
   }
   
   public String getLastTitle() {
-    return lastTitle;
+    return attributes.get(LAST_TITLE);
   }
   
   public void setNoteSortParm(int noteSortParm) {
     this.noteSortParm = noteSortParm;
+    modCount++;
   }
   
   public void setNoteSortParm(String noteSortParm) {
     try {
       int parm = Integer.parseInt(noteSortParm);
       this.noteSortParm = parm;
+      modCount++;
     } catch (NumberFormatException e) {
       // Leave it alone if bad number
     }
@@ -816,20 +1435,39 @@ public class FileSpec {
   
   public void setCollectionTitle(String collectionTitle) {
     if (collectionTitle != null && collectionTitle.length() > 0) {
+      boolean changed = (! collectionTitle.equals(this.collectionTitle));
       this.collectionTitle = collectionTitle;
+      modCount++;
+      if (changed) {
+        titleChanged();
+      }
     }
   }
   
   public boolean hasCollectionTitle() {
+    resolvePath();
     return (collectionTitle != null && collectionTitle.length() > 0);
   }
   
   public String getCollectionTitle() {
+    resolvePath();
+    return collectionTitle;
+  }
+  
+  /**
+   Return the collection title as far as it is known without going to the 
+   file system: the title given, or the one derived from the canonical path 
+   once that is known, and otherwise null. 
+  
+   @return The title as known so far, or null. 
+  */
+  String getKnownCollectionTitle() {
+    getKnownPath();
     return collectionTitle;
   }
   
   public String toString() {
-    return path;
+    return getPath();
   }
   
 }
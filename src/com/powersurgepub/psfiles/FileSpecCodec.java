@@ -0,0 +1,600 @@
+/*
+ * Copyright 1999 - 2017 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.powersurgepub.psfiles;
+
+  import java.nio.charset.*;
+  import java.util.*;
+
+/**
+ A compact, versioned binary encoding for a file spec, used as an
+ alternative to the key-value text returned by FileSpec.getFileInfo. <p>
+
+ The encoding starts with a single version byte, followed by a sequence of
+ fields. Each field starts with a varint tag, made up of the field number
+ shifted left one bit, with the low bit identifying the wire type: 0 for a
+ varint value and 1 for a length-prefixed run of UTF-8 bytes. Dates are
+ stored as zigzag varint milliseconds since the epoch. Empty strings are omitted,
+ just as they are in the text form. Fields with numbers not known to this
+ version are skipped when reading, so that new fields may be added later
+ without breaking older readers. Attributes that FileSpec itself does not
+ recognize are written as name-value pairs, so that they survive a round
+ trip. <p>
+
+ Within user preferences, the bytes are stored as Base64 text following
+ the COMPACT_PREFIX character, which never begins the text form.
+ */
+public final class FileSpecCodec {
+
+  public static final byte   VERSION              = 1;
+  public static final String COMPACT_PREFIX       = "~";
+
+  private static final int   WIRE_VARINT          = 0;
+  private static final int   WIRE_BYTES           = 1;
+
+  static final int   PATH_FIELD                   = 1;
+  static final int   TYPE_FIELD                   = 2;
+  static final int   FORMAT_FIELD                 = 3;
+  static final int   COLLECTION_TITLE_FIELD       = 4;
+  static final int   LAST_ACCESS_FIELD            = 5;
+  static final int   LAST_BACKUP_FIELD            = 6;
+  static final int   BACKUP_FOLDER_FIELD          = 7;
+  static final int   ARCHIVE_FOLDER_FIELD         = 8;
+  static final int   TEMPLATES_FOLDER_FIELD       = 9;
+  static final int   SCRIPTS_FOLDER_FIELD         = 10;
+  static final int   HTML_FOLDER_FIELD            = 11;
+  static final int   EASYPLAY_FIELD               = 12;
+  static final int   SYNC_FIELD                   = 13;
+  static final int   SYNC_PREFIX_FIELD            = 14;
+  static final int   LAST_TITLE_FIELD             = 15;
+  static final int   NOTE_SORT_PARM_FIELD         = 16;
+  static final int   UNKNOWN_ATTRIBUTE_FIELD      = 17;
+
+  private FileSpecCodec() {
+    // No instances required
+  }
+
+  /**
+   Encode a file spec as compact text, suitable for storage as a user
+   preference.
+
+   @param spec The file spec to be encoded.
+
+   @return The COMPACT_PREFIX followed by the Base64 form of the encoded
+           bytes.
+  */
+  public static String encodeAsText(FileSpec spec) {
+    return toText(encode(spec));
+  }
+
+  /**
+   Return the compact text form of bytes already encoded.
+
+   @param bytes The encoded bytes.
+
+   @return The COMPACT_PREFIX followed by the Base64 form of the bytes.
+  */
+  static String toText(byte[] bytes) {
+    return COMPACT_PREFIX
+        + Base64.getEncoder().withoutPadding().encodeToString(bytes);
+  }
+
+  /**
+   Indicate whether the passed string appears to hold the compact text form.
+
+   @param fileInfo The stored string.
+
+   @return True if the string starts with the compact prefix.
+  */
+  public static boolean isCompactText(String fileInfo) {
+    return (fileInfo != null && fileInfo.startsWith(COMPACT_PREFIX));
+  }
+
+  /**
+   Decode the compact text form into the passed file spec.
+
+   @param fileInfo The stored string, including the compact prefix.
+   @param spec     The file spec to receive the decoded values.
+
+   @return True if the string could be decoded, false if it is not in the
+           compact form or is damaged.
+  */
+  public static boolean decodeText(String fileInfo, FileSpec spec) {
+    if (! isCompactText(fileInfo)) {
+      return false;
+    }
+    byte[] bytes;
+    try {
+      bytes = Base64.getDecoder().decode(
+          fileInfo.substring(COMPACT_PREFIX.length()).trim());
+    } catch (IllegalArgumentException e) {
+      return false;
+    }
+    return decode(bytes, 0, bytes.length, spec);
+  }
+
+  /**
+   Encode a file spec as bytes. A path whose canonical form has yet to be 
+   resolved is written in its absolute form, without a title derived from 
+   it. 
+
+   @param spec The file spec to be encoded.
+
+   @return The encoded bytes.
+  */
+  public static byte[] encode(FileSpec spec) {
+    Writer out = new Writer();
+    out.writeByte(VERSION);
+    out.writeString(PATH_FIELD, spec.getKnownPath());
+    out.writeString(TYPE_FIELD, spec.getType());
+    out.writeString(FORMAT_FIELD, spec.getFormat());
+    out.writeString(COLLECTION_TITLE_FIELD, spec.getKnownCollectionTitle());
+    out.writeDate(LAST_ACCESS_FIELD, spec.getLastAccessDate());
+    out.writeDate(LAST_BACKUP_FIELD, spec.getLastBackupDate());
+    out.writeString(BACKUP_FOLDER_FIELD, spec.getBackupFolder());
+    out.writeString(ARCHIVE_FOLDER_FIELD, spec.getArchiveFolder());
+    out.writeString(TEMPLATES_FOLDER_FIELD, spec.getTemplatesFolder());
+    out.writeString(SCRIPTS_FOLDER_FIELD, spec.getScriptsFolder());
+    out.writeString(HTML_FOLDER_FIELD, spec.getHTMLFolder());
+    out.writeString(EASYPLAY_FIELD, spec.getEasyPlay());
+    out.writeString(SYNC_FIELD, spec.getSyncAsString());
+    out.writeString(SYNC_PREFIX_FIELD, spec.getSyncPrefix());
+    out.writeString(LAST_TITLE_FIELD, spec.getLastTitle());
+    out.writeSigned(NOTE_SORT_PARM_FIELD, spec.getNoteSortParm());
+    AttributeStore attributes = spec.getAttributes();
+    for (int i = 0; i < attributes.size(); i++) {
+      String name = attributes.getName(i);
+      if (FileSpec.isUnknownAttribute(name)) {
+        out.writePair(UNKNOWN_ATTRIBUTE_FIELD, name, attributes.getValue(i));
+      }
+    }
+    return out.toByteArray();
+  }
+
+  /**
+   Decode bytes into the passed file spec. The bytes are first decoded into
+   a scratch spec, and the fields found there are copied to the passed spec
+   only once the whole encoding has been read, so that a damaged encoding
+   leaves the passed spec as it was. Fields missing from the encoding are
+   left unchanged, as they are by the text form.
+
+   @param bytes  The array holding the encoded bytes.
+   @param offset The index of the version byte.
+   @param length The number of encoded bytes.
+   @param spec   The file spec to receive the decoded values.
+
+   @return True if the bytes were decoded successfully, false if the version
+           is not supported or the encoding is damaged.
+  */
+  public static boolean decode
+      (byte[] bytes, int offset, int length, FileSpec spec) {
+    FileSpec scratch = new FileSpec();
+    long fields = decodeFields(bytes, offset, length, scratch);
+    if (fields < 0) {
+      return false;
+    } else {
+      copyFields(scratch, spec, fields);
+      return true;
+    }
+  }
+
+  /**
+   Decode bytes into a file spec, applying fields in the order in which
+   they appear.
+
+   @param bytes  The array holding the encoded bytes.
+   @param offset The index of the version byte.
+   @param length The number of encoded bytes.
+   @param spec   The scratch file spec to receive the decoded values.
+
+   @return A bit set with a bit on for each field number found, or -1 if
+           the version is not supported or the encoding is damaged.
+  */
+  private static long decodeFields
+      (byte[] bytes, int offset, int length, FileSpec spec) {
+    Reader in = new Reader(bytes, offset, length);
+    long fields = 0;
+    try {
+      if (in.readByte() != VERSION) {
+        return -1;
+      }
+      while (in.hasMore()) {
+        long tag = in.readVarint();
+        int field = (int)(tag >>> 1);
+        int wireType = (int)(tag & 1);
+        if (wireType == WIRE_BYTES) {
+          int fieldLength = (int)in.readVarint();
+          int start = in.skip(fieldLength);
+          if (field >= PATH_FIELD && field <= LAST_TITLE_FIELD) {
+            applyString(spec, field,
+                new String(bytes, start, fieldLength, StandardCharsets.UTF_8));
+            fields |= (1L << field);
+          }
+          else
+          if (field == UNKNOWN_ATTRIBUTE_FIELD) {
+            fields |= (1L << applyPair(spec, bytes, start, fieldLength));
+          }
+        } else {
+          long value = in.readVarint();
+          if (applyNumber(spec, field, value)) {
+            fields |= (1L << field);
+          }
+        }
+      } // end while more fields
+      return fields;
+    } catch (IndexOutOfBoundsException e) {
+      return -1;
+    }
+  }
+
+  /**
+   Copy the fields decoded into a scratch spec to their final destination,
+   in field number order, which is the order in which they are encoded.
+
+   @param from   The scratch spec holding the decoded values.
+   @param to     The spec to receive them.
+   @param fields A bit set with a bit on for each field number to be
+                 copied.
+  */
+  private static void copyFields(FileSpec from, FileSpec to, long fields) {
+    for (int field = PATH_FIELD; field <= UNKNOWN_ATTRIBUTE_FIELD; field++) {
+      if ((fields & (1L << field)) != 0) {
+        copyField(from, to, field);
+      }
+    }
+  }
+
+  /**
+   Return the path held in encoded bytes, without decoding anything else.
+
+   @param bytes  The array holding the encoded bytes.
+   @param offset The index of the version byte.
+   @param length The number of encoded bytes.
+
+   @return The path, an empty string if the encoding holds none, or null if
+           the version is not supported or the encoding is damaged.
+  */
+  static String decodePath(byte[] bytes, int offset, int length) {
+    Reader in = new Reader(bytes, offset, length);
+    try {
+      if (in.readByte() != VERSION) {
+        return null;
+      }
+      while (in.hasMore()) {
+        long tag = in.readVarint();
+        int field = (int)(tag >>> 1);
+        if ((tag & 1) == WIRE_BYTES) {
+          int fieldLength = (int)in.readVarint();
+          int start = in.skip(fieldLength);
+          if (field == PATH_FIELD) {
+            return new String(bytes, start, fieldLength,
+                StandardCharsets.UTF_8);
+          }
+        } else {
+          in.readVarint();
+        }
+      } // end while more fields
+      return "";
+    } catch (IndexOutOfBoundsException e) {
+      return null;
+    }
+  }
+
+  private static void applyString(FileSpec spec, int field, String value) {
+    switch (field) {
+      case PATH_FIELD:
+        spec.setPath(value);
+        break;
+      case TYPE_FIELD:
+        spec.setType(value);
+        break;
+      case FORMAT_FIELD:
+        spec.setFormat(value);
+        break;
+      case COLLECTION_TITLE_FIELD:
+        spec.setCollectionTitle(value);
+        break;
+      case BACKUP_FOLDER_FIELD:
+        spec.setBackupFolder(value);
+        break;
+      case ARCHIVE_FOLDER_FIELD:
+        spec.setArchiveFolder(value);
+        break;
+      case TEMPLATES_FOLDER_FIELD:
+        spec.setTemplatesFolder(value);
+        break;
+      case SCRIPTS_FOLDER_FIELD:
+        spec.setScriptsFolder(value);
+        break;
+      case HTML_FOLDER_FIELD:
+        spec.setHTMLFolder(value);
+        break;
+      case EASYPLAY_FIELD:
+        spec.setEasyPlay(value);
+        break;
+      case SYNC_FIELD:
+        spec.setSync(value);
+        break;
+      case SYNC_PREFIX_FIELD:
+        spec.setSyncPrefix(value);
+        break;
+      case LAST_TITLE_FIELD:
+        spec.setLastTitle(value);
+        break;
+      default:
+        break;
+    }
+  }
+
+  private static void copyField(FileSpec from, FileSpec to, int field) {
+    switch (field) {
+      case PATH_FIELD:
+        to.setPath(from.getPath());
+        break;
+      case TYPE_FIELD:
+        to.setType(from.getType());
+        break;
+      case FORMAT_FIELD:
+        to.setFormat(from.getFormat());
+        break;
+      case COLLECTION_TITLE_FIELD:
+        to.setCollectionTitle(from.getCollectionTitle());
+        break;
+      case LAST_ACCESS_FIELD:
+        to.setLastAccessDate(from.getLastAccessDate());
+        break;
+      case LAST_BACKUP_FIELD:
+        to.setLastBackupDate(from.getLastBackupDate());
+        break;
+      case BACKUP_FOLDER_FIELD:
+        to.setBackupFolder(from.getBackupFolder());
+        break;
+      case ARCHIVE_FOLDER_FIELD:
+        to.setArchiveFolder(from.getArchiveFolder());
+        break;
+      case TEMPLATES_FOLDER_FIELD:
+        to.setTemplatesFolder(from.getTemplatesFolder());
+        break;
+      case SCRIPTS_FOLDER_FIELD:
+        to.setScriptsFolder(from.getScriptsFolder());
+        break;
+      case HTML_FOLDER_FIELD:
+        to.setHTMLFolder(from.getHTMLFolder());
+        break;
+      case EASYPLAY_FIELD:
+        to.setEasyPlay(from.getEasyPlay());
+        break;
+      case SYNC_FIELD:
+        to.setSync(from.getSyncAsString());
+        break;
+      case SYNC_PREFIX_FIELD:
+        to.setSyncPrefix(from.getSyncPrefix());
+        break;
+      case LAST_TITLE_FIELD:
+        to.setLastTitle(from.getLastTitle());
+        break;
+      case NOTE_SORT_PARM_FIELD:
+        to.setNoteSortParm(from.getNoteSortParm());
+        break;
+      case UNKNOWN_ATTRIBUTE_FIELD:
+        AttributeStore attributes = from.getAttributes();
+        for (int i = 0; i < attributes.size(); i++) {
+          String name = attributes.getName(i);
+          if (FileSpec.isUnknownAttribute(name)) {
+            to.setAttribute(name, attributes.getValue(i));
+          }
+        }
+        break;
+      default:
+        break;
+    }
+  }
+
+  /**
+   Apply an attribute stored as a name-value pair, consisting of the 
+   length-prefixed name followed by the value. 
+  
+   @return The number of the field holding the attribute: the 
+           UNKNOWN_ATTRIBUTE_FIELD, unless the name is one that FileSpec
+           recognizes after all. Field numbers follow the attribute codes 
+           of FileSpec, starting from the PATH_FIELD. 
+  */
+  private static int applyPair
+      (FileSpec spec, byte[] bytes, int offset, int length) {
+    Reader in = new Reader(bytes, offset, length);
+    int nameLength = (int)in.readVarint();
+    int nameStart = in.skip(nameLength);
+    int valueStart = nameStart + nameLength;
+    String name 
+        = new String(bytes, nameStart, nameLength, StandardCharsets.UTF_8);
+    spec.setAttribute(name,
+        new String(bytes, valueStart, offset + length - valueStart,
+            StandardCharsets.UTF_8));
+    int attribute = FileSpec.lookupAttribute(name, 0, name.length());
+    if (attribute == FileSpec.UNKNOWN_ATTRIBUTE) {
+      return UNKNOWN_ATTRIBUTE_FIELD;
+    } else {
+      return PATH_FIELD + attribute;
+    }
+  }
+
+  /**
+   Apply a field stored as a varint. 
+  
+   @return True if the field is one we recognize. 
+  */
+  private static boolean applyNumber(FileSpec spec, int field, long value) {
+    switch (field) {
+      case LAST_ACCESS_FIELD:
+        spec.setLastAccessDate(new Date(decodeZigZag(value)));
+        return true;
+      case LAST_BACKUP_FIELD:
+        spec.setLastBackupDate(new Date(decodeZigZag(value)));
+        return true;
+      case NOTE_SORT_PARM_FIELD:
+        spec.setNoteSortParm((int)decodeZigZag(value));
+        return true;
+      default:
+        return false;
+    }
+  }
+
+  private static long encodeZigZag(long value) {
+    return (value << 1) ^ (value >> 63);
+  }
+
+  private static long decodeZigZag(long value) {
+    return (value >>> 1) ^ -(value & 1);
+  }
+
+  /**
+   Accumulates encoded bytes.
+   */
+  static class Writer {
+
+    private byte[] buf = new byte[64];
+    private int    count = 0;
+
+    void writeByte(int b) {
+      if (count == buf.length) {
+        buf = Arrays.copyOf(buf, buf.length * 2);
+      }
+      buf[count] = (byte)b;
+      count++;
+    }
+
+    void writeVarint(long value) {
+      while ((value & ~0x7FL) != 0) {
+        writeByte((int)((value & 0x7F) | 0x80));
+        value >>>= 7;
+      }
+      writeByte((int)value);
+    }
+
+    void writeBytes(byte[] bytes) {
+      if (count + bytes.length > buf.length) {
+        buf = Arrays.copyOf(buf, Math.max(buf.length * 2, count + bytes.length));
+      }
+      System.arraycopy(bytes, 0, buf, count, bytes.length);
+      count += bytes.length;
+    }
+
+    void writeString(int field, String value) {
+      if (value != null && value.length() > 0) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarint(((long)field << 1) | WIRE_BYTES);
+        writeVarint(bytes.length);
+        writeBytes(bytes);
+      }
+    }
+
+    void writePair(int field, String name, String value) {
+      byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+      byte[] valueBytes = value.getBytes(StandardCharsets.UTF_8);
+      int nameLengthSize = varintSize(nameBytes.length);
+      writeVarint(((long)field << 1) | WIRE_BYTES);
+      writeVarint(nameLengthSize + nameBytes.length + valueBytes.length);
+      writeVarint(nameBytes.length);
+      writeBytes(nameBytes);
+      writeBytes(valueBytes);
+    }
+
+    private int varintSize(long value) {
+      int size = 1;
+      while ((value & ~0x7FL) != 0) {
+        value >>>= 7;
+        size++;
+      }
+      return size;
+    }
+
+    void writeDate(int field, Date date) {
+      if (date != null) {
+        writeVarint(((long)field << 1) | WIRE_VARINT);
+        writeVarint(encodeZigZag(date.getTime()));
+      }
+    }
+
+    void writeSigned(int field, long value) {
+      writeVarint(((long)field << 1) | WIRE_VARINT);
+      writeVarint(encodeZigZag(value));
+    }
+
+    byte[] toByteArray() {
+      return Arrays.copyOf(buf, count);
+    }
+  }
+
+  /**
+   Reads encoded bytes, throwing IndexOutOfBoundsException if an attempt
+   is made to read past the end of the encoding.
+   */
+  static class Reader {
+
+    private final byte[] bytes;
+    private       int    position;
+    private final int    end;
+
+    Reader(byte[] bytes, int offset, int length) {
+      this.bytes = bytes;
+      this.position = offset;
+      this.end = offset + length;
+    }
+
+    boolean hasMore() {
+      return position < end;
+    }
+
+    int readByte() {
+      if (position >= end) {
+        throw new IndexOutOfBoundsException();
+      }
+      int b = bytes[position] & 0xFF;
+      position++;
+      return b;
+    }
+
+    long readVarint() {
+      long value = 0;
+      int shift = 0;
+      int b;
+      do {
+        if (shift > 63) {
+          throw new IndexOutOfBoundsException();
+        }
+        b = readByte();
+        value |= (long)(b & 0x7F) << shift;
+        shift += 7;
+      } while ((b & 0x80) != 0);
+      return value;
+    }
+
+    /**
+     Skip over the given number of bytes.
+
+     @return The position of the first byte skipped.
+     */
+    int skip(int length) {
+      if (length < 0 || length > end - position) {
+        throw new IndexOutOfBoundsException();
+      }
+      int start = position;
+      position += length;
+      return start;
+    }
+  }
+
+}
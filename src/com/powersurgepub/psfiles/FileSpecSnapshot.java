@@ -0,0 +1,312 @@
+/*
+ * Copyright 1999 - 2017 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.powersurgepub.psfiles;
+
+  import java.io.*;
+  import java.util.*;
+
+/**
+ An immutable copy of a file spec, as it stood at a particular moment. <p>
+
+ A snapshot may be freely passed to background threads, and held by caches
+ and indexes, without any locking, while the live file spec continues to be
+ changed on the Swing event dispatch thread. Snapshots are cheap to take:
+ the attribute store is shared with the file spec rather than copied. <p>
+
+ The "with" methods return a new snapshot reflecting a single change, leaving
+ the original untouched. Use toFileSpec to obtain a mutable file spec again.
+ */
+public final class FileSpecSnapshot {
+
+  private final   File            file;
+  private final   String          path;
+  private final   String          type;
+  private final   String          format;
+  private final   String          collectionTitle;
+  private final   long            lastAccessDate;
+  private final   long            lastBackupDate;
+  private final   AttributeStore  attributes;
+  private final   int             noteSortParm;
+
+  /*
+   Display names are derived on first request. Since Strings are immutable,
+   a thread that sees null simply derives the same name again.
+   */
+  private         String          displayName = null;
+  private         String          briefDisplayName = null;
+
+  FileSpecSnapshot(
+      File file,
+      String path,
+      String type,
+      String format,
+      String collectionTitle,
+      long lastAccessDate,
+      long lastBackupDate,
+      AttributeStore attributes,
+      int noteSortParm) {
+    this.file = file;
+    this.path = path;
+    this.type = type;
+    this.format = format;
+    this.collectionTitle = collectionTitle;
+    this.lastAccessDate = lastAccessDate;
+    this.lastBackupDate = lastBackupDate;
+    this.attributes = attributes;
+    this.noteSortParm = noteSortParm;
+  }
+
+  /**
+   Return a new, mutable file spec holding the same data as this snapshot.
+
+   @return A new file spec.
+   */
+  public FileSpec toFileSpec() {
+    return new FileSpec(this);
+  }
+
+  public File getFile() {
+    return file;
+  }
+
+  public boolean hasPath() {
+    return (path.length() > 0);
+  }
+
+  public String getPath() {
+    return path;
+  }
+
+  public String getType() {
+    return type;
+  }
+
+  public String getFormat() {
+    return format;
+  }
+
+  public String getCollectionTitle() {
+    return collectionTitle;
+  }
+
+  /**
+   Return the date on which the file was last accessed.
+
+   @return A new Date, so that this snapshot is not affected by any changes
+           made to it.
+   */
+  public Date getLastAccessDate() {
+    return new Date(lastAccessDate);
+  }
+
+  public long getLastAccessTime() {
+    return lastAccessDate;
+  }
+
+  /**
+   Return the date on which the file was last backed up.
+
+   @return A new Date, so that this snapshot is not affected by any changes
+           made to it.
+   */
+  public Date getLastBackupDate() {
+    return new Date(lastBackupDate);
+  }
+
+  public long getLastBackupTime() {
+    return lastBackupDate;
+  }
+
+  public String getBackupFolder() {
+    return attributes.get(FileSpec.BACKUP_FOLDER);
+  }
+
+  public String getArchiveFolder() {
+    return attributes.get(FileSpec.ARCHIVE_FOLDER);
+  }
+
+  public String getTemplatesFolder() {
+    return attributes.get(FileSpec.TEMPLATES_FOLDER);
+  }
+
+  public String getScriptsFolder() {
+    return attributes.get(FileSpec.SCRIPTS_FOLDER);
+  }
+
+  public String getHTMLFolder() {
+    return attributes.get(FileSpec.HTML_FOLDER);
+  }
+
+  public String getEasyPlay() {
+    return attributes.get(FileSpec.EASYPLAY);
+  }
+
+  public boolean getSync() {
+    return FileSpec.isSyncOn(getSyncAsString());
+  }
+
+  public String getSyncAsString() {
+    return attributes.get(FileSpec.SYNC);
+  }
+
+  public String getSyncPrefix() {
+    return attributes.get(FileSpec.SYNC_PREFIX);
+  }
+
+  public String getLastTitle() {
+    return attributes.get(FileSpec.LAST_TITLE);
+  }
+
+  public int getNoteSortParm() {
+    return noteSortParm;
+  }
+
+  AttributeStore getAttributes() {
+    return attributes;
+  }
+
+  /**
+   Return the value of an attribute not recognized by this version.
+
+   @param name The name of the attribute, in any case.
+
+   @return The value of the attribute, or an empty string if none.
+   */
+  public String getUnknownAttribute(String name) {
+    if (FileSpec.isUnknownAttribute(name)) {
+      return attributes.get(name);
+    } else {
+      return "";
+    }
+  }
+
+  /**
+   Return a path suitable for display, with any percent-encoded characters
+   decoded.
+
+   @return A path suitable for display.
+   */
+  public String getDisplayName() {
+    String name = displayName;
+    if (name == null) {
+      name = PercentDecoder.decode(path);
+      displayName = name;
+    }
+    return name;
+  }
+
+  /**
+   Return the file name and as many of its enclosing folders as can fit in
+   a reasonable length, with any percent-encoded characters decoded.
+
+   @return A brief path suitable for display.
+   */
+  public String getBriefDisplayName() {
+    String name = briefDisplayName;
+    if (name == null) {
+      name = FileSpec.briefName(getDisplayName());
+      briefDisplayName = name;
+    }
+    return name;
+  }
+
+  /**
+   Return all of the attributes in the same form as FileSpec.getFileInfo.
+
+   @return The attributes of this snapshot, as a string.
+   */
+  public String getFileInfo() {
+    return toFileSpec().getFileInfo();
+  }
+
+  /**
+   Return all of the attributes in the same form as
+   FileSpec.getCompactFileInfo.
+
+   @return The attributes of this snapshot, in compact form.
+   */
+  public String getCompactFileInfo() {
+    return toFileSpec().getCompactFileInfo();
+  }
+
+  public FileSpecSnapshot withType(String type) {
+    return new FileSpecSnapshot(file, path, type, format,
+        collectionTitle, lastAccessDate, lastBackupDate,
+        attributes, noteSortParm);
+  }
+
+  public FileSpecSnapshot withFormat(String format) {
+    return new FileSpecSnapshot(file, path, type, format,
+        collectionTitle, lastAccessDate, lastBackupDate,
+        attributes, noteSortParm);
+  }
+
+  /**
+   Return a snapshot with a different collection title. As with FileSpec,
+   an empty title leaves the existing title in place.
+
+   @param collectionTitle The new collection title.
+
+   @return A snapshot reflecting the change.
+   */
+  public FileSpecSnapshot withCollectionTitle(String collectionTitle) {
+    if (collectionTitle == null || collectionTitle.length() == 0) {
+      return this;
+    }
+    return new FileSpecSnapshot(file, path, type, format,
+        collectionTitle, lastAccessDate, lastBackupDate,
+        attributes, noteSortParm);
+  }
+
+  public FileSpecSnapshot withLastAccessDate(Date lastAccessDate) {
+    return new FileSpecSnapshot(file, path, type, format,
+        collectionTitle, lastAccessDate.getTime(), lastBackupDate,
+        attributes, noteSortParm);
+  }
+
+  public FileSpecSnapshot withLastBackupDate(Date lastBackupDate) {
+    return new FileSpecSnapshot(file, path, type, format,
+        collectionTitle, lastAccessDate, lastBackupDate.getTime(),
+        attributes, noteSortParm);
+  }
+
+  public FileSpecSnapshot withNoteSortParm(int noteSortParm) {
+    return new FileSpecSnapshot(file, path, type, format,
+        collectionTitle, lastAccessDate, lastBackupDate,
+        attributes, noteSortParm);
+  }
+
+  /**
+   Return a snapshot with the named attribute changed. Any attribute that
+   may be passed to FileSpec.setAttribute may be changed here.
+
+   @param name The name of the attribute, in any case.
+   @param data The new value of the attribute.
+
+   @return A snapshot reflecting the change.
+   */
+  public FileSpecSnapshot withAttribute(String name, String data) {
+    FileSpec spec = toFileSpec();
+    spec.setAttribute(name, data);
+    return spec.snapshot();
+  }
+
+  public String toString() {
+    return path;
+  }
+
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright 1999 - 2017 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.powersurgepub.psfiles;
+
+/**
+ Ranks recent files by frecency: a blend of how often and how recently each
+ has been used, in which every access counts for half as much once a given
+ half-life has passed. <p>
+
+ Rather than the decayed score itself, which changes with the passage of
+ time, each entry carries the time at which a single access would have been
+ worth as much as all of its accesses together. This equivalent time is
+ never earlier than the entry's last access, and moves later with each
+ access. One entry outranks another today exactly when it did yesterday, so
+ the ranking only changes when an entry is accessed, and then only for that
+ entry. <p>
+
+ The count and score of each entry are stored with the file spec, as the
+ ACCESS_COUNT and FRECENCY attributes, so that they are saved along with the
+ rest of the list, and so that the ranking holds no state of its own that
+ could fall out of step with the list. An entry without a stored score is
+ ranked as if accessed once, as of its last access date. <p>
+
+ The new position of an entry just accessed is found by a binary search of
+ the list itself, each step of which finds the entry at a position from the
+ list's order keys, in logarithmic time. So re-ranking an entry takes time
+ proportional to the square of the logarithm of the length of the list,
+ plus the time the list takes to insert it, which is logarithmic on
+ average. The search assumes the list is in order of score, as it is when
+ every entry has been added while ranking; entries out of order, such as
+ those added before ranking was turned on, are simply passed over.
+ */
+final class FrecencyRanking {
+
+  static final long           DEFAULT_HALF_LIFE = 14L * 24 * 60 * 60 * 1000;
+
+  /** Rate of decay, as the natural log of the score lost per millisecond. */
+  private         double      rate;
+
+  FrecencyRanking(long halfLife) {
+    setHalfLife(halfLife);
+  }
+
+  void setHalfLife(long halfLife) {
+    rate = Math.log(2) / Math.max(1, halfLife);
+  }
+
+  long getHalfLife() {
+    return Math.round(Math.log(2) / rate);
+  }
+
+  /**
+   Return the number of accesses recorded for an entry.
+
+   @param spec The entry of interest.
+
+   @return The number of accesses, counting an entry without a stored
+           count as having been accessed once.
+   */
+  int getCount(FileSpec spec) {
+    int count = getStoredCount(spec);
+    return (count <= 0 ? 1 : count);
+  }
+
+  /**
+   Return the equivalent time of an entry: the time at which one access
+   would be worth as much as all those recorded.
+
+   @param spec The entry of interest.
+
+   @return The equivalent time in milliseconds, or the time of the last
+           access if no score is stored.
+   */
+  double getScore(FileSpec spec) {
+    double score = getStoredScore(spec);
+    if (Double.isNaN(score)) {
+      score = spec.getLastAccessDate().getTime();
+    }
+    return score;
+  }
+
+  /**
+   Return the score of an entry, as it stands at the given time.
+
+   @param spec The entry of interest.
+   @param time The time at which the score is wanted, in milliseconds.
+
+   @return The total value of all accesses recorded, each reduced by the
+           decay since it was made, with one access made at the given
+           time being worth 1.
+   */
+  double getScore(FileSpec spec, long time) {
+    return Math.exp(rate * (getScore(spec) - time));
+  }
+
+  /**
+   Record an access to a file spec, adding it to any count and score the
+   spec already carries, and storing the results back in the spec.
+
+   @param spec The file spec accessed.
+   @param time The time of the access, in milliseconds.
+
+   @return The new equivalent time of the spec.
+   */
+  double recordAccess(FileSpec spec, long time) {
+    int count = Math.max(0, getStoredCount(spec)) + 1;
+    double score = getStoredScore(spec);
+    if (Double.isNaN(score)) {
+      score = time;
+    } else {
+      score = logSum(rate * score, rate * time) / rate;
+    }
+    spec.setAttribute(FileSpec.ACCESS_COUNT, String.valueOf(count));
+    spec.setAttribute(FileSpec.FRECENCY, String.valueOf(score));
+    return score;
+  }
+
+  /**
+   Find the position in a list for an entry with the given score: above any
+   entry with the same score or lower, so that the most recent access wins
+   a tie.
+
+   @param files The list, with the highest ranked entry first.
+   @param score The equivalent time of the entry to be placed.
+
+   @return The position of the first entry with a score no higher than the
+           one given, or the size of the list if there is none.
+   */
+  int findPosition(RecentFileList files, double score) {
+    int low = 0;
+    int high = files.size();
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (getScore(files.get(mid)) > score) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  private static int getStoredCount(FileSpec spec) {
+    String count = spec.getUnknownAttribute(FileSpec.ACCESS_COUNT);
+    if (count.length() == 0) {
+      return 0;
+    }
+    try {
+      return Integer.parseInt(count);
+    } catch (NumberFormatException e) {
+      return 0;
+    }
+  }
+
+  private static double getStoredScore(FileSpec spec) {
+    String score = spec.getUnknownAttribute(FileSpec.FRECENCY);
+    if (score.length() == 0) {
+      return Double.NaN;
+    }
+    try {
+      return Double.parseDouble(score);
+    } catch (NumberFormatException e) {
+      return Double.NaN;
+    }
+  }
+
+  /**
+   Return the log of the sum of two values, given the log of each.
+   */
+  private static double logSum(double a, double b) {
+    double high = Math.max(a, b);
+    double low = Math.min(a, b);
+    return high + Math.log1p(Math.exp(low - high));
+  }
+
+}
@@ -0,0 +1,239 @@
+/*
+ * Copyright 1999 - 2017 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.powersurgepub.psfiles;
+
+/**
+ Decodes percent-encoded text, such as the paths found in file URLs, in a
+ single forward pass. <p>
+
+ Every %xx escape is decoded, and consecutive escapes forming a valid UTF-8
+ sequence are decoded into the corresponding character. Escapes that are
+ incomplete, or that do not form a valid UTF-8 sequence, are left exactly as
+ they appear. Plus signs are not treated as spaces, since they only have that
+ meaning within query strings.
+ */
+public final class PercentDecoder {
+
+  private PercentDecoder() {
+    // No instances required
+  }
+
+  /**
+   Decode an entire string.
+
+   @param str The string to be decoded.
+
+   @return The decoded string, or the original string if it contains no
+           escapes.
+  */
+  public static String decode(String str) {
+    if (str.indexOf('%') < 0) {
+      return str;
+    } else {
+      StringBuilder out = new StringBuilder(str.length());
+      decode(str, 0, str.length(), out);
+      return out.toString();
+    }
+  }
+
+  /**
+   Decode a region of a sequence, appending the result to a builder.
+
+   @param seq   The sequence to be decoded.
+   @param start The index of the first character to be decoded.
+   @param end   The index just past the last character to be decoded. An
+                escape that would extend past this point is not decoded.
+   @param out   The builder to which decoded characters are to be appended,
+                or null if only the decoded length is desired.
+
+   @return The number of characters resulting from the decoding.
+  */
+  public static int decode
+      (CharSequence seq, int start, int end, StringBuilder out) {
+    int decodedLength = 0;
+    int j = start;
+    while (j < end) {
+      char c = seq.charAt(j);
+      int lead = -1;
+      if (c == '%') {
+        lead = hexByte(seq, j, end);
+      }
+      if (lead < 0) {
+        // Ordinary character, or a percent sign not starting an escape
+        if (out != null) {
+          out.append(c);
+        }
+        decodedLength++;
+        j++;
+      }
+      else
+      if (lead < 0x80) {
+        if (out != null) {
+          out.append((char)lead);
+        }
+        decodedLength++;
+        j += 3;
+      } else {
+        int codePoint = decodeSequence(seq, j, end, lead);
+        if (codePoint < 0) {
+          // Not valid UTF-8, so leave the escape as is
+          if (out != null) {
+            out.append(seq, j, j + 3);
+          }
+          decodedLength += 3;
+          j += 3;
+        } else {
+          if (out != null) {
+            out.appendCodePoint(codePoint);
+          }
+          decodedLength += Character.charCount(codePoint);
+          j += 3 * utf8Length(lead);
+        }
+      } // end if escape starts a multi-byte sequence
+    } // end while more characters to decode
+    return decodedLength;
+  }
+
+  /**
+   Return the length of a region of a sequence once decoded, without
+   creating any new objects.
+
+   @param seq   The sequence to be measured.
+   @param start The index of the first character to be measured.
+   @param end   The index just past the last character to be measured.
+
+   @return The number of characters resulting from decoding the region.
+  */
+  public static int decodedLength(CharSequence seq, int start, int end) {
+    return decode(seq, start, end, null);
+  }
+
+  /**
+   Decode a multi-byte UTF-8 sequence expressed as consecutive escapes.
+
+   @param seq   The sequence being decoded.
+   @param j     The index of the percent sign starting the sequence.
+   @param end   The index just past the region being decoded.
+   @param lead  The value of the first byte in the sequence.
+
+   @return The decoded code point, or -1 if the escapes do not form a
+           valid, shortest-form UTF-8 sequence.
+  */
+  private static int decodeSequence
+      (CharSequence seq, int j, int end, int lead) {
+    int length = utf8Length(lead);
+    int codePoint;
+    int minimum;
+    switch (length) {
+      case 2:
+        codePoint = lead & 0x1F;
+        minimum = 0x80;
+        break;
+      case 3:
+        codePoint = lead & 0x0F;
+        minimum = 0x800;
+        break;
+      case 4:
+        codePoint = lead & 0x07;
+        minimum = 0x10000;
+        break;
+      default:
+        return -1;
+    }
+    for (int k = 1; k < length; k++) {
+      int next = hexByte(seq, j + (3 * k), end);
+      if (next < 0x80 || next > 0xBF) {
+        return -1;
+      }
+      codePoint = (codePoint << 6) | (next & 0x3F);
+    }
+    if (codePoint < minimum
+        || codePoint > Character.MAX_CODE_POINT
+        || (codePoint >= Character.MIN_SURROGATE
+          && codePoint <= Character.MAX_SURROGATE)) {
+      return -1;
+    }
+    return codePoint;
+  }
+
+  /**
+   Return the number of bytes in a UTF-8 sequence, given its first byte.
+
+   @param lead The first byte.
+
+   @return The number of bytes in the sequence, or zero if the byte cannot
+           start a sequence.
+  */
+  private static int utf8Length(int lead) {
+    if (lead < 0x80) {
+      return 1;
+    }
+    else
+    if (lead >= 0xC2 && lead <= 0xDF) {
+      return 2;
+    }
+    else
+    if (lead >= 0xE0 && lead <= 0xEF) {
+      return 3;
+    }
+    else
+    if (lead >= 0xF0 && lead <= 0xF4) {
+      return 4;
+    } else {
+      return 0;
+    }
+  }
+
+  /**
+   Return the value of the escape starting at the given index.
+
+   @param seq The sequence being decoded.
+   @param j   The index at which an escape is expected.
+   @param end The index just past the region being decoded.
+
+   @return The value of the escaped byte, or -1 if there is no complete
+           escape at this index.
+  */
+  private static int hexByte(CharSequence seq, int j, int end) {
+    if (j + 2 >= end || seq.charAt(j) != '%') {
+      return -1;
+    }
+    int high = hexDigit(seq.charAt(j + 1));
+    int low = hexDigit(seq.charAt(j + 2));
+    if (high < 0 || low < 0) {
+      return -1;
+    }
+    return (high << 4) | low;
+  }
+
+  private static int hexDigit(char c) {
+    if (c >= '0' && c <= '9') {
+      return c - '0';
+    }
+    else
+    if (c >= 'A' && c <= 'F') {
+      return c - 'A' + 10;
+    }
+    else
+    if (c >= 'a' && c <= 'f') {
+      return c - 'a' + 10;
+    } else {
+      return -1;
+    }
+  }
+
+}
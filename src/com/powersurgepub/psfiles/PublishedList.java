@@ -0,0 +1,256 @@
+/*
+ * Copyright 1999 - 2017 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.powersurgepub.psfiles;
+
+  import java.util.*;
+  import java.util.concurrent.*;
+
+/**
+ An immutable list, from which a new list differing by one element may be
+ made in logarithmic time, leaving the original as it was. <p>
+
+ The elements are held in a treap ordered by position: a binary tree in
+ which each node counts the nodes beneath it, so that the element at any
+ position is found by descending from the root, and in which each node has
+ a random priority no higher than its parent's, so that the tree stays
+ balanced, on average, however elements are added and removed. A change
+ copies only the nodes on the path to the element changed, and shares the
+ rest of the tree with the original. <p>
+
+ Since a list never changes once made, it may be handed to other threads
+ and read there without locking.
+ */
+final class PublishedList<E> {
+
+  private static final PublishedList<Object> EMPTY
+      = new PublishedList<Object>(null);
+
+  private final   Node<E>   root;
+
+  private PublishedList(Node<E> root) {
+    this.root = root;
+  }
+
+  /**
+   Return an empty list.
+
+   @return A list with no elements.
+  */
+  @SuppressWarnings("unchecked")
+  static <E> PublishedList<E> empty() {
+    return (PublishedList<E>)EMPTY;
+  }
+
+  /**
+   Return a list of the given elements, in the order given, built in linear
+   time. The nodes are given priorities falling with their depth, so that
+   nodes added later, with random priorities, are placed beneath them.
+
+   @param elements The elements of the new list.
+
+   @return A new list of the elements.
+  */
+  static <E> PublishedList<E> of(List<E> elements) {
+    return new PublishedList<E>(build(elements, 0, elements.size(), 0));
+  }
+
+  private static <E> Node<E> build(List<E> elements, int from, int to,
+      int depth) {
+    if (from >= to) {
+      return null;
+    }
+    int middle = (from + to) >>> 1;
+    return new Node<E>(elements.get(middle), Integer.MAX_VALUE - depth,
+        build(elements, from, middle, depth + 1),
+        build(elements, middle + 1, to, depth + 1));
+  }
+
+  int size() {
+    return size(root);
+  }
+
+  /**
+   Return the element at the given position.
+
+   @param i The position of the desired element, with zero being the first.
+
+   @return The element at that position.
+  */
+  E get(int i) {
+    if (i < 0 || i >= size()) {
+      throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + size());
+    }
+    Node<E> node = root;
+    while (true) {
+      int leftSize = size(node.left);
+      if (i < leftSize) {
+        node = node.left;
+      }
+      else
+      if (i == leftSize) {
+        return node.element;
+      } else {
+        i -= leftSize + 1;
+        node = node.right;
+      }
+    }
+  }
+
+  /**
+   Return a list with an element added at the given position.
+
+   @param i       The position the new element is to occupy.
+   @param element The element to be added.
+
+   @return A new list, with the element added.
+  */
+  PublishedList<E> add(int i, E element) {
+    if (i < 0 || i > size()) {
+      throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + size());
+    }
+    int priority = ThreadLocalRandom.current().nextInt(Integer.MAX_VALUE - 64);
+    return new PublishedList<E>(insert(root, i, element, priority));
+  }
+
+  private static <E> Node<E> insert(Node<E> node, int i, E element,
+      int priority) {
+    if (node == null || priority > node.priority) {
+      Node<E>[] halves = split(node, i);
+      return new Node<E>(element, priority, halves[0], halves[1]);
+    }
+    int leftSize = size(node.left);
+    if (i <= leftSize) {
+      return node.with(insert(node.left, i, element, priority), node.right);
+    } else {
+      return node.with(node.left,
+          insert(node.right, i - leftSize - 1, element, priority));
+    }
+  }
+
+  /**
+   Return a list with the element at the given position removed.
+
+   @param i The position of the element to be removed.
+
+   @return A new list, without the element.
+  */
+  PublishedList<E> remove(int i) {
+    if (i < 0 || i >= size()) {
+      throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + size());
+    }
+    return new PublishedList<E>(delete(root, i));
+  }
+
+  private static <E> Node<E> delete(Node<E> node, int i) {
+    int leftSize = size(node.left);
+    if (i < leftSize) {
+      return node.with(delete(node.left, i), node.right);
+    }
+    else
+    if (i == leftSize) {
+      return merge(node.left, node.right);
+    } else {
+      return node.with(node.left, delete(node.right, i - leftSize - 1));
+    }
+  }
+
+  /**
+   Split a tree into the nodes before the given position, and those at and
+   after it.
+
+   @param node The root of the tree to be split.
+   @param i    The position of the first node to go in the second half.
+
+   @return The roots of the two halves.
+  */
+  @SuppressWarnings("unchecked")
+  private static <E> Node<E>[] split(Node<E> node, int i) {
+    Node<E>[] halves = (Node<E>[])new Node[2];
+    if (node != null) {
+      int leftSize = size(node.left);
+      if (i <= leftSize) {
+        Node<E>[] inner = split(node.left, i);
+        halves[0] = inner[0];
+        halves[1] = node.with(inner[1], node.right);
+      } else {
+        Node<E>[] inner = split(node.right, i - leftSize - 1);
+        halves[0] = node.with(node.left, inner[0]);
+        halves[1] = inner[1];
+      }
+    }
+    return halves;
+  }
+
+  /**
+   Join two trees, with every node of the first coming before every node of
+   the second.
+
+   @param first  The root of the first tree.
+   @param second The root of the second tree.
+
+   @return The root of the joined tree.
+  */
+  private static <E> Node<E> merge(Node<E> first, Node<E> second) {
+    if (first == null) {
+      return second;
+    }
+    else
+    if (second == null) {
+      return first;
+    }
+    else
+    if (first.priority > second.priority) {
+      return first.with(first.left, merge(first.right, second));
+    } else {
+      return second.with(merge(first, second.left), second.right);
+    }
+  }
+
+  private static int size(Node<?> node) {
+    return (node == null ? 0 : node.size);
+  }
+
+  /**
+   One node of the tree, never modified once made.
+   */
+  private static final class Node<E> {
+
+    private final E         element;
+    private final int       priority;
+    private final Node<E>   left;
+    private final Node<E>   right;
+
+    /** The number of nodes in the tree rooted here. */
+    private final int       size;
+
+    Node(E element, int priority, Node<E> left, Node<E> right) {
+      this.element = element;
+      this.priority = priority;
+      this.left = left;
+      this.right = right;
+      this.size = size(left) + 1 + size(right);
+    }
+
+    /**
+     Return a copy of this node, with the given children.
+     */
+    Node<E> with(Node<E> left, Node<E> right) {
+      return new Node<E>(element, priority, left, right);
+    }
+  }
+
+}
@@ -0,0 +1,834 @@
+/*
+ * Copyright 1999 - 2017 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.powersurgepub.psfiles;
+
+  import java.util.*;
+
+/**
+ A trigram index over the collection titles and display names of a set of
+ known files, to support an "Open Quickly" box that narrows the choices as
+ each character is typed. <p>
+
+ Each title and display name is folded to lower case, with any character
+ that is neither a letter nor a digit treated as a space, and each run of
+ three characters, counting a space before each word, is indexed, along
+ with the first letter of each word. A query is broken up in the same way,
+ so that even a single character matches the start of a word. Files are
+ scored by the share of the query's trigrams they contain, with bonuses for
+ matching the query exactly within the title or the brief display name, and
+ for having been added recently. Only files sharing at least one trigram
+ with the query are looked at: first one at a time, newest first, stopping
+ once no older file could make the best matches, and then, if that is
+ taking too long, by counting the trigrams shared by each of the remaining
+ files, and looking at those sharing the most first. The text of a file is
+ only examined if it could still make the best matches, and has every
+ trigram from within the query, without which it cannot contain the query.
+ <p>
+
+ The index is kept up to date one file at a time. A file added again, with
+ the same path, replaces the earlier entry. Removed entries are dropped
+ from the trigram lists in bulk, once they make up half the index. <p>
+
+ RecentFiles keeps an index up to date with the files it is given, if one
+ is registered with it. Files dropped from the recent files list only
+ because it is full remain known to the index. Other files may be added
+ directly. All methods are synchronized, so that searches may be run away
+ from the Swing event dispatch thread.
+ */
+public class QuickOpenIndex {
+
+  private static final double TITLE_PREFIX_BONUS    = 1.0;
+  private static final double TITLE_MATCH_BONUS     = 0.6;
+  private static final double BRIEF_MATCH_BONUS     = 0.4;
+  private static final double NAME_MATCH_BONUS      = 0.2;
+  private static final double RECENCY_BONUS         = 0.1;
+
+  /** The most bonus a file may earn beyond its share of the trigrams. */
+  private static final double MAX_BONUS
+      = TITLE_PREFIX_BONUS + BRIEF_MATCH_BONUS + RECENCY_BONUS;
+
+  /** For each trigram a file may miss, the number the query must have. */
+  private static final int    TRIGRAMS_PER_MISS     = 3;
+
+  /**
+   The files on the lists for the query's trigrams are first looked at one
+   at a time, newest first, until the work done reaches one part in this
+   many of the work of counting them all, and are then counted.
+   */
+  private static final int    NEWEST_FIRST_SHARE    = 32;
+
+  /**
+   Once the files that could make the best matches have been found, a list
+   is only searched for each of them if it is at least this many times as
+   long as the number found, and is otherwise walked once, counting only
+   those files.
+   */
+  private static final int    SEARCHES_PER_COUNT    = 8;
+
+  private static final int    MIN_COMPACTION_SIZE   = 1024;
+
+  /** The files indexed, by document number, with null for those removed. */
+  private         FileSpecSnapshot[]  docs        = new FileSpecSnapshot[64];
+  private         String[]            titles      = new String[64];
+  private         String[]            briefNames  = new String[64];
+  private         String[]            names       = new String[64];
+  private         long[]              added       = new long[64];
+  private         int                 docCount    = 0;
+  private         int                 removed     = 0;
+  private         long                addCount    = 0;
+
+  /** The document number of each file indexed, by path. */
+  private final   HashMap<String, Integer> paths
+      = new HashMap<String, Integer>();
+
+  /** The documents containing each trigram, packed into a long. */
+  private         HashMap<Long, Postings> trigrams
+      = new HashMap<Long, Postings>();
+
+  /** Work space for searches: trigrams matched per document. */
+  private         int[]               hits        = new int[64];
+  private         int[]               innerHits   = new int[64];
+  private         long[]              touched     = new long[1];
+  private         long[]              seen        = new long[1];
+  private         int[]               candidates  = new int[64];
+  private         int[]               grouped     = new int[64];
+
+  public QuickOpenIndex() {
+
+  }
+
+  public synchronized int size() {
+    return paths.size();
+  }
+
+  /**
+   Add a file to the index, replacing any entry with the same path.
+
+   @param spec The file to be added.
+   */
+  public synchronized void add(FileSpecSnapshot spec) {
+    Integer existing = paths.get(spec.getPath());
+    if (existing != null) {
+      drop(existing.intValue());
+    }
+    if (docCount == docs.length) {
+      grow();
+    }
+    int doc = docCount;
+    docCount++;
+    docs[doc] = spec;
+    titles[doc] = spec.getCollectionTitle().toLowerCase();
+    briefNames[doc] = spec.getBriefDisplayName().toLowerCase();
+    names[doc] = spec.getDisplayName().toLowerCase();
+    addCount++;
+    added[doc] = addCount;
+    paths.put(spec.getPath(), Integer.valueOf(doc));
+
+    HashSet<Long> docTrigrams = new HashSet<Long>();
+    addTrigrams(titles[doc], docTrigrams, null);
+    addTrigrams(names[doc], docTrigrams, null);
+    for (Long trigram : docTrigrams) {
+      Postings postings = trigrams.get(trigram);
+      if (postings == null) {
+        postings = new Postings();
+        trigrams.put(trigram, postings);
+      }
+      postings.add(doc);
+    }
+  }
+
+  /**
+   Remove the file with the given path from the index.
+
+   @param path The path of the file to be removed.
+
+   @return True if the file was found and removed.
+   */
+  public synchronized boolean remove(String path) {
+    Integer existing = paths.get(path);
+    if (existing == null) {
+      return false;
+    } else {
+      drop(existing.intValue());
+      return true;
+    }
+  }
+
+  public synchronized boolean contains(String path) {
+    return paths.containsKey(path);
+  }
+
+  public synchronized void clear() {
+    Arrays.fill(docs, 0, docCount, null);
+    docCount = 0;
+    removed = 0;
+    paths.clear();
+    trigrams.clear();
+  }
+
+  /**
+   Find the files best matching the given query.
+
+   @param query The text typed so far.
+   @param limit The most matches to be returned.
+
+   @return The best matching files, best first.
+   */
+  public synchronized List<FileSpecSnapshot> search(String query, int limit) {
+    String lowerQuery = query.trim().toLowerCase();
+    if (lowerQuery.length() == 0 || limit <= 0) {
+      return new ArrayList<FileSpecSnapshot>();
+    }
+    HashSet<Long> queryTrigrams = new HashSet<Long>();
+    HashSet<Long> innerTrigrams = new HashSet<Long>();
+    addTrigrams(lowerQuery, queryTrigrams, innerTrigrams);
+
+    PriorityQueue<Match> best = new PriorityQueue<Match>();
+    if (queryTrigrams.isEmpty()) {
+      // Too short for a trigram, so look at every file
+      for (int doc = docCount - 1; doc >= 0; doc--) {
+        if (docs[doc] != null) {
+          consider(best, limit, doc, lowerQuery, 0);
+        }
+      }
+    } else {
+      int most = queryTrigrams.size();
+      ArrayList<Postings> found = new ArrayList<Postings>();
+      for (Long trigram : queryTrigrams) {
+        Postings postings = trigrams.get(trigram);
+        if (postings != null) {
+          postings.inner = innerTrigrams.contains(trigram);
+          found.add(postings);
+        }
+      }
+      Postings[] lists = found.toArray(new Postings[found.size()]);
+      Arrays.sort(lists);
+      int[] cursors = new int[lists.length];
+      for (int j = 0; j < lists.length; j++) {
+        cursors[j] = lists[j].size - 1;
+      }
+      if (! searchNewest(best, limit, lowerQuery, lists, cursors, most,
+          innerTrigrams.size())) {
+        searchRest(best, limit, lowerQuery, lists, cursors, most,
+            innerTrigrams.size());
+      }
+    }
+
+    FileSpecSnapshot[] results = new FileSpecSnapshot[best.size()];
+    for (int i = results.length - 1; i >= 0; i--) {
+      results[i] = docs[best.poll().doc];
+    }
+    return Arrays.asList(results);
+  }
+
+  /**
+   Walk the lists of files holding each of the query's trigrams together,
+   from the newest file back, so that each file is seen once, with all of
+   the trigrams it shares with the query. Give up once the work done reaches
+   a share of the work of counting every file on every list.
+
+   @param lists   The lists of files holding the query's trigrams, shortest
+                  first.
+   @param cursors The position of the next file to be seen on each list,
+                  updated as files are seen.
+   @param most    The number of trigrams in the query.
+   @param inner   The number of trigrams from within the query.
+
+   @return True if the search is complete, false if the files at or before
+           the cursors remain to be searched.
+   */
+  private boolean searchNewest(PriorityQueue<Match> best, int limit,
+      String lowerQuery, Postings[] lists, int[] cursors, int most,
+      int inner) {
+    int allowed = most / TRIGRAMS_PER_MISS;
+    int listCount = lists.length;
+    int innerList = -1;
+    int work = 0;
+    for (int j = 0; j < listCount; j++) {
+      work -= lists[j].size / NEWEST_FIRST_SHARE;
+      if (lists[j].inner && innerList < 0) {
+        innerList = j;
+      }
+    }
+    boolean innerFound = (inner == 0 || innerList >= 0);
+
+    while (work < 0) {
+
+      // Only the shortest lists are walked one file at a time, while the
+      // rest are skipped along to each file found
+      int walked = listsToWalk(best, limit, most, listCount, innerFound,
+          innerList);
+      int doc = -1;
+      for (int j = 0; j < walked; j++) {
+        if (cursors[j] >= 0 && lists[j].docs[cursors[j]] > doc) {
+          doc = lists[j].docs[cursors[j]];
+        }
+      }
+      if (innerList >= 0 && innerList >= walked && cursors[innerList] >= 0
+          && lists[innerList].docs[cursors[innerList]] > doc) {
+        doc = lists[innerList].docs[cursors[innerList]];
+      }
+      if (doc < 0) {
+        return true;
+      }
+
+      // Stop once no file not yet seen could have enough trigrams, or could
+      // displace the weakest of the best matches found so far
+      int live = 0;
+      int liveInner = 0;
+      for (int j = 0; j < listCount; j++) {
+        if (j >= walked && j != innerList) {
+          cursors[j] = lists[j].skipTo(doc, cursors[j]);
+        }
+        if (cursors[j] >= 0) {
+          live++;
+          if (lists[j].inner) {
+            liveInner++;
+          }
+        }
+      }
+      if (most - live > allowed) {
+        return true;
+      }
+      boolean mayContain = (liveInner == inner);
+      if (best.size() == limit
+          && (double)live / most + recencyBonus(doc)
+              + (mayContain ? MAX_BONUS - RECENCY_BONUS : 0)
+              <= best.peek().score) {
+        return true;
+      }
+
+      int shared = 0;
+      int sharedInner = 0;
+      for (int j = 0; j < listCount; j++) {
+        if (cursors[j] >= 0 && lists[j].docs[cursors[j]] == doc) {
+          shared++;
+          if (lists[j].inner) {
+            sharedInner++;
+          }
+          cursors[j]--;
+        }
+      }
+      if (docs[doc] != null && most - shared <= allowed) {
+        score(best, limit, doc, lowerQuery, (double)shared / most,
+            sharedInner == inner);
+      }
+      work += listCount;
+    }
+    return false;
+  }
+
+  /**
+   Return the number of lists, shortest first, on one of which a file must
+   be to displace the weakest of the best matches found so far. A file can
+   only do so if it shares enough trigrams, and it must then be on one of
+   the shortest lists. A file containing the query must be on every list of
+   trigrams from within the query, so, if there is one, the shortest of
+   those must be walked as well.
+
+   @param most       The number of trigrams in the query.
+   @param listCount  The number of lists.
+   @param innerFound True if some file may contain the query.
+   @param innerList  The position of the shortest list of trigrams from
+                     within the query, or -1 if there is none.
+
+   @return The number of the shortest lists to be walked.
+   */
+  private int listsToWalk(PriorityQueue<Match> best, int limit, int most,
+      int listCount, boolean innerFound, int innerList) {
+    int needed = most - most / TRIGRAMS_PER_MISS;
+    int neededToContain = needed;
+    if (best.size() == limit) {
+      double floor = best.peek().score;
+      needed = Math.max(needed,
+          (int)Math.floor((floor - RECENCY_BONUS) * most) + 1);
+      neededToContain = Math.max(neededToContain,
+          (int)Math.floor((floor - MAX_BONUS) * most) + 1);
+    }
+    int walked = listCount - needed + 1;
+    if (innerFound && innerList < 0) {
+      walked = Math.max(walked, listCount - neededToContain + 1);
+    }
+    return Math.max(0, Math.min(walked, listCount));
+  }
+
+  /**
+   Count the trigrams shared with the query by each file at or before the
+   cursors, and then look at the files sharing the most first. Only the
+   lists on one of which a file must be, to make the best matches found so
+   far, are counted in full. Each of the rest is then searched for each of
+   the files found, if it is much longer, or else walked once, counting
+   only the files found. Where the shortest list of trigrams from within the query is
+   short enough, the files on it that may contain the query are looked at
+   before any are counted, so that the matches they make leave fewer lists
+   to be counted.
+
+   @param lists   The lists of files holding the query's trigrams, shortest
+                  first.
+   @param cursors The position of the last file to be counted on each list.
+   @param most    The number of trigrams in the query.
+   @param inner   The number of trigrams from within the query.
+   */
+  private void searchRest(PriorityQueue<Match> best, int limit,
+      String lowerQuery, Postings[] lists, int[] cursors, int most,
+      int inner) {
+    int allowed = most / TRIGRAMS_PER_MISS;
+    int listCount = lists.length;
+    int innerList = -1;
+    for (int j = 0; j < listCount; j++) {
+      if (lists[j].inner && innerList < 0) {
+        innerList = j;
+      }
+    }
+    boolean innerFound = (inner == 0 || innerList >= 0);
+    int walked = listsToWalk(best, limit, most, listCount, innerFound,
+        innerList);
+    if (innerList >= 0 && walked > 0) {
+      int walkedLength = 0;
+      for (int j = 0; j < walked; j++) {
+        walkedLength += cursors[j] + 1;
+      }
+      if ((cursors[innerList] + 1) * SEARCHES_PER_COUNT <= walkedLength) {
+        searchContaining(best, limit, lowerQuery, lists, cursors, most,
+            inner, innerList);
+        walked = listsToWalk(best, limit, most, listCount, innerFound,
+            innerList);
+      }
+    }
+    boolean[] searched = new boolean[listCount];
+    int counted = 0;
+    for (int j = 0; j < listCount; j++) {
+      if (j < walked || j == innerList) {
+        counted += count(lists[j], cursors[j], true);
+      }
+    }
+    for (int j = walked; j < listCount; j++) {
+      if (j != innerList) {
+        if (cursors[j] >= counted * SEARCHES_PER_COUNT) {
+          searched[j] = true;
+        } else {
+          count(lists[j], cursors[j], false);
+        }
+      }
+    }
+
+    // Collect the candidates newest first, and then group them by the
+    // number of trigrams missed, those that could contain the query ahead
+    // of those that could not, keeping the newest first within each group
+    int[] starts = new int[(allowed + 1) * 2 + 1];
+    int found = 0;
+    for (int word = (docCount - 1) >> 6; word >= 0; word--) {
+      long bits = touched[word];
+      touched[word] = 0;
+      long skipped = seen[word];
+      seen[word] = 0;
+      while (bits != 0) {
+        int bit = 63 - Long.numberOfLeadingZeros(bits);
+        bits &= ~(1L << bit);
+        int doc = (word << 6) | bit;
+        boolean scored = ((skipped & (1L << bit)) != 0);
+        for (int j = walked; j < listCount && ! scored; j++) {
+          if (searched[j]) {
+            cursors[j] = lists[j].skipTo(doc, cursors[j]);
+            if (cursors[j] >= 0 && lists[j].docs[cursors[j]] == doc) {
+              hits[doc]++;
+              if (lists[j].inner) {
+                innerHits[doc]++;
+              }
+            }
+          }
+        }
+        int missed = most - hits[doc];
+        if (! scored && docs[doc] != null && missed <= allowed) {
+          int group = missed * 2;
+          if (innerHits[doc] < inner) {
+            group++;
+          }
+          hits[doc] = group;
+          starts[group + 1]++;
+          candidates[found] = doc;
+          found++;
+        } else {
+          hits[doc] = 0;
+        }
+        innerHits[doc] = 0;
+      }
+    }
+    for (int group = 1; group < starts.length; group++) {
+      starts[group] += starts[group - 1];
+    }
+    int[] next = Arrays.copyOf(starts, starts.length - 1);
+    for (int i = 0; i < found; i++) {
+      int doc = candidates[i];
+      grouped[next[hits[doc]]] = doc;
+      next[hits[doc]]++;
+      hits[doc] = 0;
+    }
+
+    // Within each group, move on once even the newest remaining candidate
+    // could not displace the weakest of the best matches found so far
+    for (int group = 0; group < starts.length - 1; group++) {
+      double share = (double)(most - group / 2) / most;
+      boolean mayContain = (group % 2 == 0);
+      double maxBonus = (mayContain ? MAX_BONUS : RECENCY_BONUS);
+      for (int i = starts[group]; i < starts[group + 1]; i++) {
+        int doc = grouped[i];
+        if (best.size() == limit
+            && share + recencyBonus(doc) + maxBonus - RECENCY_BONUS
+                <= best.peek().score) {
+          break;
+        }
+        score(best, limit, doc, lowerQuery, share, mayContain);
+      }
+    }
+  }
+
+  /**
+   Look at each file, at or before the cursor, on the shortest list of
+   trigrams from within the query, looking for it on the other lists, and
+   score it if it may contain the query. Each file scored is marked as seen,
+   and the cursors are left as they were.
+
+   @param innerList The position of the shortest list of trigrams from
+                    within the query.
+   */
+  private void searchContaining(PriorityQueue<Match> best, int limit,
+      String lowerQuery, Postings[] lists, int[] cursors, int most,
+      int inner, int innerList) {
+    int allowed = most / TRIGRAMS_PER_MISS;
+    int[] positions = Arrays.copyOf(cursors, cursors.length);
+    Postings postings = lists[innerList];
+    for (int i = cursors[innerList]; i >= 0; i--) {
+      int doc = postings.docs[i];
+      int shared = 1;
+      int sharedInner = 1;
+      for (int j = 0; j < lists.length; j++) {
+        if (j != innerList) {
+          positions[j] = lists[j].skipTo(doc, positions[j]);
+          if (positions[j] >= 0 && lists[j].docs[positions[j]] == doc) {
+            shared++;
+            if (lists[j].inner) {
+              sharedInner++;
+            }
+          }
+        }
+      }
+      if (docs[doc] != null && sharedInner == inner
+          && most - shared <= allowed) {
+        seen[doc >> 6] |= 1L << doc;
+        consider(best, limit, doc, lowerQuery, (double)shared / most);
+      }
+    }
+  }
+
+  /**
+   Count each file on the given list, at or before the given position, as
+   sharing the list's trigram with the query.
+
+   @param found True to count every file, marking each as touched, or false
+                to count only those already touched.
+
+   @return The number of files on the list counted.
+   */
+  private int count(Postings postings, int last, boolean found) {
+    for (int i = 0; i <= last; i++) {
+      int doc = postings.docs[i];
+      if (found) {
+        touched[doc >> 6] |= 1L << doc;
+      }
+      if ((touched[doc >> 6] & (1L << doc)) != 0) {
+        hits[doc]++;
+        if (postings.inner) {
+          innerHits[doc]++;
+        }
+      }
+    }
+    return last + 1;
+  }
+
+  /**
+   Score a document sharing some of the query's trigrams. A file missing a
+   trigram from within the query cannot contain it, so its text need not be
+   examined.
+   */
+  private void score(PriorityQueue<Match> best, int limit, int doc,
+      String lowerQuery, double share, boolean mayContain) {
+    if (mayContain) {
+      consider(best, limit, doc, lowerQuery, share);
+    } else {
+      keep(best, limit, doc, share + recencyBonus(doc));
+    }
+  }
+
+  /**
+   Score a document, and keep it among the best if it qualifies. The text of
+   the document is only examined for as long as it could still score well
+   enough to be kept.
+   */
+  private void consider(PriorityQueue<Match> best, int limit, int doc,
+      String lowerQuery, double share) {
+    double floor = (best.size() < limit ? 0 : best.peek().score);
+    double score = share + recencyBonus(doc);
+    if (score + TITLE_PREFIX_BONUS + BRIEF_MATCH_BONUS <= floor) {
+      return;
+    }
+    if (titles[doc].startsWith(lowerQuery)) {
+      score += TITLE_PREFIX_BONUS;
+    }
+    else
+    if (titles[doc].contains(lowerQuery)) {
+      score += TITLE_MATCH_BONUS;
+    }
+    if (score + BRIEF_MATCH_BONUS <= floor) {
+      return;
+    }
+    if (briefNames[doc].contains(lowerQuery)) {
+      score += BRIEF_MATCH_BONUS;
+    }
+    else
+    if (names[doc].contains(lowerQuery)) {
+      score += NAME_MATCH_BONUS;
+    }
+    if (score <= share + recencyBonus(doc) && share == 0) {
+      return;
+    }
+    keep(best, limit, doc, score);
+  }
+
+  /**
+   Keep a document among the best, if its score qualifies.
+   */
+  private void keep(PriorityQueue<Match> best, int limit, int doc,
+      double score) {
+    if (best.size() < limit) {
+      best.add(new Match(doc, score));
+    }
+    else
+    if (score > best.peek().score) {
+      best.poll();
+      best.add(new Match(doc, score));
+    }
+  }
+
+  private double recencyBonus(int doc) {
+    return RECENCY_BONUS * added[doc] / addCount;
+  }
+
+  /**
+   Take a document out of the index. Its trigrams are left pointing at it
+   until the next compaction, but are ignored in the meantime.
+   */
+  private void drop(int doc) {
+    paths.remove(docs[doc].getPath());
+    docs[doc] = null;
+    titles[doc] = null;
+    briefNames[doc] = null;
+    names[doc] = null;
+    removed++;
+    if (removed >= MIN_COMPACTION_SIZE && removed * 2 >= docCount) {
+      compact();
+    }
+  }
+
+  /**
+   Renumber the remaining documents, and rebuild the trigram lists without
+   those removed.
+   */
+  private void compact() {
+    int[] renumbered = new int[docCount];
+    int next = 0;
+    for (int doc = 0; doc < docCount; doc++) {
+      if (docs[doc] == null) {
+        renumbered[doc] = -1;
+      } else {
+        renumbered[doc] = next;
+        docs[next] = docs[doc];
+        titles[next] = titles[doc];
+        briefNames[next] = briefNames[doc];
+        names[next] = names[doc];
+        added[next] = added[doc];
+        paths.put(docs[next].getPath(), Integer.valueOf(next));
+        next++;
+      }
+    }
+    Arrays.fill(docs, next, docCount, null);
+    Arrays.fill(titles, next, docCount, null);
+    Arrays.fill(briefNames, next, docCount, null);
+    Arrays.fill(names, next, docCount, null);
+    docCount = next;
+    removed = 0;
+
+    Iterator<Postings> iterator = trigrams.values().iterator();
+    while (iterator.hasNext()) {
+      Postings postings = iterator.next();
+      int kept = 0;
+      for (int i = 0; i < postings.size; i++) {
+        int doc = renumbered[postings.docs[i]];
+        if (doc >= 0) {
+          postings.docs[kept] = doc;
+          kept++;
+        }
+      }
+      postings.size = kept;
+      if (kept == 0) {
+        iterator.remove();
+      }
+    }
+  }
+
+  private void grow() {
+    int newLength = docs.length * 2;
+    docs = Arrays.copyOf(docs, newLength);
+    titles = Arrays.copyOf(titles, newLength);
+    briefNames = Arrays.copyOf(briefNames, newLength);
+    names = Arrays.copyOf(names, newLength);
+    added = Arrays.copyOf(added, newLength);
+    hits = Arrays.copyOf(hits, newLength);
+    innerHits = Arrays.copyOf(innerHits, newLength);
+    touched = Arrays.copyOf(touched, newLength / 64);
+    seen = Arrays.copyOf(seen, newLength / 64);
+    candidates = new int[newLength];
+    grouped = new int[newLength];
+  }
+
+  /**
+   Add the trigrams found in the given text to the given set. Characters
+   other than letters and digits separate words, and each word is preceded
+   by a single space. The first letter of each word is added as well,
+   preceded by two spaces. <p>
+
+   The first two trigrams depend on the spaces assumed before the text, and
+   so need not be found in a longer text containing this one; all the rest
+   must be.
+
+   @param text     Text already folded to lower case.
+   @param trigrams The set to receive the trigrams.
+   @param inner    The set to receive all but the first two trigrams, or
+                   null if they are not wanted.
+   */
+  private static void addTrigrams(String text, Set<Long> trigrams,
+      Set<Long> inner) {
+    char c0 = ' ';
+    char c1 = ' ';
+    int count = 0;
+    for (int i = 0; i < text.length(); i++) {
+      char c2 = text.charAt(i);
+      if (! Character.isLetterOrDigit(c2)) {
+        c2 = ' ';
+      }
+      if (c2 != ' ' && c1 == ' ') {
+        count = addTrigram(' ', ' ', c2, trigrams, inner, count);
+      }
+      if (c2 != ' ' || c1 != ' ') {
+        if (c1 != ' ' || c0 != ' ') {
+          count = addTrigram(c0, c1, c2, trigrams, inner, count);
+        }
+        c0 = c1;
+        c1 = c2;
+      }
+    }
+  }
+
+  private static int addTrigram(char c0, char c1, char c2,
+      Set<Long> trigrams, Set<Long> inner, int count) {
+    Long trigram = Long.valueOf(((long)c0 << 32) | ((long)c1 << 16) | c2);
+    trigrams.add(trigram);
+    if (inner != null && count >= 2) {
+      inner.add(trigram);
+    }
+    return count + 1;
+  }
+
+  /**
+   The numbers of the documents containing one trigram, in ascending order.
+   Lists are ordered by length, shortest first.
+   */
+  private static class Postings
+      implements Comparable<Postings> {
+
+    private int[]   docs  = new int[4];
+    private int     size  = 0;
+
+    /** Work space for searches: is this trigram from within the query? */
+    private boolean inner = false;
+
+    void add(int doc) {
+      if (size == docs.length) {
+        docs = Arrays.copyOf(docs, size * 2);
+      }
+      docs[size] = doc;
+      size++;
+    }
+
+    /**
+     Find the last position, at or before the given one, holding a document
+     number no greater than the given one, looking back in growing steps and
+     then narrowing in.
+
+     @return The position found, or -1 if there is none.
+     */
+    int skipTo(int doc, int position) {
+      if (position < 0 || docs[position] <= doc) {
+        return position;
+      }
+      int high = position;
+      int step = 1;
+      int low = position - step;
+      while (low >= 0 && docs[low] > doc) {
+        high = low;
+        step *= 2;
+        low = position - step;
+      }
+      low = Math.max(low, -1);
+      // docs[high] > doc, and low is -1 or docs[low] <= doc
+      while (high - low > 1) {
+        int mid = (low + high) >>> 1;
+        if (docs[mid] > doc) {
+          high = mid;
+        } else {
+          low = mid;
+        }
+      }
+      return low;
+    }
+
+    public int compareTo(Postings other) {
+      return Integer.compare(size, other.size);
+    }
+  }
+
+  /**
+   A document and its score, ordered with the lowest score first, so that
+   the weakest of the best matches so far is at the head of the queue.
+   */
+  private static class Match
+      implements Comparable<Match> {
+
+    private final int     doc;
+    private final double  score;
+
+    Match(int doc, double score) {
+      this.doc = doc;
+      this.score = score;
+    }
+
+    public int compareTo(Match other) {
+      return Double.compare(score, other.score);
+    }
+  }
+
+}
@@ -0,0 +1,1606 @@
+/*
+ * Copyright 1999 - 2017 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.powersurgepub.psfiles;
+
+  import com.powersurgepub.psutils.*;
+  import java.io.*;
+  import java.util.*;
+  import java.util.concurrent.locks.*;
+  import java.util.function.*;
+
+/**
+ A list of files recently accessed by an application, along with the means
+ to save the list and load it again, free of any user interface. <p>
+
+ The list is maintained in chronological sequence, with the most recently
+ accessed files at the top. It may be loaded, changed, searched, purged of
+ inaccessible files and saved without AWT or Swing, so that batch and
+ command line tools may share the history of an interactive application,
+ even when running headless. RecentFiles builds on this class to present
+ the list through the Open Recent menu, and through FilePrefs. Other
+ presentations may be built by overriding the methods called as the list
+ changes. <p>
+
+ By default, the list is saved to the user's preferences after every change.
+ Alternatively, a write-behind delay may be set, in which case changes are
+ saved once the list has been left alone for that long. Any pending changes
+ are also saved by flush, by savePrefs, and when the JVM shuts down. <p>
+
+ Saving to the user's preferences only updates the shared UserPrefs in
+ memory; the list reaches the disk when the application next saves
+ UserPrefs, as it does on quitting. Since the JVM runs shutdown hooks in no
+ particular order, the save made at shutdown may come too late for an
+ application that saves UserPrefs from a hook of its own. An application
+ using a write-behind delay should therefore call flush before it saves
+ UserPrefs, and not rely on the shutdown hook. <p>
+
+ For long histories, a RecentFilesJournal may be supplied, in which case the
+ list is kept there instead of in the user's preferences, and each save,
+ including the one made at shutdown, is written to disk before it returns. <p>
+
+ A series of changes may be bracketed by beginUpdate and endUpdate, in
+ which case the user's preferences are only brought up to date once, at
+ the end, and any presentation of the list is told of the changes only
+ then, all at once. <p>
+
+ Optionally, the list may be ranked by frecency instead, so that files used
+ often stay near the top even after a few others have been opened once.
+ Each file added then takes its place according to how often, and how
+ recently, it has been used, and the lowest ranked files are the first to
+ be dropped. <p>
+
+ The list may be used from any number of threads. Each change, and each
+ lookup by path or title, is made while holding the lock on this object, so
+ that only one thread changes the list at a time, no file appears in the
+ list twice, and the list never grows beyond its maximum. Once a change is
+ made, the list as it then stands is published, and size and get by
+ position read the list last published, without waiting on changes, as 
+ does getSnapshots once its snapshots have been taken. <p>
+
+ The methods called as the list changes are only called once the lock has
+ been released, one at a time, in the order the changes were made, by 
+ whichever thread finishes a change first, on behalf of every thread that 
+ has made one. A thread finding the changes already being announced by 
+ another leaves its own to that thread, rather than waiting. Likewise, a 
+ save writes its preferences or journal records while holding the lock, 
+ but only waits for the journal to reach the storage device once the lock 
+ has been released. A thread that makes changes within a block of its own 
+ synchronized on this list leaves these steps to the next change made 
+ outside such a block. <p>
+
+ Publishing the list does not copy it. Rather, the list is published as an
+ immutable tree, from which each change makes a new one in logarithmic 
+ time, sharing all but a few nodes with the last. Entries loaded from a 
+ journal are published without being decoded, and each is only decoded 
+ when first read. <p>
+
+ @author Herb Bowie
+ */
+public class RecentFileHistory {
+  
+  /** 
+   The version of the recent file preferences in which each entry is kept 
+   in a single recent-file-n preference, and the number of entries is kept
+   in recent-file-count. 
+   */
+  public static final int             PREFS_SCHEMA_VERSION    = 2;
+  
+  private         String              prefsQualifier          = "";
+  
+  private         int                 recentFilesMax          
+                                        = FilePrefs.RECENT_FILES_MAX_DEFAULT;
+
+  private         RecentFileList      files                   = new RecentFileList();
+
+  /** The number of calls to beginUpdate not yet matched by endUpdate. */
+  private         int                 updateDepth             = 0;
+  
+  /** True if the list has changed during the current batch of updates. */
+  private         boolean             changedDuringUpdate     = false;
+  
+  private         boolean             compactEncoding         = false;
+  
+  /** Milliseconds to wait for changes to stop before saving, or zero. */
+  private         int                 writeBehindDelay        = 0;
+  
+  private         Timer               saveTimer               = null;
+  
+  private         TimerTask           saveTask                = null;
+  
+  private         boolean             savePending             = false;
+  
+  private         Thread              shutdownHook            = null;
+  
+  private         RecentFilesJournal  journal                 = null;
+  
+  /** Ranks the list by frecency, or null to keep it in order of use. */
+  private         FrecencyRanking     ranking                 = null;
+  
+  private         QuickOpenIndex      quickOpenIndex          = null;
+  
+  /** Snapshots of the list as it now stands, or null once it has changed. */
+  private volatile java.util.List<FileSpecSnapshot> snapshots = null;
+  
+  /** The list as last published, read without waiting on changes. */
+  private volatile PublishedList<RecentFileList.Entry> view
+      = PublishedList.empty();
+  
+  /** True if the list has changed since the view was last published. */
+  private         boolean             viewStale               = false;
+  
+  /** Changes made, waiting to be announced, in the order made. */
+  private         ArrayDeque<Announcement> announcements      
+      = new ArrayDeque<Announcement>();
+  
+  /** Held by the thread announcing changes, one at a time, in order. */
+  private final   ReentrantLock       announcing              
+      = new ReentrantLock();
+  
+  /** The number of changes made to the list so far. */
+  private         long                changeCount             = 0;
+  
+  /** The number of changes included in the list as last published. */
+  private volatile long               publishedChange         = 0;
+  
+  /** The number of the change being announced, read while announcing. */
+  private         long                announcedChange         = 0;
+  
+  /** The value last written to each recent file preference, if known. */
+  private         ArrayList<String>   savedSlots              
+      = new ArrayList<String>();
+  
+  /** The recent file count last written, or -1 if not known. */
+  private         int                 savedCount              = -1;
+  
+  /** The encoding last produced for each entry saved. */
+  private         IdentityHashMap<FileSpec, SavedEncoding> savedEncodings
+      = new IdentityHashMap<FileSpec, SavedEncoding>();
+  
+  private         int                 saveCount               = 0;
+  private         int                 lastSaveEntriesEncoded  = 0;
+  private         int                 lastSaveKeysWritten     = 0;
+  private         long                lastSaveBytesWritten    = 0;
+
+  /**
+   Construct a RecentFileHistory instance without any prefs qualifier.
+   */
+  public RecentFileHistory () {
+    
+  }
+
+  /**
+   Construct a RecentFileHistory instance with a prefs qualifier.
+
+   @param prefsQualifier If non-blank, will be used to distinguish between
+                         different sets of recent files used for different
+                         purposes by the same program.
+   */
+  public RecentFileHistory (String prefsQualifier) { 
+    this.prefsQualifier = prefsQualifier;
+    if (prefsQualifier.length() > 0
+        && prefsQualifier.charAt(prefsQualifier.length() - 1) != '-') {
+      this.prefsQualifier = prefsQualifier + "-";
+    } else {
+      this.prefsQualifier = prefsQualifier;
+    }
+  }
+  
+  public String getPrefsQualifier () {
+    return prefsQualifier;
+  }
+  
+  /**
+   Indicate whether recent files should be saved using the compact binary
+   encoding rather than the key-value text. Either form may be read, 
+   regardless of this setting. 
+  
+   @param compactEncoding True to save the compact encoding. 
+  */
+  public synchronized void setCompactEncoding (boolean compactEncoding) {
+    this.compactEncoding = compactEncoding;
+  }
+  
+  public synchronized boolean isCompactEncoding () {
+    return compactEncoding;
+  }
+  
+  /**
+   Set the write-behind delay. When greater than zero, changes to the list 
+   are not saved immediately, but once no further changes have been made 
+   for this long, so that a burst of changes results in a single save. Any 
+   changes not yet saved are saved when the JVM shuts down, though without
+   a journal they only reach the disk if UserPrefs is saved after that, 
+   as explained above. 
+  
+   @param writeBehindDelay The delay in milliseconds, or zero to save after
+                           every change, as is the default. 
+  */
+  public void setWriteBehindDelay (int writeBehindDelay) {
+    synchronized (this) {
+      if (writeBehindDelay > 0) {
+        this.writeBehindDelay = writeBehindDelay;
+        if (shutdownHook == null) {
+          shutdownHook = new Thread(new Runnable() {
+            public void run() {
+              flush();
+            }
+          }, "psfiles-recent-files-flush");
+          Runtime.getRuntime().addShutdownHook(shutdownHook);
+        }
+      } else {
+        this.writeBehindDelay = 0;
+        if (shutdownHook != null) {
+          try {
+            Runtime.getRuntime().removeShutdownHook(shutdownHook);
+          } catch (IllegalStateException e) {
+            // Already shutting down, so the hook will run anyway
+          }
+          shutdownHook = null;
+        }
+      }
+    }
+    if (writeBehindDelay <= 0) {
+      flush();
+    }
+  }
+  
+  public synchronized int getWriteBehindDelay () {
+    return writeBehindDelay;
+  }
+  
+  /**
+   Save the list now if there are changes that have not yet been saved. An
+   application using a write-behind delay without a journal should call 
+   this before saving UserPrefs. 
+  */
+  public void flush () {
+    synchronized (this) {
+      if (savePending) {
+        save();
+      }
+    }
+    finishChanges();
+  }
+  
+  /**
+   Save the list following a change, either right away, or after the 
+   write-behind delay, or at the end of the current batch of updates. 
+  */
+  private synchronized void requestSave () {
+    if (updateDepth > 0) {
+      savePending = true;
+    }
+    else
+    if (writeBehindDelay > 0) {
+      savePending = true;
+      startSaveTimer(writeBehindDelay);
+    } else {
+      save();
+    }
+  }
+  
+  /**
+   Start, or start over, the wait before changes are saved. Here the wait 
+   is kept by a background timer thread, on which the changes are then 
+   saved. A subclass may override this, along with stopSaveTimer, to save 
+   the changes on some other thread. 
+  
+   @param delay The time to wait, in milliseconds. 
+  */
+  protected synchronized void startSaveTimer (int delay) {
+    stopSaveTimer();
+    if (saveTimer == null) {
+      saveTimer = new Timer("psfiles-recent-files-save", true);
+    }
+    saveTask = new TimerTask() {
+      public void run() {
+        flush();
+      }
+    };
+    saveTimer.schedule(saveTask, delay);
+  }
+  
+  /**
+   Stop waiting to save changes, since they are being saved now. 
+  */
+  protected synchronized void stopSaveTimer () {
+    if (saveTask != null) {
+      saveTask.cancel();
+      saveTask = null;
+    }
+  }
+  
+  /**
+   Start a batch of changes to the list. Until the matching call to 
+   endUpdate, the user's preferences are left as they are, and the methods
+   announcing each change are not called. Batches may be nested. 
+  */
+  public synchronized void beginUpdate () {
+    updateDepth++;
+  }
+  
+  /**
+   End a batch of changes to the list. Once the outermost batch has ended,
+   any changes are saved, and, if the list has changed, updateEnded is 
+   called. 
+  */
+  public void endUpdate () {
+    synchronized (this) {
+      if (updateDepth > 0) {
+        updateDepth--;
+        if (updateDepth == 0) {
+          if (savePending) {
+            requestSave();
+          }
+          if (changedDuringUpdate) {
+            changedDuringUpdate = false;
+            announcements.add(new Announcement(Announcement.UPDATE_ENDED, 
+                null, -1, changeCount));
+          }
+        }
+      }
+    }
+    finishChanges();
+  }
+  
+  public synchronized boolean isUpdating () {
+    return (updateDepth > 0);
+  }
+  
+  /**
+   Keep the recent files in the given journal, rather than in the user's 
+   preferences. This should be called before loadFromPrefs. If the journal 
+   does not yet hold a history, then loadFromPrefs will load the recent 
+   files from the user's preferences, and then start the journal with them.
+  
+   @param journal The journal to be used, or null to go back to using the
+                  user's preferences. 
+  */
+  public synchronized void setJournal (RecentFilesJournal journal) {
+    if (this.journal != null) {
+      this.journal.close();
+    }
+    this.journal = journal;
+    files.setJournal(journal);
+    savedEncodings.clear();
+    savedSlots.clear();
+    savedCount = -1;
+  }
+  
+  public synchronized RecentFilesJournal getJournal () {
+    return journal;
+  }
+  
+  /**
+   Rank the list by frecency, rather than keeping it in order of use. The 
+   list stays in its current order until files are next added. 
+  
+   @param frecencyRanking True to rank by frecency, false to go back to 
+                          keeping the most recently used file at the top. 
+  */
+  public synchronized void setFrecencyRanking (boolean frecencyRanking) {
+    if (! frecencyRanking) {
+      ranking = null;
+    }
+    else
+    if (ranking == null) {
+      ranking = new FrecencyRanking(FrecencyRanking.DEFAULT_HALF_LIFE);
+    }
+  }
+  
+  public synchronized boolean isFrecencyRanking () {
+    return (ranking != null);
+  }
+  
+  /**
+   Set the time after which a use of a file counts for half as much, when 
+   ranking by frecency. 
+  
+   @param halfLife The half-life in milliseconds. 
+  */
+  public synchronized void setFrecencyHalfLife (long halfLife) {
+    if (ranking != null) {
+      ranking.setHalfLife(halfLife);
+    }
+  }
+  
+  /**
+   Keep the given index up to date with the files added to, modified in, 
+   and removed from this list. The files already in the list are added to 
+   the index right away. Files dropped only because the list is full stay 
+   in the index. 
+  
+   @param quickOpenIndex The index to be kept, or null for none. 
+  */
+  public synchronized void setQuickOpenIndex (QuickOpenIndex quickOpenIndex) {
+    this.quickOpenIndex = quickOpenIndex;
+    if (quickOpenIndex != null) {
+      FileSpec[] specs = files.toArray();
+      for (int i = specs.length - 1; i >= 0; i--) {
+        indexFile(specs[i]);
+      }
+    }
+  }
+  
+  public synchronized QuickOpenIndex getQuickOpenIndex () {
+    return quickOpenIndex;
+  }
+  
+  /**
+   Add a file to the quick open index, if one is kept, unless its canonical
+   path has yet to be resolved, in which case it is indexed once it is. 
+  */
+  private void indexFile (FileSpec fileSpec) {
+    if (quickOpenIndex != null && fileSpec.hasPath()
+        && fileSpec.isCanonicalPathKnown()) {
+      quickOpenIndex.add(fileSpec.snapshot());
+    }
+  }
+  
+  private void unindexFile (FileSpec fileSpec) {
+    if (quickOpenIndex != null) {
+      quickOpenIndex.remove(fileSpec.getKnownPath());
+    }
+  }
+  
+  /**
+   Resolve, on a background thread, the canonical path of an entry added 
+   before its canonical path was known, and then index it under its 
+   canonical path. Until then it is found by its absolute path. An entry 
+   whose path has been resolved since it was added, as when the journal 
+   records it, is indexed under its canonical path straight away. 
+  
+   @param fileSpec The entry just added. 
+  */
+  private void resolveLater (final FileSpec fileSpec) {
+    final File file = fileSpec.getUnresolvedFile();
+    if (file == null) {
+      pathResolved(fileSpec);
+    } else {
+      CanonicalPathCache.getShared().resolveInBackground(file).thenAccept
+          (new Consumer<String>() {
+        public void accept(String canonicalPath) {
+          pathResolved(fileSpec, file, canonicalPath);
+          finishChanges();
+        }
+      });
+    }
+  }
+  
+  /**
+   Resolve, on background threads, the canonical paths of all the entries 
+   loaded before their canonical paths were known. 
+  */
+  private void resolveLoaded () {
+    if (files.hasProvisional()) {
+      for (FileSpec fileSpec : files.getProvisional()) {
+        resolveLater(fileSpec);
+      }
+    }
+  }
+  
+  /**
+   Give an entry the canonical path resolved for it in the background, 
+   unless it has since been given another file, and then index it under 
+   that path. 
+  
+   @param fileSpec      The entry whose path has been resolved. 
+   @param file          The file whose path was resolved. 
+   @param canonicalPath The canonical path of the file. 
+  */
+  private synchronized void pathResolved 
+      (FileSpec fileSpec, File file, String canonicalPath) {
+    fileSpec.adoptResolvedPath(file, canonicalPath);
+    pathResolved(fileSpec);
+  }
+  
+  /**
+   Index under its canonical path an entry whose canonical path has now 
+   been resolved. Where the entry turns out to be for the same file as 
+   another, the one nearer the top is kept, and the other merged into it 
+   and removed, just as if the file had been added again. 
+  
+   @param fileSpec The entry whose path has been resolved. 
+  */
+  private synchronized void pathResolved (FileSpec fileSpec) {
+    if (! files.isProvisional(fileSpec)
+        || ! fileSpec.isCanonicalPathKnown()) {
+      return;
+    }
+    FileSpec other = files.reindexResolved(fileSpec);
+    if (other == null) {
+      indexFile(fileSpec);
+    } else {
+      int i = files.indexOf(fileSpec);
+      int j = files.indexOf(other);
+      FileSpec kept = (i < j ? fileSpec : other);
+      FileSpec older = (i < j ? other : fileSpec);
+      kept.merge(older);
+      files.titleChanged(kept);
+      files.remove(older);
+      files.reindexResolved(kept);
+      unindexFile(older);
+      indexFile(kept);
+      announceRemoved(Math.max(i, j));
+    }
+    requestSave();
+  }
+  
+  /**
+   Load the recent files from the user's preferences. Preferences written 
+   by earlier versions, with each entry spread across several keys, are 
+   rewritten once in the current form, after which only the populated 
+   recent-file-n preferences are read. 
+   */
+  public void loadFromPrefs () {
+    synchronized (this) {
+      load();
+    }
+    finishChanges();
+  }
+  
+  private synchronized void load () {
+    
+    if (journal != null && journal.exists()) {
+      loadFromJournal();
+      resolveLoaded();
+      return;
+    }
+    
+    files.setJournal(null);
+    boolean migrated = (UserPrefs.getShared().getPrefAsInt
+        (prefsQualifier + FileSpec.RECENT_FILE_SCHEMA, 0) 
+        >= PREFS_SCHEMA_VERSION);
+    if (migrated) {
+      loadPopulatedSlots();
+    } else {
+      loadLegacySlots();
+    }
+    files.setJournal(journal);
+    
+    // Rewrite the preferences in the current form, once only
+    if (journal == null && ! migrated) {
+      save();
+      UserPrefs.getShared().setPref
+          (prefsQualifier + FileSpec.RECENT_FILE_SCHEMA, PREFS_SCHEMA_VERSION);
+    }
+    
+    // Start the journal off with the files found in the preferences
+    if (journal != null) {
+      try {
+        journal.reset(files);
+      } catch (IOException e) {
+        Trouble.getShared().report ("Trouble starting recent files journal",
+            "Recent Files Error");
+      }
+    }
+    resolveLoaded();
+  }
+  
+  /**
+   Load the recent files from the populated recent-file-n preferences, as 
+   counted by recent-file-count. 
+  */
+  private void loadPopulatedSlots () {
+    savedCount = UserPrefs.getShared().getPrefAsInt
+        (prefsQualifier + FileSpec.RECENT_FILE_COUNT, 0);
+    int count = Math.min(savedCount, recentFilesMax);
+    int j = 0;
+    for (int i = 0; i < count; i++) {
+      String fileInfo = UserPrefs.getShared().getPref
+          (FileSpec.recentFileKey(prefsQualifier, i), "");
+      setSavedSlot(i, fileInfo);
+      if (fileInfo.length() > 0) {
+        FileSpec recentFile = new FileSpec();
+        recentFile.setFileInfo(fileInfo);
+        if (loadRecentFile(recentFile, j)) {
+          j++;
+        }
+      }
+    }
+  }
+  
+  /**
+   Load the recent files from every possible slot, falling back on the 
+   separate keys used by earlier versions wherever there is no 
+   recent-file-n preference. 
+  */
+  private void loadLegacySlots () {
+    int j = 0;
+    for (int i = 0; i < recentFilesMax; i++) {
+      setSavedSlot(i, UserPrefs.getShared().getPref
+          (FileSpec.recentFileKey(prefsQualifier, i), ""));
+      FileSpec recentFile = new FileSpec();
+      recentFile.loadFromRecentPrefs(prefsQualifier, i);
+      if (loadRecentFile(recentFile, j)) {
+        j++;
+      }
+    }
+  }
+  
+  /**
+   Load the recent files from the journal. If the list is empty, as it 
+   normally will be, then the list loaded is adopted as it stands, and its 
+   entries are only decoded as they are needed. 
+  */
+  private void loadFromJournal () {
+    RecentFileList loaded;
+    try {
+      loaded = journal.load();
+    } catch (IOException e) {
+      Trouble.getShared().report ("Trouble loading recent files journal",
+          "Recent Files Error");
+      loaded = new RecentFileList();
+      loaded.setJournal(journal);
+    }
+    
+    if (files.size() == 0) {
+      files = loaded;
+      files.truncate(Math.max(0, recentFilesMax));
+      announceChanged();
+      return;
+    }
+    
+    FileSpec[] specs = loaded.toArray();
+    files.setJournal(null);
+    int j = 0;
+    for (int i = 0; i < specs.length && j < recentFilesMax; i++) {
+      if (loadRecentFile(specs[i], j)) {
+        j++;
+      }
+    }
+    files.setJournal(journal);
+    if (j < specs.length) {
+      journal.recordTruncate(files.size());
+    }
+  }
+  
+  /**
+   Add a recent file at the end of the list while loading, unless it has no
+   path, or is already in the list. 
+  
+   @param recentFile The recent file loaded. 
+   @param j          The number of files loaded so far. 
+  
+   @return True if the file was added. 
+  */
+  private boolean loadRecentFile (FileSpec recentFile, int j) {
+    if (recentFile.hasPath()) {
+      if (files.get(recentFile.getKnownPath()) == null) {
+        files.addLast(recentFile);
+        announceAppended(recentFile, j);
+        return true;
+      }
+    }
+    return false;
+  }
+  
+  public void purgeInaccessibleFiles () {
+    synchronized (this) {
+      FileSpec[] specs = files.toArray();
+      int removed = 0;
+      for (int i = 0; i < specs.length; i++) {
+        if (! specs[i].exists()) {
+          files.remove(specs[i]);
+          unindexFile(specs[i]);
+          announceRemoved(i - removed);
+          removed++;
+        }
+      }
+    }
+    finishChanges();
+  }
+
+  /**
+   Save the recent files to the user's preferences, or to the journal, if 
+   one is in use. Entries that have not changed since they were last saved 
+   are not encoded again, and only those preferences, or journal entries, 
+   whose values have changed are written. The journal, if any, is forced 
+   out to the storage device before this returns. 
+   */
+  public void savePrefs () {
+    synchronized (this) {
+      save();
+    }
+    finishChanges();
+  }
+  
+  private synchronized void save () {
+    
+    savePending = false;
+    stopSaveTimer();
+    IdentityHashMap<FileSpec, SavedEncoding> encodings
+        = new IdentityHashMap<FileSpec, SavedEncoding>();
+    int entriesEncoded = 0;
+    int keysWritten = 0;
+    long bytesWritten = 0;
+    int count = 0;
+    // Entries not yet decoded from the journal's snapshot are unchanged
+    FileSpec[] specs;
+    if (journal == null) {
+      specs = files.toArray();
+    } else {
+      specs = files.toDecodedArray();
+    }
+    for (int i = 0; i < specs.length; i++) {
+      FileSpec recentFile = specs[i];
+      if (recentFile.hasPath()) {
+        SavedEncoding encoding = savedEncodings.get(recentFile);
+        boolean compact = (compactEncoding || journal != null);
+        if (encoding == null 
+            || encoding.modCount != recentFile.getModCount()
+            || encoding.compact != compact) {
+          String value;
+          if (compact) {
+            value = recentFile.getCompactFileInfo();
+          } else {
+            value = recentFile.getFileInfo();
+          }
+          encoding = new SavedEncoding
+              (recentFile.getModCount(), compact, value);
+          entriesEncoded++;
+        }
+        encodings.put(recentFile, encoding);
+        if (journal != null) {
+          int written = journal.recordUpdate(recentFile, encoding.value);
+          if (written > 0) {
+            keysWritten++;
+            bytesWritten += written;
+          }
+        }
+        else
+        if (! encoding.value.equals(getSavedSlot(count))) {
+          UserPrefs.getShared().setPref
+              (FileSpec.recentFileKey(prefsQualifier, count), encoding.value);
+          setSavedSlot(count, encoding.value);
+          keysWritten++;
+          bytesWritten += utf8Length(encoding.value);
+        }
+        count++;
+      }
+    }
+    savedEncodings = encodings;
+    if (journal == null && count != savedCount) {
+      UserPrefs.getShared().setPref
+          (prefsQualifier + FileSpec.RECENT_FILE_COUNT, count);
+      savedCount = count;
+      keysWritten++;
+      bytesWritten += utf8Length(String.valueOf(count));
+    }
+    if (journal != null) {
+      journal.compactIfDue(files);
+    }
+    saveCount++;
+    lastSaveEntriesEncoded = entriesEncoded;
+    lastSaveKeysWritten = keysWritten;
+    lastSaveBytesWritten = bytesWritten;
+  }
+  
+  /**
+   Return the value last written to the given recent file preference. 
+  
+   @param slot The number of the recent file preference. 
+  
+   @return The value last written, or null if not known. 
+  */
+  private String getSavedSlot (int slot) {
+    if (slot < savedSlots.size()) {
+      return savedSlots.get(slot);
+    } else {
+      return null;
+    }
+  }
+  
+  private void setSavedSlot (int slot, String value) {
+    while (savedSlots.size() <= slot) {
+      savedSlots.add(null);
+    }
+    savedSlots.set(slot, value);
+  }
+  
+  private static long utf8Length (String str) {
+    long length = 0;
+    for (int i = 0; i < str.length(); i++) {
+      char c = str.charAt(i);
+      if (c < 0x80) {
+        length++;
+      }
+      else
+      if (c < 0x800) {
+        length += 2;
+      }
+      else
+      if (Character.isHighSurrogate(c)) {
+        length += 4;
+        i++;
+      } else {
+        length += 3;
+      }
+    }
+    return length;
+  }
+  
+  /**
+   Return the number of times the recent files have been saved. 
+  
+   @return The number of saves so far. 
+  */
+  public synchronized int getSaveCount () {
+    return saveCount;
+  }
+  
+  /**
+   Return the number of entries that had to be encoded during the last 
+   save, because they were new or had changed since they were last saved. 
+  
+   @return The number of entries encoded. 
+  */
+  public synchronized int getLastSaveEntriesEncoded () {
+    return lastSaveEntriesEncoded;
+  }
+  
+  /**
+   Return the number of preferences, or journal entries, written during the
+   last save. 
+  
+   @return The number of preference keys written. 
+  */
+  public synchronized int getLastSaveKeysWritten () {
+    return lastSaveKeysWritten;
+  }
+  
+  /**
+   Return the number of bytes written during the last save, counting the 
+   values written in their UTF-8 form. 
+  
+   @return The number of bytes written. 
+  */
+  public synchronized long getLastSaveBytesWritten () {
+    return lastSaveBytesWritten;
+  }
+  
+  /**
+   Add a file that's been recently used. 
+  
+   @param file The file that's been recently used. 
+  
+   @return The file spec for the file. 
+  */
+  public FileSpec addRecentFile (File file) {
+    return addRecentFile ("file", file.getAbsolutePath(), "");
+  }
+
+  /**
+   Add a file that's been recently used.
+
+   @param type A string indicating the type of file or data store.
+   @param path The path of the file or data store.
+   @param format The format of the data within the data store. 
+   */
+  public FileSpec addRecentFile (String type, String path, String format) {
+    
+    FileSpec recentFile = new FileSpec();
+    recentFile.setType(type);
+    recentFile.setPath(path);
+    recentFile.setFormat(format);
+    return addRecentFile (recentFile);
+
+  } // end method addRecentFile
+  
+  /**
+   Add a file that's been recently used.
+
+   @param type   A string indicating the type of file or data store.
+   @param path   The path of the file or data store.
+   @param format The format of the data within the data store. 
+   */
+  public FileSpec addRecentFile (FileSpec recentFile) {
+    FileSpec added;
+    synchronized (this) {
+      added = addFile(recentFile);
+    }
+    finishChanges();
+    return added;
+  }
+  
+  private synchronized FileSpec addFile (FileSpec recentFile) {
+    
+    if (ranking != null) {
+      return addRankedFile(recentFile);
+    }
+
+    // Any older entry for the same path is taken out of the list before 
+    // the new one goes in at the top, but is reported as removed from the 
+    // position it would then have occupied, just below the top. 
+    FileSpec olderFile = files.get(recentFile.getKnownPath());
+    int olderIndex = -1;
+    if (olderFile != null) {
+      olderIndex = files.indexOf(olderFile) + 1;
+      files.remove(olderFile);
+    }
+    
+    // Let's add the most recent file opened to the top of the list
+    files.addFirst (recentFile);
+    announceAdded(recentFile, 0);
+    
+    if (olderFile != null) {
+      recentFile.merge(olderFile);
+      files.titleChanged(recentFile);
+    }
+    removeOlderAndExcessFiles(olderIndex);
+    indexFile(recentFile);
+    resolveLater(recentFile);
+    requestSave();
+    return files.first();
+  } // end method addRecentFile
+      
+  /**
+   Add a file that's been recently used, at the place given by its rank. 
+   Any older entry for the same path is taken out first, and its count of 
+   uses carried over. Entries beyond the maximum are then dropped, starting 
+   with the lowest ranked, though never the file just added. 
+  
+   @param recentFile The file that's been used. 
+  
+   @return The file spec as added to the list. 
+  */
+  private FileSpec addRankedFile (FileSpec recentFile) {
+    
+    FileSpec olderFile = files.get(recentFile.getKnownPath());
+    if (olderFile != null) {
+      int olderIndex = files.indexOf(olderFile);
+      files.remove(olderFile);
+      announceRemoved(olderIndex);
+      if (olderFile != recentFile) {
+        recentFile.merge(olderFile);
+      }
+    }
+    
+    long now = System.currentTimeMillis();
+    recentFile.setLastAccessDate(new Date(now));
+    double score = ranking.recordAccess(recentFile, now);
+    int i = ranking.findPosition(files, score);
+    files.add(i, recentFile);
+    announceAdded(recentFile, i);
+    
+    int max = Math.max(1, recentFilesMax);
+    while (files.size() > max) {
+      int lowest = files.size() - 1;
+      if (files.get(lowest) == recentFile) {
+        lowest--;
+      }
+      files.remove(lowest);
+      announceRemoved(lowest);
+    }
+    indexFile(recentFile);
+    resolveLater(recentFile);
+    requestSave();
+    return recentFile;
+  }
+      
+  /**
+   Add a file that should be near the top, but not replace the file
+   currently at the top of the list. 
+
+   @param notSoRecentFile   The file to be added. 
+   */
+  public FileSpec addNotSoRecentFile (FileSpec notSoRecentFile) {
+    FileSpec top;
+    synchronized (this) {
+      top = addNotSoRecent(notSoRecentFile);
+    }
+    finishChanges();
+    return top;
+  }
+  
+  private synchronized FileSpec addNotSoRecent (FileSpec notSoRecentFile) {
+
+    if (files.size() < 1) {
+      throw new IndexOutOfBoundsException("Index: 1, Size: 0");
+    }
+    
+    // The new entry has always been the first to match its own path, and 
+    // so has always been taken out again as soon as it was put in. It is 
+    // therefore never added. An older entry for the same path is merged 
+    // into it and removed, unless it is at the top of the list. 
+    FileSpec olderFile = files.get(notSoRecentFile.getKnownPath());
+    int olderIndex = -1;
+    if (olderFile != null) {
+      olderIndex = files.indexOf(olderFile);
+    }
+    if (olderIndex >= 1) {
+      if (olderFile != notSoRecentFile) {
+        notSoRecentFile.merge(olderFile);
+      }
+      files.remove(olderFile);
+    } else {
+      olderIndex = -1;
+    }
+    removeOlderAndExcessFiles(olderIndex);
+    requestSave();
+    return files.first();
+  } // end method addRecentFile
+  
+  /**
+   Remove the recent file with the given title, ignoring case. If more than
+   one file has the title, the one nearest the top is removed. 
+  
+   @param oldTitle The title of the file to be removed. 
+  */
+  public void removeRecentFile(String oldTitle) {
+    synchronized (this) {
+      FileSpec fs = files.getByTitle(oldTitle);
+      if (fs != null) {
+        int i = files.indexOf(fs);
+        files.remove(fs);
+        unindexFile(fs);
+        announceRemoved(i);
+      }
+    }
+    finishChanges();
+  }
+  
+  /**
+   Following the addition of an entry, report the removal of any older 
+   entry for the same path, and then remove any entries beyond the maximum. 
+   The entry at the top of the list is never removed. Removals are reported 
+   in ascending order of position, so that an older entry positioned beyond 
+   the maximum is reported along with the other excess entries. 
+  
+   @param olderIndex The position from which an older entry for the same 
+                     path has already been taken out of the list, or -1 if
+                     there was none. 
+  */
+  private void removeOlderAndExcessFiles (int olderIndex) {
+    int firstExcess = Math.max(1, recentFilesMax);
+    int excess = files.truncate(firstExcess);
+    if (olderIndex >= firstExcess) {
+      excess++;
+    }
+    else
+    if (olderIndex >= 1) {
+      announceRemoved(olderIndex);
+    }
+    for (int i = 0; i < excess; i++) {
+      announceRemoved(firstExcess);
+    }
+  }
+  
+  private void removeFile (int i) {
+   
+    files.remove(i);
+    announceRemoved(i);
+  }
+  
+  /**
+   Announce the addition of an entry to the list, unless the list is in the
+   midst of a batch of updates. 
+  
+   @param fileSpec The entry added. 
+   @param i        The position at which it was added. 
+  */
+  private void announceAdded (FileSpec fileSpec, int i) {
+    announce(Announcement.ADDED, fileSpec, i);
+  }
+  
+  /**
+   Announce the addition of an entry at the end of the list, unless the 
+   list is in the midst of a batch of updates. 
+  
+   @param fileSpec The entry added. 
+   @param i        The position at which it was added, at the end. 
+  */
+  private void announceAppended (FileSpec fileSpec, int i) {
+    announce(Announcement.APPENDED, fileSpec, i);
+  }
+  
+  /**
+   Announce the removal of an entry from the list, unless the list is in 
+   the midst of a batch of updates. 
+  
+   @param i The position from which the entry was removed. 
+  */
+  private void announceRemoved (int i) {
+    announce(Announcement.REMOVED, null, i);
+  }
+  
+  private void announceRetitled (FileSpec fileSpec) {
+    announce(Announcement.RETITLED, fileSpec, -1);
+  }
+  
+  private void announceChanged () {
+    announce(Announcement.CHANGED, null, -1);
+  }
+  
+  /**
+   Note a change to the list, to be announced once the lock has been 
+   released, unless the list is in the midst of a batch of 
+   updates, in which case the batch is announced as a whole at its end. 
+  
+   @param change   The kind of change made. 
+   @param fileSpec The entry concerned, if any. 
+   @param i        The position concerned, if any. 
+  */
+  private void announce (int change, FileSpec fileSpec, int i) {
+    snapshots = null;
+    viewStale = true;
+    changeCount++;
+    if (updateDepth > 0) {
+      changedDuringUpdate = true;
+    } else {
+      announcements.add(new Announcement(change, fileSpec, i, changeCount));
+    }
+  }
+  
+  /**
+   Once the lock on this list has been released, publish the list as it 
+   now stands, announce any changes waiting to be announced, and then force 
+   any journal records written out to the storage device. Nothing is done 
+   while the lock is still held. 
+  */
+  private void finishChanges () {
+    if (Thread.holdsLock(this)) {
+      return;
+    }
+    RecentFilesJournal written;
+    synchronized (this) {
+      publish();
+      written = journal;
+    }
+    announceChanges();
+    if (written != null) {
+      written.force();
+    }
+  }
+  
+  /**
+   Announce the changes waiting to be announced, one at a time, in the 
+   order they were made, unless another thread is announcing them already,
+   in which case that thread is left to announce these as well. Changes 
+   made by the methods called are announced by the same loop, once the 
+   method making them has returned. 
+  */
+  private void announceChanges () {
+    if (announcing.isHeldByCurrentThread()) {
+      return;
+    }
+    boolean waiting = true;
+    while (waiting && announcing.tryLock()) {
+      try {
+        Announcement announcement = nextAnnouncement();
+        while (announcement != null) {
+          announcedChange = announcement.number;
+          announcement.announce();
+          announcement = nextAnnouncement();
+        }
+      } finally {
+        announcing.unlock();
+      }
+      // A change noted just before the lock was released is announced by
+      // this thread, since the thread that made it may have found the
+      // lock still held. 
+      synchronized (this) {
+        waiting = (announcements.size() > 0);
+      }
+    }
+  }
+  
+  private synchronized Announcement nextAnnouncement () {
+    return announcements.poll();
+  }
+  
+  /**
+   Return the number of the change now being announced, for use by the 
+   methods called as the list changes. 
+  
+   @return The number of changes made to the list up to, and including, 
+           the one being announced. 
+  */
+  long getAnnouncedChange () {
+    return announcedChange;
+  }
+  
+  /**
+   Return the number of changes included in the list as last published, 
+   without waiting on changes. 
+  
+   @return The number of changes made to the list before it was last 
+           published. 
+  */
+  long getPublishedChange () {
+    return publishedChange;
+  }
+  
+  /**
+   Called when an entry has been added to the list, other than during a 
+   batch of updates. Does nothing here. 
+  
+   @param fileSpec The entry added. 
+   @param i        The position at which it was added. 
+  */
+  protected void fileAdded (FileSpec fileSpec, int i) {
+    
+  }
+  
+  /**
+   Called when an entry has been added at the end of the list, as it is 
+   loaded, other than during a batch of updates. Here, fileAdded is called. 
+  
+   @param fileSpec The entry added. 
+   @param i        The position at which it was added, at the end. 
+  */
+  protected void fileAppended (FileSpec fileSpec, int i) {
+    fileAdded(fileSpec, i);
+  }
+  
+  /**
+   Called when an entry has been removed from the list, other than during 
+   a batch of updates. Does nothing here. 
+  
+   @param i The position from which the entry was removed. 
+  */
+  protected void fileRemoved (int i) {
+    
+  }
+  
+  /**
+   Called when the title of an entry has been changed through this class,
+   other than during a batch of updates. Does nothing here. 
+  
+   @param fileSpec The entry whose title has changed. 
+  */
+  protected void fileRetitled (FileSpec fileSpec) {
+    
+  }
+  
+  /**
+   Called when any part of the list may have changed, other than during a 
+   batch of updates. Does nothing here. 
+  */
+  protected void filesChanged () {
+    
+  }
+  
+  /**
+   Called once the outermost batch of updates has ended, if the list has 
+   changed. Here, filesChanged is called. 
+  */
+  protected void updateEnded () {
+    filesChanged();
+  }
+  
+  /**
+   Modify the title of a recent file spec, found directly by its title. If
+   no file has the old title, a change to the list is announced anyway, in
+   case a title has been changed elsewhere. 
+  
+   @param oldTitle The title before the modification. 
+   @param newTitle The title after the modification. 
+  */
+  public void modRecentFile(String oldTitle, String newTitle) {
+    synchronized (this) {
+      FileSpec fs = files.getByTitle(oldTitle);
+      if (fs != null) {
+        fs.setCollectionTitle(newTitle);
+        files.titleChanged(fs);
+        indexFile(fs);
+        announceRetitled(fs);
+      } else {
+        announceChanged();
+      }
+      
+      requestSave();
+    }
+    finishChanges();
+  }
+  
+  /**
+   Modify the title of a recent file spec. 
+  
+   @param file The file whose entry we are looking for. 
+   @param newTitle The title to be applied to this entry. 
+  */
+  public void modRecentFile(File file, String newTitle) {
+    synchronized (this) {
+      FileSpec fs = files.get(file);
+      if (fs != null) {
+        fs.setCollectionTitle(newTitle);
+        files.titleChanged(fs);
+        indexFile(fs);
+        announceRetitled(fs);
+      }
+    }
+    finishChanges();
+  }
+
+  /**
+   Set the maximum number of recent files to be retained.
+
+   @param recentFilesMax The number of recent files to be retained.
+   */
+  public void setRecentFilesMax (int recentFilesMax) {
+    synchronized (this) {
+      this.recentFilesMax = recentFilesMax;
+      while (files.size() > recentFilesMax) {
+        removeFile (files.size() - 1);
+      }
+    }
+    finishChanges();
+  }
+  
+  /**
+   Get the maximum number of recent files to be retained. 
+   
+   @return The number of recent files to be retained.
+  */
+  // public int getRecentFilesMax () {
+  //   return recentFilesMax;
+  // }
+
+  /**
+   Clear the recent files history, leaving only the most recent file. 
+   */
+  public void clearHistory () {
+    synchronized (this) {
+      while (files.size() > 1) {
+        removeFile(files.size() - 1);
+      }
+      FileSpec nullFileSpec = new FileSpec();
+      for (int i = 1; i < recentFilesMax; i++) {
+        nullFileSpec.saveToRecentPrefs("", i);
+      }
+      
+      // Those preferences may be ours, so forget what we last wrote to them
+      for (int i = 1; i < savedSlots.size(); i++) {
+        savedSlots.set(i, null);
+      }
+    }
+    finishChanges();
+  }
+
+  /**
+   Get the entry with a particular path. 
+  
+   @param path The path of interest. 
+  
+   @return The matching FileSpec entry, if the path is in the list, 
+           otherwise null. 
+  */
+  public synchronized FileSpec get(String path) {
+    return files.get(path);
+  }
+  
+  /**
+   Get the entry for a particular file. 
+  
+   @param file The file of interest. 
+  
+   @return The matching FileSpec entry, if the file is in the list, 
+           otherwise null. 
+  */
+  public synchronized FileSpec get(File file) {
+    return files.get(file);
+  }
+
+  /**
+   Return the position of the entry with a particular path, in the list as 
+   it now stands, found through the index of paths, without decoding any 
+   other entry. The list is published first, if it has changed, so that 
+   the position is also that of the entry in the list as last published. 
+  
+   @param path The path of interest. 
+  
+   @return The position of the matching entry, or -1 if the path is not in
+           the list. 
+  */
+  synchronized int indexOf (String path) {
+    publish();
+    FileSpec fileSpec = files.get(path);
+    return (fileSpec == null ? -1 : files.indexOf(fileSpec));
+  }
+  
+  /**
+   Return the number of entries decoded so far, out of those loaded from a
+   journal, plus any added since. 
+  
+   @return The number of entries held as file specs. 
+  */
+  synchronized int getDecodedCount () {
+    return files.getDecodedCount();
+  }
+
+  /**
+   Get a particular FileSpec entry, given its position in the list as last
+   published, without waiting on changes. 
+
+   @param i The index position of the desired entry in the list.
+
+   @return The specified FileSpec entry, if one exists at the index given,
+           otherwise null.
+   */
+  public FileSpec get (int i) {
+    PublishedList<RecentFileList.Entry> current = view;
+    if (i < 0 || i >= current.size()) {
+      return null;
+    } else {
+      return decode(current.get(i));
+    }
+  }
+  
+  /**
+   Return a range of entries from the list as last published, all from the
+   same publication, without waiting on changes. 
+  
+   @param start The position of the first entry wanted. 
+   @param end   The position following the last entry wanted. 
+  
+   @return The entries in the range, or as many of them as there are. 
+  */
+  FileSpec[] getRange (int start, int end) {
+    PublishedList<RecentFileList.Entry> current = view;
+    end = Math.min(end, current.size());
+    FileSpec[] range = new FileSpec[Math.max(0, end - start)];
+    for (int i = 0; i < range.length; i++) {
+      range[i] = decode(current.get(start + i));
+    }
+    return range;
+  }
+  
+  /**
+   Return the file spec for a published entry, only waiting on changes if 
+   the entry has yet to be decoded. 
+  */
+  private FileSpec decode (RecentFileList.Entry entry) {
+    FileSpec fileSpec = entry.getDecoded();
+    if (fileSpec == null) {
+      synchronized (this) {
+        fileSpec = files.decode(entry);
+      }
+    }
+    return fileSpec;
+  }
+  
+  /**
+   Publish the list as it now stands, if it has changed since last 
+   published. 
+  */
+  private synchronized void publish () {
+    if (viewStale) {
+      viewStale = false;
+      view = files.publish();
+      publishedChange = changeCount;
+    }
+  }
+  
+  /**
+   Return immutable snapshots of all the entries in the list, in order,
+   suitable for handing to background threads. The same snapshots are
+   returned, without waiting on any thread changing the list, until the
+   list next changes, after which they are taken afresh on the next request.
+   A change made to an entry directly, rather than through this class, is
+   seen once the list next changes.
+
+   @return A list of snapshots, most recent first.
+  */
+  public java.util.List<FileSpecSnapshot> getSnapshots() {
+    java.util.List<FileSpecSnapshot> current = snapshots;
+    if (current == null) {
+      current = takeSnapshots();
+    }
+    return current;
+  }
+  
+  private synchronized java.util.List<FileSpecSnapshot> takeSnapshots() {
+    if (snapshots == null) {
+      FileSpec[] specs = files.toArray();
+      ArrayList<FileSpecSnapshot> taken
+          = new ArrayList<FileSpecSnapshot>(specs.length);
+      for (int i = 0; i < specs.length; i++) {
+        taken.add(specs[i].snapshot());
+      }
+      snapshots = Collections.unmodifiableList(taken);
+    }
+    return snapshots;
+  }
+
+  /**
+   Return the number of recent files in the list as last published, 
+   without waiting on changes.
+  
+   @return The number of recent files in the list.  
+  */
+  public int size() {
+    return view.size();
+  }
+  
+  /**
+   A change to the list, waiting to be announced. 
+   */
+  private class Announcement {
+    
+    static final int ADDED        = 0;
+    static final int APPENDED     = 1;
+    static final int REMOVED      = 2;
+    static final int RETITLED     = 3;
+    static final int CHANGED      = 4;
+    static final int UPDATE_ENDED = 5;
+    
+    private final int       change;
+    private final FileSpec  fileSpec;
+    private final int       i;
+    
+    /** The number of changes made to the list, up to and including this. */
+    private final long      number;
+    
+    Announcement (int change, FileSpec fileSpec, int i, long number) {
+      this.change = change;
+      this.fileSpec = fileSpec;
+      this.i = i;
+      this.number = number;
+    }
+    
+    void announce () {
+      switch (change) {
+        case ADDED:
+          fileAdded(fileSpec, i);
+          break;
+        case APPENDED:
+          fileAppended(fileSpec, i);
+          break;
+        case REMOVED:
+          fileRemoved(i);
+          break;
+        case RETITLED:
+          fileRetitled(fileSpec);
+          break;
+        case CHANGED:
+          filesChanged();
+          break;
+        default:
+          updateEnded();
+          break;
+      }
+    }
+  }
+  
+  /**
+   The encoding last produced for an entry, along with the modification 
+   count of the entry at that time. 
+   */
+  private static class SavedEncoding {
+    
+    private final int       modCount;
+    private final boolean   compact;
+    private final String    value;
+    
+    SavedEncoding (int modCount, boolean compact, String value) {
+      this.modCount = modCount;
+      this.compact = compact;
+      this.value = value;
+    }
+  }
+  
+  public synchronized void displayRecentFiles() {
+    System.out.println ("RecentFiles.displayRecentFiles");
+    System.out.println("  files");
+    for (int i = 0; i < files.size(); i++) {
+      System.out.println("    " + String.valueOf(i) + ": " 
+          + files.get(i).getPath());
+    }
+  }
+
+}
@@ -0,0 +1,1103 @@
+/*
+ * Copyright 1999 - 2017 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.powersurgepub.psfiles;
+
+  import java.io.*;
+  import java.nio.*;
+  import java.util.*;
+  import java.util.concurrent.*;
+
+/**
+ The ordered list of file specs maintained by RecentFiles, with the most
+ recently used at the top. <p>
+
+ The entries are kept in a doubly linked list, along with indexes by path,
+ by file and by the file spec itself, so that adding an entry at either end,
+ finding an entry, and removing an entry are all done in constant time,
+ regardless of the length of the list. <p>
+
+ Each entry also holds an order key, rising from the top of the list to the
+ bottom, with a Fenwick tree counting the entries at or below each key. So
+ the position of an entry, and the entry at a position, are both found in
+ logarithmic time, without walking the list. When an entry has no free key
+ to take, the keys around it are spread out, over only as much of the list
+ as is crowded; only when the whole list is crowded are all the keys given
+ out afresh, in a larger range. <p>
+
+ Entries may also be added in encoded form, straight from a snapshot file
+ read into memory, in which case each is only decoded into a file spec when first
+ requested, and the path and file indexes are only built when next needed.
+ So a long list may be loaded without creating a single file spec. <p>
+
+ Entries may also be found by collection title, ignoring case. The title
+ index is only built when first needed, and entries added after that are
+ only indexed by title at the next lookup, so that adding an entry does not
+ force its path to be resolved. A title changed other than through this
+ class is noticed at the next lookup: each file spec indexed by title tells
+ its entry of any change to its title, and only the entries so told are
+ indexed afresh. <p>
+
+ An entry whose canonical path has yet to be resolved is indexed under its
+ absolute path, so that adding it never waits on the file system. Once its
+ canonical path is known, reindexResolved moves it to that path. <p>
+
+ The list may also be published, as an immutable PublishedList of its
+ entries, which is then kept up to date as each entry is linked or unlinked,
+ at a cost that grows only with the logarithm of the length of the list. An
+ entry read from a published list may be decoded without the lock held by
+ the owner of the list, if it has already been decoded, and otherwise with
+ it, by decode. <p>
+
+ A file spec may only appear once in the list at any one time. If a journal
+ is attached, each change to the list is recorded there.
+ */
+final class RecentFileList {
+
+  /** Sentinel whose next entry is the first, and previous is the last. */
+  private final   Entry                         head = new Entry();
+
+  private         int                           size = 0;
+
+  /** Incremented whenever entries are added, removed or moved. */
+  private         int                           modCount = 0;
+
+  /** The entries that have been decoded, keyed by file spec. */
+  private final   IdentityHashMap<FileSpec, Entry> entries
+      = new IdentityHashMap<FileSpec, Entry>();
+
+  /** True if the path and file indexes are up to date. */
+  private         boolean                       indexed = true;
+
+  /** The entries in the list, keyed by path. */
+  private final   HashMap<String, Entry>        pathIndex
+      = new HashMap<String, Entry>();
+
+  /** The entries in the list, keyed by file. */
+  private final   HashMap<File, Entry>          fileIndex
+      = new HashMap<File, Entry>();
+
+  /** The entries in the list, keyed by case-folded collection title. */
+  private final   HashMap<String, ArrayList<Entry>> titleIndex
+      = new HashMap<String, ArrayList<Entry>>();
+
+  /** True once the title index has been built. */
+  private         boolean                       titlesIndexed = false;
+
+  /** Entries added since the title index was built, not yet indexed. */
+  private final   ArrayList<Entry>              titlesPending
+      = new ArrayList<Entry>();
+
+  /** Entries whose file specs have told of a change to their titles. */
+  private final   ConcurrentLinkedQueue<Entry>  titlesChanged
+      = new ConcurrentLinkedQueue<Entry>();
+
+  /** The number of entries awaiting their canonical paths. */
+  private         int                           provisionalCount = 0;
+
+  /** The entries by order key, with unused keys left null. */
+  private         Entry[]                       slots = new Entry[17];
+
+  /** Fenwick tree counting the entries at or below each order key. */
+  private         int[]                         counts = new int[17];
+
+  /** The decoded entries in order, or null if not yet built. */
+  private         FileSpec[]                    ordered = null;
+
+  /** The entries as last published, or null if not kept up to date. */
+  private         PublishedList<Entry>          published
+      = PublishedList.empty();
+
+  private         RecentFilesJournal            journal = null;
+
+  RecentFileList() {
+    head.previous = head;
+    head.next = head;
+  }
+
+  /**
+   Attach a journal in which to record changes to the list.
+
+   @param journal The journal, or null to stop recording changes.
+  */
+  void setJournal(RecentFilesJournal journal) {
+    this.journal = journal;
+  }
+
+  int size() {
+    return size;
+  }
+
+  /**
+   Return the number of entries decoded into file specs, including those
+   added as file specs in the first place.
+
+   @return The number of entries held as file specs.
+  */
+  int getDecodedCount() {
+    return entries.size();
+  }
+
+  /**
+   Return a count of the changes made to the order of the list, so that
+   anything kept in step with the list can tell when it has fallen behind.
+
+   @return A number that changes whenever the list changes.
+  */
+  int getModCount() {
+    return modCount;
+  }
+
+  /**
+   Return the entry at the given position.
+
+   @param i The position of the desired entry, with zero being the top.
+
+   @return The entry at the given position, or null if there is none.
+  */
+  FileSpec get(int i) {
+    if (i < 0 || i >= size) {
+      return null;
+    }
+    else
+    if (ordered != null) {
+      return ordered[i];
+    } else {
+      return decode(entryAt(i));
+    }
+  }
+
+  /**
+   Return the entry at the top of the list.
+
+   @return The top entry, or null if the list is empty.
+  */
+  FileSpec first() {
+    return (size == 0 ? null : decode(head.next));
+  }
+
+  /**
+   Return the entry with the given path.
+
+   @param path The path of interest.
+
+   @return The matching entry, or null if none.
+  */
+  FileSpec get(String path) {
+    index();
+    Entry entry = pathIndex.get(path);
+    return (entry == null ? null : decode(entry));
+  }
+
+  /**
+   Return the entry for the given file.
+
+   @param file The file of interest.
+
+   @return The matching entry, or null if none.
+  */
+  FileSpec get(File file) {
+    index();
+    Entry entry = fileIndex.get(file);
+    return (entry == null ? null : decode(entry));
+  }
+
+  /**
+   Return the entry with the given collection title, ignoring case. If more
+   than one entry has the title, the one nearest the top is returned.
+
+   @param title The collection title of interest.
+
+   @return The matching entry, or null if none.
+  */
+  FileSpec getByTitle(String title) {
+    indexTitles();
+    ArrayList<Entry> candidates = titleIndex.get(foldTitle(title));
+    if (candidates == null) {
+      return null;
+    }
+
+    Entry found = candidates.get(0);
+    for (int i = 1; i < candidates.size(); i++) {
+      if (isAbove(candidates.get(i), found)) {
+        found = candidates.get(i);
+      }
+    }
+    return found.fileSpec;
+  }
+
+  /**
+   Note that the collection title of an entry has been changed, so that it
+   may be found under its new title.
+
+   @param fileSpec The entry whose title has changed.
+  */
+  void titleChanged(FileSpec fileSpec) {
+    Entry entry = entries.get(fileSpec);
+    if (entry != null && entry.title != null) {
+      indexTitle(entry);
+    }
+  }
+
+  /**
+   Are any entries indexed under their absolute paths, because their 
+   canonical paths had yet to be resolved when they were added?
+  
+   @return True if any entries await their canonical paths. 
+  */
+  boolean hasProvisional() {
+    index();
+    return (provisionalCount > 0);
+  }
+
+  /**
+   Is the given entry indexed under its absolute path, because its 
+   canonical path had yet to be resolved when it was added?
+  
+   @param fileSpec The entry of interest. 
+  
+   @return True if the entry is in the list, and awaits its canonical path.
+  */
+  boolean isProvisional(FileSpec fileSpec) {
+    index();
+    Entry entry = entries.get(fileSpec);
+    return (entry != null && entry.provisional);
+  }
+
+  /**
+   Return the entries indexed under their absolute paths, because their 
+   canonical paths had yet to be resolved when they were added. 
+  
+   @return A new list of the entries awaiting their canonical paths. 
+  */
+  List<FileSpec> getProvisional() {
+    index();
+    ArrayList<FileSpec> specs = new ArrayList<FileSpec>(provisionalCount);
+    for (Entry e = head.next; e != head; e = e.next) {
+      if (e.provisional) {
+        specs.add(e.fileSpec);
+      }
+    }
+    return specs;
+  }
+
+  /**
+   Index an entry under its canonical path, in place of its absolute path,
+   if its canonical path is now known. An entry whose canonical path is 
+   already that of another entry is left where it was, for the caller to 
+   decide which of the two to keep. A change of path is recorded in the 
+   journal as the removal of the entry under its old path, and its 
+   insertion again in the same place. 
+  
+   @param fileSpec The entry whose canonical path may now be known. 
+  
+   @return The other entry already indexed under the same canonical path, 
+           or null if there is none. 
+  */
+  FileSpec reindexResolved(FileSpec fileSpec) {
+    index();
+    Entry entry = entries.get(fileSpec);
+    if (entry == null 
+        || ! entry.provisional
+        || ! fileSpec.isCanonicalPathKnown()) {
+      return null;
+    }
+    String path = fileSpec.getKnownPath();
+    Entry other = pathIndex.get(path);
+    if (other != null && other != entry) {
+      return decode(other);
+    }
+    entry.provisional = false;
+    provisionalCount--;
+    if (! path.equals(entry.path)) {
+      moveIndexedPath(entry, path);
+    }
+    return null;
+  }
+
+  /**
+   Index an entry under a new path, in place of the one it was indexed 
+   under before. 
+  
+   @param entry The entry to be moved. 
+   @param path  Its new path. 
+  */
+  private void moveIndexedPath(Entry entry, String path) {
+    String oldPath = entry.path;
+    if (pathIndex.get(oldPath) == entry) {
+      pathIndex.remove(oldPath);
+    }
+    entry.path = path;
+    pathIndex.put(path, entry);
+    if (journal != null) {
+      journal.recordRemove(oldPath);
+      journal.recordInsert(entry.fileSpec, indexOf(entry.fileSpec));
+    }
+  }
+
+  /**
+   Return the position of the given entry, found from its order key.
+
+   @param fileSpec The entry of interest.
+
+   @return The position of the entry, or -1 if it is not in the list.
+  */
+  int indexOf(FileSpec fileSpec) {
+    Entry entry = entries.get(fileSpec);
+    if (entry == null) {
+      return -1;
+    } else {
+      return positionOf(entry);
+    }
+  }
+
+  /**
+   Return the position of a linked entry, by counting the entries at or
+   above its order key in the Fenwick tree.
+
+   @param entry The entry of interest.
+
+   @return The position of the entry.
+  */
+  private int positionOf(Entry entry) {
+    int count = 0;
+    for (int k = entry.key; k > 0; k -= (k & -k)) {
+      count += counts[k];
+    }
+    return count - 1;
+  }
+
+  /**
+   Return the entries of the list as they now stand, as an immutable list
+   that may be read by other threads without locking. The published list
+   is built the first time this is called after entries have been added in
+   encoded form, without decoding them, and is otherwise kept up to date as
+   the list changes.
+
+   @return The entries, with the top entry first.
+  */
+  PublishedList<Entry> publish() {
+    if (published == null) {
+      ArrayList<Entry> linked = new ArrayList<Entry>(size);
+      for (Entry e = head.next; e != head; e = e.next) {
+        linked.add(e);
+      }
+      published = PublishedList.of(linked);
+    }
+    return published;
+  }
+
+  /**
+   Return all the entries in order, decoding any not yet decoded. The array
+   returned is shared, and must not be modified.
+
+   @return An array of all the entries, with the top entry first.
+  */
+  FileSpec[] toArray() {
+    if (ordered == null) {
+      FileSpec[] array = new FileSpec[size];
+      int i = 0;
+      for (Entry e = head.next; e != head; e = e.next) {
+        array[i] = decode(e);
+        i++;
+      }
+      ordered = array;
+    }
+    return ordered;
+  }
+
+  /**
+   Return those entries that have been decoded so far, in order, without
+   decoding any others. Entries not yet decoded are unchanged since they
+   were loaded.
+
+   @return A new array of the decoded entries, with the top entry first.
+  */
+  FileSpec[] toDecodedArray() {
+    if (ordered != null) {
+      return ordered.clone();
+    }
+    FileSpec[] array = new FileSpec[entries.size()];
+    int i = 0;
+    for (Entry e = head.next; e != head; e = e.next) {
+      if (e.fileSpec != null) {
+        array[i] = e.fileSpec;
+        i++;
+      }
+    }
+    return array;
+  }
+
+  /**
+   Return the encoded form of every entry, in order. Entries not yet decoded
+   are copied as they were loaded, without being decoded, and from then on
+   are decoded from the copy. So the buffer they were loaded from, holding
+   the whole of the snapshot, is no longer referenced, and may be freed. 
+
+   @return A new array holding the encoded bytes of each entry.
+  */
+  byte[][] toEncodedArray() {
+    byte[][] array = new byte[size][];
+    int i = 0;
+    for (Entry e = head.next; e != head; e = e.next) {
+      if (e.fileSpec == null) {
+        array[i] = e.getEncoded();
+        e.source = ByteBuffer.wrap(array[i]);
+        e.offset = 0;
+      } else {
+        array[i] = FileSpecCodec.encode(e.fileSpec);
+      }
+      i++;
+    }
+    return array;
+  }
+
+  void addFirst(FileSpec fileSpec) {
+    insertBefore(head.next, fileSpec);
+    if (journal != null) {
+      journal.recordAdd(fileSpec, true);
+    }
+  }
+
+  void addLast(FileSpec fileSpec) {
+    insertBefore(head, fileSpec);
+    if (journal != null) {
+      journal.recordAdd(fileSpec, false);
+    }
+  }
+
+  /**
+   Add an entry at the given position.
+
+   @param i        The position the new entry is to occupy.
+   @param fileSpec The entry to be added.
+  */
+  void add(int i, FileSpec fileSpec) {
+    if (i < 0 || i > size) {
+      throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + size);
+    }
+    if (i == 0) {
+      addFirst(fileSpec);
+    }
+    else
+    if (i == size) {
+      addLast(fileSpec);
+    } else {
+      insertBefore(entryAt(i), fileSpec);
+      if (journal != null) {
+        journal.recordInsert(fileSpec, i);
+      }
+    }
+  }
+
+  /**
+   Add an entry at the bottom of the list, in encoded form, to be decoded
+   when first requested. The addition is not recorded in any journal, since
+   it is only used when loading a snapshot.
+
+   @param source The buffer holding the encoded bytes, which must not
+                 change afterwards.
+   @param offset The position of the encoded bytes within the buffer.
+   @param length The number of encoded bytes.
+  */
+  void addLastEncoded(ByteBuffer source, int offset, int length) {
+    Entry entry = new Entry();
+    entry.source = source;
+    entry.offset = offset;
+    entry.length = length;
+    published = null;
+    link(head, entry);
+    indexed = false;
+    if (titlesIndexed) {
+      titlesPending.add(entry);
+    }
+  }
+
+  /**
+   Put a new entry in the place of an existing one. The replacement is not
+   recorded in any journal, since it is only used when replaying one.
+
+   @param oldSpec The entry to be replaced.
+   @param newSpec The entry to take its place.
+  */
+  void replace(FileSpec oldSpec, FileSpec newSpec) {
+    Entry entry = entries.get(oldSpec);
+    if (entry != null) {
+      Entry successor = entry.next;
+      unlink(entry);
+      insertBefore(successor, newSpec);
+    }
+  }
+
+  /**
+   Remove the entry at the given position.
+
+   @param i The position of the entry to be removed.
+
+   @return The entry removed.
+  */
+  FileSpec remove(int i) {
+    if (i < 0 || i >= size) {
+      throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + size);
+    }
+    Entry entry = entryAt(i);
+    FileSpec fileSpec = decode(entry);
+    String path = getIndexedPath(entry);
+    unlink(entry);
+    if (journal != null) {
+      journal.recordRemove(path);
+    }
+    return fileSpec;
+  }
+
+  /**
+   Remove the given entry.
+
+   @param fileSpec The entry to be removed.
+
+   @return True if the entry was found and removed.
+  */
+  boolean remove(FileSpec fileSpec) {
+    Entry entry = entries.get(fileSpec);
+    if (entry == null) {
+      return false;
+    } else {
+      String path = getIndexedPath(entry);
+      unlink(entry);
+      if (journal != null) {
+        journal.recordRemove(path);
+      }
+      return true;
+    }
+  }
+
+  /**
+   Remove entries from the bottom of the list, until no more than the given
+   number remain.
+
+   @param newSize The number of entries to be retained.
+
+   @return The number of entries removed.
+  */
+  int truncate(int newSize) {
+    int removed = 0;
+    while (size > newSize) {
+      unlink(head.previous);
+      removed++;
+    }
+    if (removed > 0 && journal != null) {
+      journal.recordTruncate(newSize);
+    }
+    return removed;
+  }
+
+  /**
+   Return the entry at the given position, found by descending the Fenwick
+   tree to the lowest order key with i entries at or above it.
+
+   @param i The position.
+
+   @return The entry at the given position.
+  */
+  private Entry entryAt(int i) {
+    int k = 0;
+    int remaining = i + 1;
+    for (int step = Integer.highestOneBit(counts.length - 1);
+        step > 0; step >>= 1) {
+      if (k + step < counts.length && counts[k + step] < remaining) {
+        k += step;
+        remaining -= counts[k];
+      }
+    }
+    return slots[k + 1];
+  }
+
+  /**
+   Return the path under which an entry is indexed, and so known to any
+   journal.
+
+   @param entry The entry of interest.
+
+   @return The path of the entry.
+  */
+  private String getIndexedPath(Entry entry) {
+    index();
+    if (entry.path != null) {
+      return entry.path;
+    } else {
+      return decode(entry).getKnownPath();
+    }
+  }
+
+  /**
+   Return the file spec for an entry, decoding it first if need be. An
+   entry taken from a published list may since have been removed from this
+   one, in which case it is decoded without being indexed or journaled.
+
+   @param entry The entry of interest.
+
+   @return The entry's file spec.
+  */
+  FileSpec decode(Entry entry) {
+    if (entry.fileSpec == null) {
+      byte[] bytes = entry.getEncoded();
+      FileSpec fileSpec = new FileSpec();
+      FileSpecCodec.decode(bytes, 0, bytes.length, fileSpec);
+      entry.source = null;
+      entry.fileSpec = fileSpec;
+      if (entry.linked) {
+        entries.put(fileSpec, entry);
+        if (journal != null) {
+          journal.recordLoaded(fileSpec, bytes);
+        }
+      }
+    }
+    return entry.fileSpec;
+  }
+
+  /**
+   Bring the path and file indexes up to date, if entries have been added
+   in encoded form since they were last built. Only the path of each
+   encoded entry is decoded.
+  */
+  private void index() {
+    if (! indexed) {
+      pathIndex.clear();
+      fileIndex.clear();
+      provisionalCount = 0;
+      for (Entry e = head.next; e != head; e = e.next) {
+        String path;
+        File file;
+        if (e.fileSpec == null) {
+          byte[] bytes = e.getEncoded();
+          path = FileSpecCodec.decodePath(bytes, 0, bytes.length);
+          file = (path == null ? null : new File(path));
+          e.provisional = false;
+        } else {
+          e.provisional = (! e.fileSpec.isCanonicalPathKnown());
+          if (e.provisional) {
+            provisionalCount++;
+          }
+          path = e.fileSpec.getKnownPath();
+          file = e.fileSpec.getFile();
+        }
+        e.path = path;
+        e.file = file;
+        if (path != null && ! pathIndex.containsKey(path)) {
+          pathIndex.put(path, e);
+        }
+        if (file != null && ! fileIndex.containsKey(file)) {
+          fileIndex.put(file, e);
+        }
+      }
+      indexed = true;
+    }
+  }
+
+  /**
+   Build the title index if it has not yet been built, or else index the
+   titles of any entries added since, and of any entries whose titles have
+   changed since.
+  */
+  private void indexTitles() {
+    if (! titlesIndexed) {
+      for (Entry e = head.next; e != head; e = e.next) {
+        indexTitle(e);
+      }
+      titlesIndexed = true;
+    } else {
+      for (int i = 0; i < titlesPending.size(); i++) {
+        Entry entry = titlesPending.get(i);
+        if (entry.linked && entry.title == null) {
+          indexTitle(entry);
+        }
+      }
+      Entry changed = titlesChanged.poll();
+      while (changed != null) {
+        changed.titleChanged = false;
+        if (changed.linked && changed.title != null) {
+          indexTitle(changed);
+        }
+        changed = titlesChanged.poll();
+      }
+    }
+    titlesPending.clear();
+  }
+
+  /**
+   Index an entry under its current title, decoding it first if need be,
+   and taking it out from under any title it was indexed by before.
+
+   @param entry The entry to be indexed.
+  */
+  private void indexTitle(Entry entry) {
+    if (entry.title != null) {
+      unindexTitle(entry);
+    }
+    FileSpec fileSpec = decode(entry);
+    if (entry.titleWatcher == null) {
+      final Entry watched = entry;
+      entry.titleWatcher = new Runnable() {
+        public void run() {
+          if (! watched.titleChanged) {
+            watched.titleChanged = true;
+            titlesChanged.add(watched);
+          }
+        }
+      };
+      fileSpec.watchTitle(entry.titleWatcher);
+    }
+    entry.title = foldTitle(fileSpec.getCollectionTitle());
+    ArrayList<Entry> titled = titleIndex.get(entry.title);
+    if (titled == null) {
+      titled = new ArrayList<Entry>(1);
+      titleIndex.put(entry.title, titled);
+    }
+    titled.add(entry);
+  }
+
+  private void unindexTitle(Entry entry) {
+    ArrayList<Entry> titled = titleIndex.get(entry.title);
+    if (titled != null) {
+      titled.remove(entry);
+      if (titled.isEmpty()) {
+        titleIndex.remove(entry.title);
+      }
+    }
+    entry.title = null;
+  }
+
+  /**
+   Fold a title so that two titles have the same folded form exactly when
+   String.equalsIgnoreCase would find them equal.
+
+   @param title The title to be folded.
+
+   @return The folded title.
+  */
+  private static String foldTitle(String title) {
+    StringBuilder folded = null;
+    for (int i = 0; i < title.length(); i++) {
+      char c = title.charAt(i);
+      char f = Character.toLowerCase(Character.toUpperCase(c));
+      if (folded == null && f != c) {
+        folded = new StringBuilder(title.length());
+        folded.append(title, 0, i);
+      }
+      if (folded != null) {
+        folded.append(f);
+      }
+    }
+    return (folded == null ? title : folded.toString());
+  }
+
+  /**
+   Determine whether one entry is nearer the top of the list than another,
+   by comparing their order keys.
+
+   @param entry The first entry.
+   @param other The second entry.
+
+   @return True if the first entry comes before the second.
+  */
+  private boolean isAbove(Entry entry, Entry other) {
+    return (entry.key < other.key);
+  }
+
+  private void insertBefore(Entry successor, FileSpec fileSpec) {
+    if (entries.containsKey(fileSpec)) {
+      throw new IllegalArgumentException
+          ("File spec is already in the list: " + fileSpec);
+    }
+    Entry entry = new Entry();
+    entry.fileSpec = fileSpec;
+    link(successor, entry);
+    entries.put(fileSpec, entry);
+    if (indexed) {
+      if (! fileSpec.isCanonicalPathKnown()) {
+        entry.provisional = true;
+        provisionalCount++;
+      }
+      entry.path = fileSpec.getKnownPath();
+      entry.file = fileSpec.getFile();
+      pathIndex.put(entry.path, entry);
+      if (entry.file != null) {
+        fileIndex.put(entry.file, entry);
+      }
+    }
+    if (titlesIndexed) {
+      titlesPending.add(entry);
+    }
+  }
+
+  private void link(Entry successor, Entry entry) {
+    assignKey(successor, entry);
+    entry.previous = successor.previous;
+    entry.next = successor;
+    successor.previous.next = entry;
+    successor.previous = entry;
+    entry.linked = true;
+    size++;
+    modCount++;
+    ordered = null;
+    if (published != null) {
+      published = published.add(positionOf(entry), entry);
+    }
+  }
+
+  /**
+   Give an entry about to be linked an order key between those of its
+   neighbours-to-be, spreading out the keys around them first if there is
+   none free, or else the keys of the whole list. An entry added at either
+   end takes the key next to its neighbour, and one added between two
+   others the key midway between theirs.
+
+   @param successor The entry before which the new one is to be linked.
+   @param entry     The new entry.
+  */
+  private void assignKey(Entry successor, Entry entry) {
+    Entry predecessor = successor.previous;
+    int low = (predecessor == head ? 0 : predecessor.key);
+    int high = (successor == head ? slots.length : successor.key);
+    if (high - low < 2) {
+      if (predecessor == head
+          || successor == head
+          || ! spread(predecessor, successor)) {
+        renumber(successor);
+      }
+      low = (predecessor == head ? 0 : predecessor.key);
+      high = (successor == head ? slots.length : successor.key);
+    }
+    if (size == 0) {
+      entry.key = slots.length / 2;
+    }
+    else
+    if (successor == head) {
+      entry.key = low + 1;
+    }
+    else
+    if (predecessor == head) {
+      entry.key = high - 1;
+    } else {
+      entry.key = (low + high) >>> 1;
+    }
+    slots[entry.key] = entry;
+    for (int k = entry.key; k < counts.length; k += (k & -k)) {
+      counts[k]++;
+    }
+  }
+
+  /**
+   Spread out the keys of the entries around two adjacent entries, so that
+   there is a free key between every pair of them. The entries spread are
+   a run of the list, starting with the two given, and growing at both
+   ends, roughly doubling each time, until the keys between the entries
+   just outside it number at least twice the entries within it. So each
+   insertion only spreads as many entries as are crowded around it.
+
+   @param first  The upper of the two adjacent entries.
+   @param second The lower of the two adjacent entries.
+
+   @return True if the keys were spread, or false if even the whole list
+           has no room to spread out.
+  */
+  private boolean spread(Entry first, Entry second) {
+    Entry low = first;
+    Entry high = second;
+    int count = 2;
+    while (true) {
+      int lowKey = (low.previous == head ? 1 : low.previous.key + 1);
+      int highKey = (high.next == head
+          ? slots.length - 1 : high.next.key - 1);
+      int range = highKey - lowKey + 1;
+      if (range >= 2 * count) {
+        relabel(low, count, lowKey, range / count);
+        return true;
+      }
+      if (low.previous == head && high.next == head) {
+        return false;
+      }
+      int grow = (count / 2) + 1;
+      for (int i = 0; i < grow && low.previous != head; i++) {
+        low = low.previous;
+        count++;
+      }
+      for (int i = 0; i < grow && high.next != head; i++) {
+        high = high.next;
+        count++;
+      }
+    }
+  }
+
+  /**
+   Give a run of entries new keys, evenly spaced.
+
+   @param first The first entry in the run.
+   @param count The number of entries in the run.
+   @param key   The key for the first entry.
+   @param step  The distance between one key and the next.
+  */
+  private void relabel(Entry first, int count, int key, int step) {
+    Entry e = first;
+    for (int i = 0; i < count; i++) {
+      slots[e.key] = null;
+      for (int k = e.key; k < counts.length; k += (k & -k)) {
+        counts[k]--;
+      }
+      e = e.next;
+    }
+    e = first;
+    for (int i = 0; i < count; i++) {
+      e.key = key;
+      slots[key] = e;
+      for (int k = key; k < counts.length; k += (k & -k)) {
+        counts[k]++;
+      }
+      key += step;
+      e = e.next;
+    }
+  }
+
+  /**
+   Give every entry a new order key, one apart, with a free key left before
+   the given entry, and as many free keys at either end as there are
+   entries.
+
+   @param gapBefore The entry to be preceded by a free key, or the head if
+                    none is needed.
+  */
+  private void renumber(Entry gapBefore) {
+    int capacity = (3 * size) + 16;
+    slots = new Entry[capacity + 1];
+    counts = new int[capacity + 1];
+    int key = (capacity - size) / 2;
+    for (Entry e = head.next; e != head; e = e.next) {
+      if (e == gapBefore) {
+        key++;
+      }
+      e.key = key;
+      slots[key] = e;
+      counts[key] = 1;
+      key++;
+    }
+    for (int k = 1; k <= capacity; k++) {
+      int parent = k + (k & -k);
+      if (parent <= capacity) {
+        counts[parent] += counts[k];
+      }
+    }
+  }
+
+  /**
+   Remove an entry from the list, and from the indexes, unless a newer
+   entry has since taken its place there.
+
+   @param entry The entry to be removed.
+  */
+  private void unlink(Entry entry) {
+    if (published != null) {
+      published = published.remove(positionOf(entry));
+    }
+    entry.previous.next = entry.next;
+    entry.next.previous = entry.previous;
+    entry.linked = false;
+    size--;
+    modCount++;
+    ordered = null;
+    slots[entry.key] = null;
+    for (int k = entry.key; k < counts.length; k += (k & -k)) {
+      counts[k]--;
+    }
+    if (entry.fileSpec != null) {
+      entries.remove(entry.fileSpec);
+    }
+    if (entry.provisional) {
+      entry.provisional = false;
+      provisionalCount--;
+    }
+    if (indexed) {
+      if (entry.path != null && pathIndex.get(entry.path) == entry) {
+        pathIndex.remove(entry.path);
+      }
+      if (entry.file != null && fileIndex.get(entry.file) == entry) {
+        fileIndex.remove(entry.file);
+      }
+    }
+    if (entry.title != null) {
+      unindexTitle(entry);
+    }
+    if (entry.titleWatcher != null) {
+      entry.fileSpec.unwatchTitle(entry.titleWatcher);
+      entry.titleWatcher = null;
+    }
+  }
+
+  /**
+   One link in the list, holding either a file spec, or the encoded bytes
+   from which one may be decoded.
+   */
+  static final class Entry {
+
+    /** Set once decoded, and read by other threads without locking. */
+    private volatile FileSpec fileSpec = null;
+
+    private ByteBuffer  source = null;
+    private int         offset = 0;
+    private int         length = 0;
+
+    /** The keys under which the entry is indexed. */
+    private String      path = null;
+    private File        file = null;
+
+    /** True if indexed under its absolute path, awaiting its canonical. */
+    private boolean     provisional = false;
+
+    /** The folded title under which the entry is indexed, if it is. */
+    private String      title = null;
+
+    /** Given to the file spec, to tell of changes to its title. */
+    private Runnable    titleWatcher = null;
+
+    /** True while waiting to be indexed afresh by title, once told. */
+    private volatile boolean titleChanged = false;
+
+    private boolean     linked = false;
+
+    /** Rises from the top of the list to the bottom. */
+    private int         key = 0;
+
+    private Entry       previous;
+    private Entry       next;
+
+    /**
+     Return the file spec for this entry, if it has been decoded.
+
+     @return The file spec, or null if the entry has yet to be decoded.
+    */
+    FileSpec getDecoded() {
+      return fileSpec;
+    }
+
+    byte[] getEncoded() {
+      byte[] bytes = new byte[length];
+      ByteBuffer view = source.duplicate();
+      view.position(offset);
+      view.get(bytes);
+      return bytes;
+    }
+  }
+
+}
@@ -21,6 +21,7 @@ package com.powersurgepub.psfiles;
   import java.awt.*;
   import java.io.*;
   import java.util.*;
+  import java.util.concurrent.atomic.*;
   import javax.swing.*;
 
 /**
@@ -32,9 +33,30 @@ package com.powersurgepub.psfiles;
  different instances of RecentFiles for the different types of files. An
  optional file qualifier is provided to support these cases. <p>
 
- An internal list of file specs is maintained, and kept in sync with a JMenu
- list of menu items. Both lists are maintained in chronological sequence,
- with the most recently accessed files at the top. <p>
+ The list itself, along with its persistence, is maintained by the headless
+ RecentFileHistory, which tools without a user interface may use directly.
+ This class adds the Open Recent menu and keeps FilePrefs informed, as the
+ list changes. Both lists are maintained in chronological sequence, with
+ the most recently accessed files at the top. <p>
+
+ The Open Recent menu is only filled in when it is opened, and only after
+ the list has changed. It shows a page of the most recent files, followed by
+ a More sub-menu holding the next page, and so on, each page being filled in
+ only when it is itself opened. So the time taken to build the menu, and the
+ number of menu items held, depend only on how much of the menu is viewed,
+ not on the length of the list. <p>
+
+ Changes made during a batch of updates, between beginUpdate and endUpdate,
+ are applied to the menu and to the file prefs together, in a single task on
+ the Swing event dispatch thread. <p>
+
+ Files may be added from any thread, such as a background loader. Changes
+ made on the event dispatch thread are applied to the menu and the file
+ prefs right away. Changes made on any other thread are applied there
+ later, all together, in a single task on the event dispatch thread, so
+ that Swing is only ever touched from that thread. The menu and the file
+ prefs only ever read the list as last published, so that the event
+ dispatch thread never waits on a thread changing or saving the list. <p>
 
  Usage scenario: <p>
 
@@ -42,7 +64,7 @@ package com.powersurgepub.psfiles;
  {@code
 
      implements FileSpecOpener
- 
+
      RecentFiles recentFiles;
 
      // Program initialization
@@ -69,31 +91,58 @@ package com.powersurgepub.psfiles;
 
  @author Herb Bowie
  */
-public class RecentFiles {
-  
-  private         String              prefsQualifier          = "";
-  
-  private         int                 recentFilesMax          
-                                        = FilePrefs.RECENT_FILES_MAX_DEFAULT;
+public class RecentFiles
+    extends RecentFileHistory {
+
+  /** The number of recent files shown on each page of the menu. */
+  public static final int             MENU_PAGE_SIZE_DEFAULT  = 20;
 
-  private         ArrayList<FileSpec> files                   = new ArrayList();
+  /** The client property of a menu item holding its file spec. */
+  private static final String         MENU_ITEM_FILE_SPEC
+      = "psfiles.fileSpec";
 
   private         JMenu               recentFilesMenu         = null;
-  
+
+  /** The number of recent files shown on each page of the menu. */
+  private         int                 menuPageSize
+                                        = MENU_PAGE_SIZE_DEFAULT;
+
+  /** Incremented whenever the menu no longer matches the list. */
+  private         int                 menuGeneration          = 0;
+
+  /** The listener shared by the menu items for all the recent files. */
+  private final   java.awt.event.ActionListener menuItemListener
+      = new java.awt.event.ActionListener() {
+    public void actionPerformed(java.awt.event.ActionEvent evt) {
+      fileRecentMenuItemActionPerformed(evt);
+    }
+  };
+
+  /** The item in the recent files menu for each entry shown there. */
+  private         IdentityHashMap<FileSpec, JMenuItem> menuItems
+      = new IdentityHashMap<FileSpec, JMenuItem>();
+
   private         FileSpecOpener      fileOpener              = null;
-  
+
   private         FilePrefs           filePrefs               = null;
-  
-  private         int                 fileSelectionMode       = 
+
+  private         int                 fileSelectionMode       =
       JFileChooser.DIRECTORIES_ONLY;
-  
+
   private         String              fileContentsName        = "Items";
 
+  /** Set while changes made on other threads await the dispatch thread. */
+  private final   AtomicBoolean       refreshPending          
+      = new AtomicBoolean(false);
+
+  /** The number of changes to the list shown as of the last refresh. */
+  private         long                refreshedChange         = 0;
+
   /**
    Construct a RecentFiles instance without any prefs qualifier.
    */
   public RecentFiles () {
-    
+    super();
   }
 
   /**
@@ -103,101 +152,28 @@ public class RecentFiles {
                          different sets of recent files used for different
                          purposes by the same program.
    */
-  public RecentFiles (String prefsQualifier) { 
-    this.prefsQualifier = prefsQualifier;
-    if (prefsQualifier.length() > 0
-        && prefsQualifier.charAt(prefsQualifier.length() - 1) != '-') {
-      this.prefsQualifier = prefsQualifier + "-";
-    } else {
-      this.prefsQualifier = prefsQualifier;
-    }
+  public RecentFiles (String prefsQualifier) {
+    super(prefsQualifier);
     fileContentsName = Home.getShared().getProgramName() + " Items";
   }
-  
-  public String getPrefsQualifier () {
-    return prefsQualifier;
-  }
-  
+
   public void setFileContentsName (String fileContentsName) {
     this.fileContentsName = fileContentsName;
   }
-  
+
   public void setFilePrefs (FilePrefs filePrefs) {
     this.filePrefs = filePrefs;
   }
-  
-  /**
-   Load the recent files from the user's preferences.
-   */
-  public void loadFromPrefs () {
-    
-    int j = 0;
-    for (int i = 0; i < recentFilesMax; i++) {
-      FileSpec recentFile = new FileSpec();
-      recentFile.loadFromRecentPrefs(prefsQualifier, i);
-      if (recentFile.hasPath()) {
-        int k = 0;
-        boolean found = false;
-        while (k < files.size() && (! found)) {
-          if (recentFile.getPath().equals(get(k).getPath())) {
-            found = true;
-          } else {
-            k++;
-          }
-        }
-        if (! found) {
-          files.add(recentFile);
-  
-          if (recentFilesMenu != null) {
-            recentFilesMenu.insert (createMenuItem(recentFile), j);
-          }
-          j++;
-
-          if (filePrefs != null) {
-            filePrefs.addRecentFileAtEnd(recentFile);
-          }
-        }
-      }
-    }
-  }
-  
-  public void purgeInaccessibleFiles () {
-    
-    int i = 0;
-    while (i < files.size()) {
-      FileSpec recentFile = files.get(i);
-      if (! recentFile.exists()) {
-        removeFile(i);
-      } else {
-        i++;
-      }
-    }
-  }
 
-  /**
-   Save the recent files to the user's preferences. 
-   */
-  public void savePrefs () {
-    
-    int count = 0;
-    for (int i = 0; i < files.size(); i++) {
-      FileSpec recentFile = get(i);
-      if (recentFile.hasPath()) {
-        recentFile.saveToRecentPrefs(prefsQualifier, count);
-        count++;
-      }
-    }
-  }
-  
   public void setFileSelectionMode (int fileSelectionMode) {
     this.fileSelectionMode = fileSelectionMode;
   }
-  
+
   /**
-   Prompt the user to choose a file to be opened. 
-  
+   Prompt the user to choose a file to be opened.
+
    @return The file specification for the file to be opened, or null
-           if the user did not choose a file or folder. 
+           if the user did not choose a file or folder.
   */
   public void chooseFileToOpen (JFrame frame) {
     XFileChooser chooser = new XFileChooser ();
@@ -221,226 +197,186 @@ public class RecentFiles {
   }
 
   /**
-   Add a file that's been recently used. 
-  
-   @param file The file that's been recently used. 
-  
-   @return The file spec for the file. 
+   Let the file prefs and the recent files menu know that an entry has been
+   added to the list.
+
+   @param fileSpec The entry added.
+   @param i        The position at which it was added.
   */
-  public FileSpec addRecentFile (File file) {
-    return addRecentFile ("file", file.getAbsolutePath(), "");
+  protected void fileAdded (FileSpec fileSpec, int i) {
+    if (mustRefreshLater()) {
+      refreshLater();
+      return;
+    }
+    if (alreadyRefreshed()) {
+      return;
+    }
+    if (filePrefs != null) {
+      filePrefs.addRecentFileAt(fileSpec, i);
+    }
+    menuChanged();
   }
 
   /**
-   Add a file that's been recently used.
+   Let the file prefs and the recent files menu know that an entry has been
+   loaded at the bottom of the list, adding it at the end of the file prefs'
+   lists.
 
-   @param type A string indicating the type of file or data store.
-   @param path The path of the file or data store.
-   @param format The format of the data within the data store. 
-   */
-  public FileSpec addRecentFile (String type, String path, String format) {
-    
-    FileSpec recentFile = new FileSpec();
-    recentFile.setType(type);
-    recentFile.setPath(path);
-    recentFile.setFormat(format);
-    return addRecentFile (recentFile);
-
-  } // end method addRecentFile
-  
-  /**
-   Add a file that's been recently used.
+   @param fileSpec The entry added.
+   @param i        The position at which it was added, at the end.
+  */
+  protected void fileAppended (FileSpec fileSpec, int i) {
+    if (mustRefreshLater()) {
+      refreshLater();
+      return;
+    }
+    if (alreadyRefreshed()) {
+      return;
+    }
+    if (filePrefs != null) {
+      filePrefs.addRecentFileAtEnd(fileSpec);
+    }
+    menuChanged();
+  }
 
-   @param type   A string indicating the type of file or data store.
-   @param path   The path of the file or data store.
-   @param format The format of the data within the data store. 
-   */
-  public FileSpec addRecentFile (FileSpec recentFile) {
+  /**
+   Let the file prefs and the recent files menu know that an entry has been
+   removed from the list.
 
-    // Let's add the most recent file opened to the top of the list
-    files.add (0, recentFile);
-    JMenuItem recentItem = createMenuItem(recentFile);
-    if (recentFilesMenu != null) {
-      recentFilesMenu.insert (recentItem, 0);
+   @param i The position from which the entry was removed.
+  */
+  protected void fileRemoved (int i) {
+    if (mustRefreshLater()) {
+      refreshLater();
+      return;
+    }
+    if (alreadyRefreshed()) {
+      return;
     }
     if (filePrefs != null) {
-      filePrefs.addRecentFileAtTop(recentFile);
+      filePrefs.removeRecentFile (i);
     }
-    
-    for (int i = 1; i < files.size(); i++) {
-      if (get(i).getPath().equals(recentFile.getPath())) {
-        recentFile.merge(get(i));
-        recentItem.setText(recentFile.getCollectionTitle());
-        removeFile (i);
-        i--;
-      }
-      else
-      if (i >= recentFilesMax) {
-        removeFile (i);
-        i--;
-      } // end if we found a file to remove
-    } // end for each file in list
-    savePrefs();
-    return get(0);
-  } // end method addRecentFile
-      
-  /**
-   Add a file that should be near the top, but not replace the file
-   currently at the top of the list. 
+    menuChanged();
+  }
 
-   @param notSoRecentFile   The file to be added. 
-   */
-  public FileSpec addNotSoRecentFile (FileSpec notSoRecentFile) {
+  /**
+   Show the new title of an entry in its menu item, if it has one.
 
- 
-    files.add (1, notSoRecentFile);
-    if (recentFilesMenu != null) {
-      recentFilesMenu.insert (createMenuItem(notSoRecentFile), 1);
+   @param fileSpec The entry whose title has changed.
+  */
+  protected void fileRetitled (FileSpec fileSpec) {
+    if (mustRefreshLater()) {
+      refreshLater();
+      return;
     }
-    if (filePrefs != null) {
-      filePrefs.addNotSoRecentFile(notSoRecentFile);
+    if (alreadyRefreshed()) {
+      return;
     }
-    for (int i = 1; i < files.size(); i++) {
-      if (get(i).getPath().equals(notSoRecentFile.getPath())) {
-        notSoRecentFile.merge(get(i));
-        removeFile (i);
-        i--;
-      }
-      else
-      if (i >= recentFilesMax) {
-        removeFile (i);
-        i--;
-      } // end if we found a file to remove
-    } // end for each file in list
-    savePrefs();
-    return get(0);
-  } // end method addRecentFile
-  
-  public void removeRecentFile(String oldTitle) {
-    boolean found = false;
-    int i = 0;
-    while (i < files.size() && (! found)) {
-      FileSpec fs = get(i);
-      if (fs != null && fs.getCollectionTitle().equalsIgnoreCase(oldTitle)) {
-        found = true;
-        removeFile(i);
-      }
-      i++;
+    JMenuItem item = menuItems.get(fileSpec);
+    if (item != null) {
+      item.setText(fileSpec.getCollectionTitle());
     }
   }
-  
-  private void removeFile (int i) {
-   
-    files.remove(i);
+
+  /**
+   Bring the file prefs up to date with the whole list, and note that the
+   menu no longer matches it. Should the list be published again while
+   this is done, another refresh follows, so that the changes shown are
+   known for certain.
+  */
+  protected void filesChanged () {
+    if (mustRefreshLater()) {
+      refreshLater();
+      return;
+    }
+    long published = getPublishedChange();
     if (filePrefs != null) {
-      filePrefs.removeRecentFile (i);
+      filePrefs.recentFilesChanged();
     }
-    if (recentFilesMenu != null && i < recentFilesMenu.getItemCount()) {
-      recentFilesMenu.remove(i);
+    menuChanged();
+    refreshedChange = getPublishedChange();
+    if (refreshedChange != published) {
+      refreshLater();
     }
   }
-  
+
   /**
-   Modify the title of a recent file spec. 
-  
-   @param oldTitle The title before the modification. 
-   @param newTitle The title after the modification. 
+   Once a batch of updates has ended, bring the file prefs and the menu up
+   to date in a single task on the Swing event dispatch thread.
   */
-  public void modRecentFile(String oldTitle, String newTitle) {
-
-    boolean found = false;
-    int i = 0;
-    while (i < files.size() && (! found)) {
-      FileSpec fs = get(i);
-      if (fs != null && fs.getCollectionTitle().equalsIgnoreCase(oldTitle)) {
-        found = true;
-        fs.setCollectionTitle(newTitle);
-      }
-      i++;
-    }
-    
-    if (recentFilesMenu != null) {
-      found = false;
-      i = 0;
-      while (i < recentFilesMenu.getMenuComponentCount() && (! found)) {
-        Component mc = recentFilesMenu.getMenuComponent(i);
-        if (mc instanceof JMenuItem) {
-          JMenuItem mi = (JMenuItem)mc;
-          if (mi.getText().equalsIgnoreCase(oldTitle)) {
-            found = true;
-            mi.setText(newTitle);
-          }
-        }
-        i++;
-      } 
-    }
-    
-    savePrefs();
+  protected void updateEnded () {
+    refreshLater();
   }
-  
+
   /**
-   Modify the title of a recent file spec. 
-  
-   @param file The file whose menu item we are looking for. 
-   @param newTitle The title to be applied to this menu item. 
+   Should a change to the list be left for a later refresh of the whole
+   list, rather than applied right away? So it should, if made away from
+   the Swing event dispatch thread, or if changes made on other threads are
+   still waiting to be applied.
   */
-  public void modRecentFile(File file, String newTitle) {
-    boolean found = false;
-    int i = 0;
-    while (i < files.size() && (! found)) {
-      FileSpec fs = get(i);
-      if (fs != null && fs.getFile().equals(file)) {
-        found = true;
-        fs.setCollectionTitle(newTitle);
-      }
-      i++;
-    }
-    
-    if (recentFilesMenu != null) {
-      found = false;
-      i = 0;
-      while (i < recentFilesMenu.getMenuComponentCount() && (! found)) {
-        Component mc = recentFilesMenu.getMenuComponent(i);
-        if (mc instanceof JMenuItem) {
-          JMenuItem mi = (JMenuItem)mc;
-          File menuFile = new File(mi.getActionCommand());
-          if (menuFile != null && menuFile.equals(file)) {
-            found = true;
-            mi.setText(newTitle);
-          }
+  private boolean mustRefreshLater () {
+    return (! SwingUtilities.isEventDispatchThread())
+        || refreshPending.get();
+  }
+
+  /**
+   Has the change being announced already been shown, by a refresh of the
+   whole list made after it? Since changes are announced in the order made,
+   once one has not, none that follow it have either.
+  */
+  private boolean alreadyRefreshed () {
+    return (getAnnouncedChange() <= refreshedChange);
+  }
+
+  /**
+   Bring the file prefs and the menu up to date with the whole list, in a
+   single task on the Swing event dispatch thread, unless such a task is
+   already waiting to run. The task reads the list as last published, so it
+   never waits on another thread changing the list.
+  */
+  private void refreshLater () {
+    if (refreshPending.compareAndSet(false, true)) {
+      SwingUtilities.invokeLater(new Runnable() {
+        public void run() {
+          refreshPending.set(false);
+          filesChanged();
         }
-        i++;
-      } 
+      });
     }
   }
 
   /**
-   Set the maximum number of recent files to be retained.
-
-   @param recentFilesMax The number of recent files to be retained.
-   */
-  public void setRecentFilesMax (int recentFilesMax) {
-    this.recentFilesMax = recentFilesMax;
-    while (files.size() > recentFilesMax) {
-      removeFile (files.size() - 1);
+   Note that the recent files menu no longer matches the list. The menu is
+   filled in again when next opened, or right away if it is open now.
+  */
+  private void menuChanged () {
+    menuGeneration++;
+    if (recentFilesMenu != null && recentFilesMenu.isPopupMenuVisible()) {
+      fillMenuPage(recentFilesMenu, 0);
     }
   }
-  
+
   /**
-   Get the maximum number of recent files to be retained. 
-   
-   @return The number of recent files to be retained.
+   Set the number of recent files to be shown on each page of the menu,
+   with any further files placed in a More sub-menu.
+
+   @param menuPageSize The number of files per page.
   */
-  // public int getRecentFilesMax () {
-  //   return recentFilesMax;
-  // }
+  public void setMenuPageSize (int menuPageSize) {
+    this.menuPageSize = Math.max(1, menuPageSize);
+    menuChanged();
+  }
+
+  public int getMenuPageSize () {
+    return menuPageSize;
+  }
 
   /**
    Register the menu to contain the recent file menu items.
 
    @param recentFilesMenu The menu to contain the recent files.
    @param fileOpener The object to be used to open a recent file when
-                     it is selected. 
+                     it is selected.
    */
   public void registerMenu (JMenu recentFilesMenu, FileSpecOpener fileOpener) {
     this.recentFilesMenu = recentFilesMenu;
@@ -449,38 +385,69 @@ public class RecentFiles {
   }
 
   /**
-   Build the menu based on the entries in the files list.
+   Arrange for the menu to be filled in from the files list when opened.
    */
   private void buildMenu () {
-    for (int i = 0; i < files.size(); i++) {
-      recentFilesMenu.add(createMenuItem(get(i)));
-    }
-    JSeparator sep = new JSeparator();
-    recentFilesMenu.add(sep);
+    recentFilesMenu.addMenuListener(new MenuPage(recentFilesMenu, 0));
+    menuChanged();
+  }
+
+  /**
+   Fill in one page of the menu from the files list, starting at the given
+   position, followed by a More sub-menu if there are further files. The
+   first page also ends with the Clear History item.
 
-    JMenuItem clear = new JMenuItem("Clear History");
-    clear.addActionListener(new java.awt.event.ActionListener() {
-      public void actionPerformed(java.awt.event.ActionEvent evt) {
-        clearHistory(evt);
+   @param menu  The menu to be filled in.
+   @param start The position in the list of the first file to be shown.
+  */
+  private void fillMenuPage (JMenu menu, int start) {
+    Component[] old = menu.getMenuComponents();
+    for (int i = 0; i < old.length; i++) {
+      if (old[i] instanceof JMenuItem) {
+        Object fileSpec
+            = ((JMenuItem)old[i]).getClientProperty(MENU_ITEM_FILE_SPEC);
+        if (fileSpec != null && menuItems.get(fileSpec) == old[i]) {
+          menuItems.remove(fileSpec);
+        }
       }
-    });
-    recentFilesMenu.add(clear);
+    }
+    menu.removeAll();
+
+    // Other threads may change the list meanwhile, so work from the list
+    // as last published
+    FileSpec[] specs = getRange(start, start + menuPageSize + 1);
+    int shown = Math.min(specs.length, menuPageSize);
+    for (int i = 0; i < shown; i++) {
+      menu.add(createMenuItem(specs[i]));
+    }
+    if (specs.length > shown) {
+      JMenu more = new JMenu("More\u2026");
+      more.addMenuListener(new MenuPage(more, start + shown));
+      menu.add(more);
+    }
+
+    if (start == 0) {
+      JSeparator sep = new JSeparator();
+      menu.add(sep);
+
+      JMenuItem clear = new JMenuItem("Clear History");
+      clear.addActionListener(new java.awt.event.ActionListener() {
+        public void actionPerformed(java.awt.event.ActionEvent evt) {
+          clearHistory(evt);
+        }
+      });
+      menu.add(clear);
+    }
   }
 
   /**
    Clear the recent files history, when requested by the user.
-   
+
    @param evt
    */
   private void clearHistory (java.awt.event.ActionEvent evt) {
-    while (files.size() > 1) {
-      removeFile(files.size() - 1);
-    }
-    FileSpec nullFileSpec = new FileSpec();
-    for (int i = 1; i < recentFilesMax; i++) {
-      nullFileSpec.saveToRecentPrefs("", i);
-    }
-    if (filePrefs != null) {
+    clearHistory();
+    if (filePrefs != null && ! isUpdating()) {
       filePrefs.clearHistory();
     }
   }
@@ -489,7 +456,7 @@ public class RecentFiles {
    Create one menu item for the recent files menu.
 
    @param fileSpec The FileSpec identifying the file or url.
-   @return The new menu item created. 
+   @return The new menu item created.
    */
   private JMenuItem createMenuItem (FileSpec fileSpec) {
 
@@ -497,11 +464,9 @@ public class RecentFiles {
     JMenuItem menuItem = new JMenuItem(fileSpec.getCollectionTitle());
     menuItem.setActionCommand (fileSpec.getPath());
     menuItem.setToolTipText (fileSpec.getDisplayName());
-    menuItem.addActionListener(new java.awt.event.ActionListener() {
-      public void actionPerformed(java.awt.event.ActionEvent evt) {
-        fileRecentMenuItemActionPerformed(evt);
-      }
-    });
+    menuItem.addActionListener(menuItemListener);
+    menuItem.putClientProperty(MENU_ITEM_FILE_SPEC, fileSpec);
+    menuItems.put(fileSpec, menuItem);
     return menuItem;
   } // end method
 
@@ -512,81 +477,54 @@ public class RecentFiles {
    */
   private void fileRecentMenuItemActionPerformed(java.awt.event.ActionEvent evt) {
     String name = evt.getActionCommand();
-    int i = 0;
-    boolean found = false;
-    FileSpec fileSpec = null;
-    while (i < files.size() && (! found)) {
-      fileSpec = get(i);
-      if (name.equals(fileSpec.getPath())) {
-        found = true;
-      } else {
-        i++;
-      }
-    }
-    if (found) {
+    FileSpec fileSpec = get(name);
+    if (fileSpec != null) {
       File file = new File(fileSpec.getPath());
       if (file.exists()) {
         fileOpener.handleOpenFile(fileSpec);
       }
     }
   } // end method
-  
-  public FileSpec get(File file) {
-
-    boolean found = false;
-    int i = 0;
-    FileSpec spec = null;
-    while (i < files.size() && (! found)) {
-      spec = files.get(i);
-      if (file.equals(spec.getFile())) {
-        found = true;
-      } else {
-        i++;
-      }
+
+  /**
+   Fills in one page of the recent files menu when it is opened, if the
+   list has changed since it was last filled in.
+   */
+  private class MenuPage
+      implements javax.swing.event.MenuListener {
+
+    private final   JMenu     menu;
+    private final   int       start;
+    private         int       filledGeneration = -1;
+
+    MenuPage (JMenu menu, int start) {
+      this.menu = menu;
+      this.start = start;
     }
-    if (found) {
-      return spec;
-    } else {
-      return null;
+
+    public void menuSelected (javax.swing.event.MenuEvent evt) {
+      if (filledGeneration != menuGeneration) {
+        fillMenuPage(menu, start);
+        filledGeneration = menuGeneration;
+      }
     }
-  }
 
-  /**
-   Get a particular FileSpec entry, given its position in the list.
+    public void menuDeselected (javax.swing.event.MenuEvent evt) {
 
-   @param i The index position of the desired entry in the list.
+    }
+
+    public void menuCanceled (javax.swing.event.MenuEvent evt) {
 
-   @return The specified FileSpec entry, if one exists at the index given,
-           otherwise null.
-   */
-  public FileSpec get (int i) {
-    if (i < 0 || i >= files.size()) {
-      return null;
-    } else {
-      return files.get(i);
     }
   }
-  
-  /**
-   Return the number of recent files in the list. 
-  
-   @return The number of recent files in the list.  
-  */
-  public int size() {
-    return files.size();
-  }
-  
+
   public void displayRecentFiles() {
-    System.out.println ("RecentFiles.displayRecentFiles");
-    System.out.println("  files");
-    for (int i = 0; i < files.size(); i++) {
-      System.out.println("    " + String.valueOf(i) + ": " + get(i).getPath());
-    }
-    
+    super.displayRecentFiles();
+
     if (recentFilesMenu != null) {
       System.out.println ("  Recent Files menu");
       for (int i = 0; i < recentFilesMenu.getMenuComponentCount(); i++) {
-        System.out.println("  " + String.valueOf(i) + ": " + 
+        System.out.println("  " + String.valueOf(i) + ": " +
             recentFilesMenu.getMenuComponent(i).toString());
       }
     }
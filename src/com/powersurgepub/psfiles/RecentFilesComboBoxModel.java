@@ -0,0 +1,328 @@
+/*
+ * Copyright 1999 - 2017 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.powersurgepub.psfiles;
+
+  import java.awt.*;
+  import javax.swing.*;
+
+/**
+ A combo box model presenting a list of recent files, preceded by a few
+ fixed rows, such as "Nothing". <p>
+
+ The model holds no copy of the recent files. Each row beyond the fixed rows
+ is the file spec found at the corresponding position in the RecentFiles
+ list, as last published, so that any number of combo boxes may view the
+ same list without keeping their own copies of it, or waiting on a thread
+ changing it. Since the list changes before its viewers
+ are told, the model keeps its own count of the recent files, adjusted as it
+ is told of each change, so that its size always agrees with the events it
+ has fired. <p>
+
+ The selection is kept as a row number, and moved along with its row as
+ rows are added and removed above it. Where a recent file is selected, its
+ path is kept as well, so that, after a refresh of the whole list, or the
+ removal of the selected row, the row showing the same file may be found
+ again, wherever it now is. A combo box using this model should
+ use the renderer returned by getRenderer, so that each file is shown by its
+ brief display name.
+ */
+class RecentFilesComboBoxModel
+    extends AbstractListModel<Object>
+    implements ComboBoxModel<Object> {
+
+  private static final long serialVersionUID = 1L;
+
+  private final   String[]            literals;
+
+  private         RecentFiles         recentFiles = null;
+
+  /** The number of recent files, as last reported to listeners. */
+  private         int                 recentCount = 0;
+
+  private         int                 selectedIndex = -1;
+
+  /** The path of the recent file selected, or null for a fixed row. */
+  private         String              selectedPath = null;
+
+  /**
+   Construct a model with the given fixed rows, and no recent files.
+
+   @param literals The rows to precede the recent files.
+  */
+  RecentFilesComboBoxModel(String[] literals) {
+    this.literals = literals;
+    if (literals.length > 0) {
+      selectedIndex = 0;
+    }
+  }
+
+  /**
+   View the given list of recent files, and let listeners know that all the
+   rows following the fixed rows may have changed.
+
+   @param recentFiles The list to be viewed, or null for none.
+  */
+  void setRecentFiles(RecentFiles recentFiles) {
+    this.recentFiles = recentFiles;
+    recentFilesChanged();
+  }
+
+  public int getSize() {
+    return literals.length + recentCount;
+  }
+
+  /**
+   Return the row at the given position: one of the fixed rows, or else a
+   file spec from the list of recent files.
+
+   @param index The position of the row.
+
+   @return The fixed row, as a string, or the file spec, or null if there
+           is no such row.
+  */
+  public Object getElementAt(int index) {
+    if (index < 0) {
+      return null;
+    }
+    else
+    if (index < literals.length) {
+      return literals[index];
+    }
+    else
+    if (recentFiles != null && index < getSize()) {
+      return recentFiles.get(index - literals.length);
+    } else {
+      return null;
+    }
+  }
+
+  public Object getSelectedItem() {
+    return getElementAt(selectedIndex);
+  }
+
+  /**
+   Select the given row. Fixed rows are found by value, and file specs by
+   identity, through the list's index of paths.
+
+   @param item The row to be selected.
+  */
+  public void setSelectedItem(Object item) {
+    int index = -1;
+    if (item instanceof FileSpec) {
+      int i = findPath(((FileSpec)item).getKnownPath());
+      if (getElementAt(i) == item) {
+        index = i;
+      }
+    }
+    else
+    if (item != null) {
+      int i = 0;
+      while (i < literals.length && index < 0) {
+        if (literals[i].equals(item)) {
+          index = i;
+        }
+        i++;
+      }
+    }
+    setSelectedIndex(index);
+  }
+
+  /**
+   Select the row showing the recent file with the given path, if there is
+   one, found through the list's index of paths, rather than by reading each
+   row in turn.
+
+   @param path The path of the file to be selected.
+
+   @return True if the file was found and selected.
+  */
+  boolean selectPath(String path) {
+    int index = findPath(path);
+    if (index >= 0) {
+      setSelectedIndex(index);
+    }
+    return (index >= 0);
+  }
+
+  /**
+   Return the row showing the recent file with the given path.
+
+   @param path The path of interest.
+
+   @return The position of the row, or -1 if the path is not shown.
+  */
+  private int findPath(String path) {
+    int i = (recentFiles == null ? -1 : recentFiles.indexOf(path));
+    if (i < 0 || i >= recentCount) {
+      return -1;
+    } else {
+      return literals.length + i;
+    }
+  }
+
+  int getSelectedIndex() {
+    return selectedIndex;
+  }
+
+  /**
+   Select the row at the given position, letting listeners know if the
+   selection has changed.
+
+   @param index The position of the row to be selected, or -1 for none.
+  */
+  void setSelectedIndex(int index) {
+    selectedPath = getPathAt(index);
+    if (index != selectedIndex) {
+      selectedIndex = index;
+      fireContentsChanged(this, -1, -1);
+    }
+  }
+
+  /**
+   Return the path of the recent file shown in the given row, as far as it
+   is known without going to the file system.
+
+   @param index The position of the row.
+
+   @return The path, or null if the row is not that of a recent file.
+  */
+  private String getPathAt(int index) {
+    Object element = getElementAt(index);
+    if (element instanceof FileSpec) {
+      return ((FileSpec)element).getKnownPath();
+    } else {
+      return null;
+    }
+  }
+
+  /**
+   Note that a recent file has been added to the list.
+
+   @param i The position in the list of recent files at which it was added.
+  */
+  void recentFileAdded(int i) {
+    int index = literals.length + i;
+    recentCount++;
+    if (selectedIndex >= index) {
+      selectedIndex++;
+    }
+    fireIntervalAdded(this, index, index);
+  }
+
+  /**
+   Note that a recent file has been removed from the list. If it was
+   selected, then the row showing the same file elsewhere in the list, as
+   when the file has just been moved to the top, is selected instead, or
+   else the row above it, or the row below it, if it was the first row.
+
+   @param i The position in the list of recent files from which it was
+            removed.
+  */
+  void recentFileRemoved(int i) {
+    if (i < 0 || i >= recentCount) {
+      return;
+    }
+    int index = literals.length + i;
+    recentCount--;
+    if (selectedIndex > index) {
+      selectedIndex--;
+    }
+    else
+    if (selectedIndex == index) {
+      int moved = (selectedPath == null ? -1 : findPath(selectedPath));
+      if (moved >= 0) {
+        setSelectedIndex(moved);
+      }
+      else
+      if (index > 0) {
+        setSelectedIndex(index - 1);
+      }
+      else
+      if (getSize() == 0) {
+        setSelectedIndex(-1);
+      } else {
+        fireContentsChanged(this, -1, -1);
+      }
+    }
+    fireIntervalRemoved(this, index, index);
+  }
+
+  /**
+   Bring the count of recent files up to date with the list, and let
+   listeners know that all the rows following the fixed rows may have
+   changed. A recent file that was selected stays selected, in whatever
+   row it now occupies, as long as it is still in the list.
+  */
+  void recentFilesChanged() {
+    int newCount = (recentFiles == null ? 0 : recentFiles.size());
+    int oldCount = recentCount;
+    recentCount = newCount;
+    int found = (selectedPath == null ? -1 : findPath(selectedPath));
+    if (found >= 0) {
+      selectedIndex = found;
+    } else {
+      if (selectedIndex >= getSize()) {
+        selectedIndex = getSize() - 1;
+      }
+      selectedPath = getPathAt(selectedIndex);
+    }
+    if (newCount < oldCount) {
+      fireIntervalRemoved(this,
+          literals.length + newCount, literals.length + oldCount - 1);
+    }
+    else
+    if (newCount > oldCount) {
+      fireIntervalAdded(this,
+          literals.length + oldCount, literals.length + newCount - 1);
+    }
+    int keptCount = Math.min(oldCount, newCount);
+    if (keptCount > 0) {
+      fireContentsChanged(this,
+          literals.length, literals.length + keptCount - 1);
+    }
+    fireContentsChanged(this, -1, -1);
+  }
+
+  /**
+   Return a renderer showing each file spec by its brief display name.
+
+   @return A renderer for a combo box using this model.
+  */
+  static ListCellRenderer<Object> getRenderer() {
+    return new RecentFileRenderer();
+  }
+
+  /**
+   Shows each file spec by its brief display name, and anything else as it
+   would be shown by default.
+   */
+  private static class RecentFileRenderer
+      extends DefaultListCellRenderer {
+
+    private static final long serialVersionUID = 1L;
+
+    public Component getListCellRendererComponent(JList<?> list,
+        Object value, int index, boolean isSelected, boolean cellHasFocus) {
+      if (value instanceof FileSpec) {
+        value = ((FileSpec)value).getBriefDisplayName();
+      }
+      return super.getListCellRendererComponent
+          (list, value, index, isSelected, cellHasFocus);
+    }
+  }
+
+}
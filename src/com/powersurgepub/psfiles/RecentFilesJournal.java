@@ -0,0 +1,766 @@
+/*
+ * Copyright 1999 - 2017 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.powersurgepub.psfiles;
+
+  import com.powersurgepub.psutils.*;
+  import java.io.*;
+  import java.nio.*;
+  import java.nio.channels.*;
+  import java.nio.charset.*;
+  import java.nio.file.*;
+  import java.util.*;
+  import java.util.concurrent.*;
+  import java.util.zip.*;
+
+/**
+ An optional place for RecentFiles to keep its history, in place of the
+ recent-file-n user preferences. <p>
+
+ Each change to the list is appended as one small record to a journal file,
+ so that a change costs a single short write no matter how long the list
+ is. Once the journal grows past a threshold, the current list is written
+ to a separate snapshot file on a background thread, and the journal is
+ cut back to just the records written since. Loading reads the snapshot,
+ and then replays the journal on top of it. <p>
+
+ Every record carries a sequence number and a checksum. If the application
+ stops part way through writing a record, the damaged record, and anything
+ after it, is ignored when next loaded, and then trimmed from the file.
+ The snapshot is written to a temporary file and then moved into place, so
+ it is never seen half written. <p>
+
+ The snapshot has a fixed layout: a header, then a table giving the offset
+ of each entry, then the entries themselves, each in the compact encoding
+ of FileSpecCodec. When loaded, the snapshot is read into memory in a single
+ read, and each entry is only decoded when first requested, so that the time
+ taken to load grows only with the size of the file, and not with the work
+ of decoding each entry. The snapshot is read, rather than mapped, since a
+ mapped file stays mapped until the buffer is garbage collected, and until
+ then cannot be replaced on some systems. Snapshots written as text,
+ by earlier versions, are still read. <p>
+
+ Usage: <p>
+
+ <pre>
+ {@code
+     recentFiles.setJournal(new RecentFilesJournal(
+         new File(appFolder, "recent-files")));
+     recentFiles.loadFromPrefs();
+ }
+ </pre>
+
+ The snapshot is kept in the named file, and the journal in the same file
+ with ".journal" appended.
+ */
+public class RecentFilesJournal {
+
+  public static final long    DEFAULT_COMPACTION_THRESHOLD  = 64 * 1024;
+
+  private static final int    SNAPSHOT_MAGIC        = 0x50535246;
+  private static final int    SNAPSHOT_VERSION      = 2;
+  private static final int    SNAPSHOT_HEADER_LENGTH = 20;
+  private static final String TEXT_SNAPSHOT_HEADER  = "psfiles-recent-files";
+  private static final int    TEXT_SNAPSHOT_VERSION = 1;
+  private static final String JOURNAL_SUFFIX        = ".journal";
+  private static final String TEMP_SUFFIX           = ".tmp";
+
+  private static final char   ADD_FIRST             = 'T';
+  private static final char   ADD_LAST              = 'L';
+  private static final char   INSERT                = 'I';
+  private static final char   UPDATE                = 'U';
+  private static final char   REMOVE                = 'D';
+  private static final char   TRUNCATE              = 'K';
+  private static final char   FIELD_SEPARATOR       = '\t';
+  private static final char   RECORD_SEPARATOR      = '\n';
+
+  private final   File                  snapshotFile;
+  private final   File                  journalFile;
+
+  private         long                  compactionThreshold
+      = DEFAULT_COMPACTION_THRESHOLD;
+
+  private         OutputStream          journal = null;
+  private         long                  journalLength = 0;
+
+  /** True if records have been written since the journal was last forced. */
+  private         boolean               unforced = false;
+
+  /** Held while waiting for the journal to reach the storage device. */
+  private final   Object                forceLock = new Object();
+
+  /** The sequence number to be given to the next record. */
+  private         long                  nextSeq = 1;
+
+  /** The encoding last recorded for each path, to avoid needless updates. */
+  private final   HashMap<String, String> recorded
+      = new HashMap<String, String>();
+
+  /** Records written while a compaction is under way, or null if none. */
+  private         ArrayList<byte[]>     sinceCompaction = null;
+
+  /** The journal length that must be passed before compacting again. */
+  private         long                  retryLength = 0;
+
+  private         ExecutorService       executor = null;
+
+  /**
+   Create a journal using the given file, and a second file with the same
+   name plus ".journal". Neither file need exist yet.
+
+   @param snapshotFile The file to hold the snapshot.
+   */
+  public RecentFilesJournal(File snapshotFile) {
+    this.snapshotFile = snapshotFile;
+    this.journalFile = new File(snapshotFile.getPath() + JOURNAL_SUFFIX);
+  }
+
+  /**
+   Set the length the journal may reach before it is compacted.
+
+   @param compactionThreshold The length in bytes.
+   */
+  public synchronized void setCompactionThreshold(long compactionThreshold) {
+    this.compactionThreshold = compactionThreshold;
+  }
+
+  public synchronized long getCompactionThreshold() {
+    return compactionThreshold;
+  }
+
+  /**
+   Does the journal have a history to be loaded?
+
+   @return True if either the snapshot or the journal file exists.
+   */
+  public boolean exists() {
+    return (snapshotFile.exists() || journalFile.exists());
+  }
+
+  /**
+   Load the history, by reading the snapshot and then replaying the journal.
+   Any damaged records at the end of the journal are dropped from the file.
+   Entries from the snapshot are left to be decoded as they are needed, and
+   further changes to the list returned are recorded in this journal.
+
+   @return The recent files, with the most recent first.
+
+   @throws IOException If the files exist but cannot be read.
+   */
+  synchronized RecentFileList load() throws IOException {
+    RecentFileList list = new RecentFileList();
+    recorded.clear();
+    long snapshotSeq = 0;
+    if (snapshotFile.exists()) {
+      snapshotSeq = readSnapshot(list);
+    }
+    nextSeq = snapshotSeq + 1;
+    journalLength = 0;
+    if (journalFile.exists()) {
+      byte[] bytes = Files.readAllBytes(journalFile.toPath());
+      int start = 0;
+      int end = indexOf(bytes, RECORD_SEPARATOR, start);
+      while (end >= 0 && replay(bytes, start, end, snapshotSeq, list)) {
+        start = end + 1;
+        end = indexOf(bytes, RECORD_SEPARATOR, start);
+      }
+      journalLength = start;
+      if (start < bytes.length) {
+        // Drop the damaged tail before anything more is appended
+        RandomAccessFile raf = new RandomAccessFile(journalFile, "rw");
+        try {
+          raf.setLength(start);
+        } finally {
+          raf.close();
+        }
+      }
+    }
+    FileSpec[] specs = list.toDecodedArray();
+    for (int i = 0; i < specs.length; i++) {
+      recorded.put(specs[i].getKnownPath(), specs[i].getCompactFileInfo());
+    }
+    list.setJournal(this);
+    return list;
+  }
+
+  /**
+   Read the snapshot into the given list.
+
+   @param list The list to receive the entries.
+
+   @return The sequence number of the last record reflected in the snapshot.
+   */
+  private long readSnapshot(RecentFileList list) throws IOException {
+    ByteBuffer buffer;
+    FileInputStream in = new FileInputStream(snapshotFile);
+    try {
+      FileChannel channel = in.getChannel();
+      long size = channel.size();
+      if (size > Integer.MAX_VALUE) {
+        throw new IOException("Recent files snapshot is too large: "
+            + snapshotFile);
+      }
+      buffer = ByteBuffer.allocate((int)size);
+      int read = 0;
+      while (buffer.hasRemaining() && read >= 0) {
+        read = channel.read(buffer);
+      }
+      buffer.flip();
+    } finally {
+      in.close();
+    }
+    if (buffer.limit() >= 4 && buffer.getInt(0) == SNAPSHOT_MAGIC) {
+      return readBinarySnapshot(buffer, list);
+    } else {
+      return readTextSnapshot(list);
+    }
+  }
+
+  /**
+   Add the entries in a snapshot read into memory to the given list, in 
+   encoded form. Only the header and the offset table are examined.
+
+   @param buffer The snapshot, as read.
+   @param list   The list to receive the entries.
+
+   @return The sequence number of the last record reflected in the snapshot.
+   */
+  private long readBinarySnapshot(ByteBuffer buffer, RecentFileList list)
+      throws IOException {
+    if (buffer.limit() < SNAPSHOT_HEADER_LENGTH
+        || buffer.getInt(4) > SNAPSHOT_VERSION) {
+      throw new IOException("Not a recent files snapshot: " + snapshotFile);
+    }
+    long seq = buffer.getLong(8);
+    int count = buffer.getInt(16);
+    long tableEnd = SNAPSHOT_HEADER_LENGTH + 4L * (count + 1L);
+    if (count < 0 || tableEnd > buffer.limit()) {
+      throw new IOException("Recent files snapshot is damaged: "
+          + snapshotFile);
+    }
+    int start = buffer.getInt(SNAPSHOT_HEADER_LENGTH);
+    for (int i = 0; i < count; i++) {
+      int end = buffer.getInt(SNAPSHOT_HEADER_LENGTH + 4 * (i + 1));
+      if (start < tableEnd || end < start || end > buffer.limit()) {
+        throw new IOException("Recent files snapshot is damaged: "
+            + snapshotFile);
+      }
+      list.addLastEncoded(buffer, start, end - start);
+      start = end;
+    }
+    return seq;
+  }
+
+  /**
+   Read a snapshot written as text by an earlier version into the given list.
+
+   @param list The list to receive the entries.
+
+   @return The sequence number of the last record reflected in the snapshot.
+   */
+  private long readTextSnapshot(RecentFileList list) throws IOException {
+    BufferedReader reader = new BufferedReader(new InputStreamReader(
+        new FileInputStream(snapshotFile), StandardCharsets.UTF_8));
+    try {
+      String header = reader.readLine();
+      String[] fields = (header == null ? new String[0] : header.split("\t"));
+      if (fields.length < 4
+          || (! fields[0].equals(TEXT_SNAPSHOT_HEADER))
+          || Integer.parseInt(fields[1]) > TEXT_SNAPSHOT_VERSION) {
+        throw new IOException("Not a recent files snapshot: " + snapshotFile);
+      }
+      long seq = Long.parseLong(fields[2]);
+      int count = Integer.parseInt(fields[3]);
+      for (int i = 0; i < count; i++) {
+        String line = reader.readLine();
+        if (line == null) {
+          throw new IOException("Recent files snapshot is incomplete: "
+              + snapshotFile);
+        }
+        FileSpec spec = new FileSpec();
+        spec.setFileInfo(line);
+        if (spec.hasPath() && list.get(spec.getPath()) == null) {
+          list.addLast(spec);
+        }
+      }
+      return seq;
+    } catch (NumberFormatException e) {
+      throw new IOException("Recent files snapshot is damaged: "
+          + snapshotFile);
+    } finally {
+      reader.close();
+    }
+  }
+
+  /**
+   Apply one journal record to the list.
+
+   @return True if the record was sound, false if it was damaged, in which
+           case it and all following records are to be ignored.
+   */
+  private boolean replay(byte[] bytes, int start, int end,
+      long snapshotSeq, RecentFileList list) {
+    int checksumStart = lastIndexOf(bytes, FIELD_SEPARATOR, start, end);
+    if (checksumStart < 0) {
+      return false;
+    }
+    CRC32 crc = new CRC32();
+    crc.update(bytes, start, checksumStart - start);
+    String record = new String(bytes, start, checksumStart - start,
+        StandardCharsets.UTF_8);
+    String checksum = new String(bytes, checksumStart + 1,
+        end - checksumStart - 1, StandardCharsets.UTF_8);
+    String[] fields = record.split("\t", -1);
+    long seq;
+    try {
+      if (Long.parseLong(checksum, 16) != crc.getValue()) {
+        return false;
+      }
+      seq = Long.parseLong(fields[0]);
+    } catch (NumberFormatException e) {
+      return false;
+    }
+    if (fields.length != 3 || fields[1].length() != 1) {
+      return false;
+    }
+    nextSeq = Math.max(nextSeq, seq + 1);
+    if (seq <= snapshotSeq) {
+      return true;
+    }
+    try {
+      apply(fields[1].charAt(0), fields[2], list);
+    } catch (IllegalArgumentException e) {
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   Apply one change to the list.
+
+   @param type    The type of change.
+   @param payload The data for the change.
+   @param list    The list to be changed.
+
+   @throws IllegalArgumentException If the record is not understood.
+   */
+  private void apply(char type, String payload, RecentFileList list) {
+    switch (type) {
+      case ADD_FIRST:
+      case ADD_LAST:
+      case UPDATE:
+        FileSpec spec = new FileSpec();
+        spec.setFileInfo(payload);
+        FileSpec existing = list.get(spec.getPath());
+        if (type == UPDATE) {
+          if (existing != null) {
+            list.replace(existing, spec);
+          }
+        }
+        else
+        if (type == ADD_FIRST) {
+          if (existing != null) {
+            list.remove(existing);
+          }
+          list.addFirst(spec);
+        }
+        else
+        if (existing == null) {
+          list.addLast(spec);
+        }
+        break;
+      case INSERT:
+        int comma = payload.indexOf(',');
+        if (comma < 0) {
+          throw new IllegalArgumentException("Damaged insert record");
+        }
+        FileSpec inserted = new FileSpec();
+        inserted.setFileInfo(payload.substring(comma + 1));
+        FileSpec replaced = list.get(inserted.getPath());
+        if (replaced != null) {
+          list.remove(replaced);
+        }
+        list.add(Math.min(Integer.parseInt(payload.substring(0, comma)),
+            list.size()), inserted);
+        break;
+      case REMOVE:
+        String path = new String(Base64.getDecoder().decode(payload),
+            StandardCharsets.UTF_8);
+        FileSpec removed = list.get(path);
+        if (removed != null) {
+          list.remove(removed);
+        }
+        break;
+      case TRUNCATE:
+        list.truncate(Integer.parseInt(payload));
+        break;
+      default:
+        throw new IllegalArgumentException("Unknown record type " + type);
+    }
+  }
+
+  /**
+   Record the addition of an entry at the top or the bottom of the list.
+
+   @param spec  The entry added.
+   @param first True if added at the top, false if at the bottom.
+   */
+  synchronized void recordAdd(FileSpec spec, boolean first) {
+    String encoding = spec.getCompactFileInfo();
+    recorded.put(spec.getKnownPath(), encoding);
+    append(first ? ADD_FIRST : ADD_LAST, encoding);
+  }
+
+  /**
+   Note the encoding of an entry decoded from the snapshot, so that it is
+   not recorded again unless it changes.
+
+   @param spec  The entry decoded.
+   @param bytes The encoded bytes from which it was decoded.
+   */
+  synchronized void recordLoaded(FileSpec spec, byte[] bytes) {
+    if (! recorded.containsKey(spec.getKnownPath())) {
+      recorded.put(spec.getKnownPath(), FileSpecCodec.toText(bytes));
+    }
+  }
+
+  /**
+   Record the addition of an entry part way down the list.
+
+   @param spec  The entry added.
+   @param index The position at which it was added.
+   */
+  synchronized void recordInsert(FileSpec spec, int index) {
+    String encoding = spec.getCompactFileInfo();
+    recorded.put(spec.getKnownPath(), encoding);
+    append(INSERT, String.valueOf(index) + ',' + encoding);
+  }
+
+  /**
+   Record the current state of an entry, if it differs from what was last
+   recorded for it.
+
+   @param spec     The entry.
+   @param encoding The compact encoding of the entry.
+
+   @return The number of bytes written, or zero if nothing had changed.
+   */
+  synchronized int recordUpdate(FileSpec spec, String encoding) {
+    if (encoding.equals(recorded.get(spec.getKnownPath()))) {
+      return 0;
+    } else {
+      recorded.put(spec.getKnownPath(), encoding);
+      return append(UPDATE, encoding);
+    }
+  }
+
+  /**
+   Record the removal of an entry.
+
+   @param path The path under which the entry was recorded.
+   */
+  synchronized void recordRemove(String path) {
+    recorded.remove(path);
+    append(REMOVE, Base64.getEncoder().encodeToString(
+        path.getBytes(StandardCharsets.UTF_8)));
+  }
+
+  /**
+   Record the removal of entries from the bottom of the list.
+
+   @param size The number of entries remaining.
+   */
+  synchronized void recordTruncate(int size) {
+    append(TRUNCATE, String.valueOf(size));
+  }
+
+  /**
+   Append one record to the journal.
+
+   @param type    The type of change.
+   @param payload The data for the change.
+
+   @return The number of bytes written.
+   */
+  private int append(char type, String payload) {
+    String record = String.valueOf(nextSeq) + FIELD_SEPARATOR + type
+        + FIELD_SEPARATOR + payload;
+    nextSeq++;
+    byte[] recordBytes = record.getBytes(StandardCharsets.UTF_8);
+    CRC32 crc = new CRC32();
+    crc.update(recordBytes);
+    byte[] bytes = (record + FIELD_SEPARATOR
+        + Long.toHexString(crc.getValue()) + RECORD_SEPARATOR)
+        .getBytes(StandardCharsets.UTF_8);
+    try {
+      if (journal == null) {
+        journal = new FileOutputStream(journalFile, true);
+      }
+      journal.write(bytes);
+      journalLength += bytes.length;
+      unforced = true;
+    } catch (IOException e) {
+      Trouble.getShared().report
+          ("Trouble writing recent files journal " + journalFile.toString(),
+          "Recent Files Error");
+    }
+    if (sinceCompaction != null) {
+      sinceCompaction.add(bytes);
+    }
+    return bytes.length;
+  }
+
+  /**
+   Force all records written so far out to the storage device, and start a
+   compaction if the journal has grown past the threshold.
+
+   @param list The entries currently in the list, from which a snapshot may
+               be written.
+   */
+  void sync(RecentFileList list) {
+    force();
+    compactIfDue(list);
+  }
+
+  /**
+   Force all records written so far out to the storage device. The wait for
+   the device is made without holding the lock on the journal, so that
+   further records may be written meanwhile. A thread arriving while another
+   is waiting waits its turn, and then only forces any records written since.
+   */
+  void force() {
+    synchronized (forceLock) {
+      FileChannel channel = null;
+      synchronized (this) {
+        if (journal == null || ! unforced) {
+          return;
+        }
+        try {
+          journal.flush();
+        } catch (IOException e) {
+          Trouble.getShared().report
+              ("Trouble saving recent files journal " + journalFile.toString(),
+              "Recent Files Error");
+        }
+        unforced = false;
+        if (journal instanceof FileOutputStream) {
+          channel = ((FileOutputStream)journal).getChannel();
+        }
+      }
+      if (channel != null) {
+        try {
+          channel.force(false);
+        } catch (ClosedChannelException e) {
+          // Closed meanwhile, as when replaced by a compaction, which will
+          // have forced the records it kept
+        } catch (IOException e) {
+          Trouble.getShared().report
+              ("Trouble saving recent files journal " + journalFile.toString(),
+              "Recent Files Error");
+        }
+      }
+    }
+  }
+
+  /**
+   Start a compaction if the journal has grown past the threshold, and no
+   compaction is already under way. This should be called while holding
+   whatever lock guards the list.
+
+   @param list The entries currently in the list, from which a snapshot may
+               be written.
+   */
+  synchronized void compactIfDue(RecentFileList list) {
+    if (journalLength > compactionThreshold 
+        && journalLength > retryLength
+        && sinceCompaction == null) {
+      compact(list);
+    }
+  }
+
+  /**
+   Write a snapshot of the given entries on a background thread, and then
+   cut the journal back to the records written in the meantime. Entries 
+   still encoded in the snapshot last read are first copied out of it, so 
+   that the buffer holding the whole of that snapshot may be freed. If the 
+   snapshot cannot be written, the journal is kept as it is, and no 
+   further compaction is tried until it has grown by another threshold. 
+
+   @param list The entries currently in the list.
+   */
+  private void compact(RecentFileList list) {
+    final long snapshotSeq = nextSeq - 1;
+    final byte[][] encodings = list.toEncodedArray();
+    sinceCompaction = new ArrayList<byte[]>();
+    getExecutor().execute(new Runnable() {
+      public void run() {
+        try {
+          writeSnapshot(snapshotSeq, encodings);
+          restartJournal();
+        } catch (IOException e) {
+          synchronized (RecentFilesJournal.this) {
+            sinceCompaction = null;
+            retryLength = journalLength + compactionThreshold;
+          }
+          Trouble.getShared().report
+              ("Trouble compacting recent files journal " 
+              + journalFile.toString(), "Recent Files Error");
+        }
+      }
+    });
+  }
+
+  /**
+   Write a snapshot: the header, then the offset of each entry, plus the
+   offset of the end of the last, then the encoded entries.
+
+   @param snapshotSeq The sequence number of the last record reflected.
+   @param encodings   The encoded entries, most recent first.
+   */
+  private void writeSnapshot(long snapshotSeq, byte[][] encodings)
+      throws IOException {
+    File temp = new File(snapshotFile.getPath() + TEMP_SUFFIX);
+    FileOutputStream out = new FileOutputStream(temp);
+    try {
+      DataOutputStream data = new DataOutputStream(
+          new BufferedOutputStream(out));
+      data.writeInt(SNAPSHOT_MAGIC);
+      data.writeInt(SNAPSHOT_VERSION);
+      data.writeLong(snapshotSeq);
+      data.writeInt(encodings.length);
+      int offset = SNAPSHOT_HEADER_LENGTH + 4 * (encodings.length + 1);
+      for (int i = 0; i < encodings.length; i++) {
+        data.writeInt(offset);
+        offset += encodings[i].length;
+      }
+      data.writeInt(offset);
+      for (int i = 0; i < encodings.length; i++) {
+        data.write(encodings[i]);
+      }
+      data.flush();
+      out.getFD().sync();
+    } finally {
+      out.close();
+    }
+    moveIntoPlace(temp, snapshotFile);
+  }
+
+  /**
+   Replace the journal with one holding only the records written since the
+   last snapshot was taken.
+   */
+  private synchronized void restartJournal() throws IOException {
+    File temp = new File(journalFile.getPath() + TEMP_SUFFIX);
+    FileOutputStream out = new FileOutputStream(temp);
+    long length = 0;
+    try {
+      for (int i = 0; i < sinceCompaction.size(); i++) {
+        out.write(sinceCompaction.get(i));
+        length += sinceCompaction.get(i).length;
+      }
+      out.getFD().sync();
+    } finally {
+      out.close();
+    }
+    if (journal != null) {
+      journal.close();
+      journal = null;
+    }
+    unforced = false;
+    moveIntoPlace(temp, journalFile);
+    journalLength = length;
+    sinceCompaction = null;
+    retryLength = 0;
+  }
+
+  private void moveIntoPlace(File from, File to) throws IOException {
+    try {
+      Files.move(from.toPath(), to.toPath(),
+          StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (AtomicMoveNotSupportedException e) {
+      Files.move(from.toPath(), to.toPath(),
+          StandardCopyOption.REPLACE_EXISTING);
+    }
+  }
+
+  /**
+   Write a fresh snapshot of the given entries right away, replacing any
+   history already on disk.
+
+   @param list The entries to be saved.
+
+   @throws IOException If the snapshot cannot be written.
+   */
+  synchronized void reset(RecentFileList list) throws IOException {
+    FileSpec[] specs = list.toArray();
+    byte[][] encodings = new byte[specs.length][];
+    recorded.clear();
+    for (int i = 0; i < specs.length; i++) {
+      encodings[i] = FileSpecCodec.encode(specs[i]);
+      recorded.put(specs[i].getKnownPath(),
+          FileSpecCodec.toText(encodings[i]));
+    }
+    writeSnapshot(nextSeq - 1, encodings);
+    sinceCompaction = new ArrayList<byte[]>();
+    restartJournal();
+  }
+
+  /**
+   Close the journal file. Records written afterwards reopen it.
+   */
+  public synchronized void close() {
+    if (journal != null) {
+      try {
+        journal.close();
+      } catch (IOException e) {
+        // Nothing more we can do
+      }
+      journal = null;
+    }
+  }
+
+  private synchronized ExecutorService getExecutor() {
+    if (executor == null) {
+      executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        public Thread newThread(Runnable r) {
+          Thread thread = new Thread(r, "psfiles-recent-files-journal");
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+    }
+    return executor;
+  }
+
+  private static int indexOf(byte[] bytes, char c, int from) {
+    for (int i = from; i < bytes.length; i++) {
+      if (bytes[i] == c) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private static int lastIndexOf(byte[] bytes, char c, int from, int to) {
+    for (int i = to - 1; i >= from; i--) {
+      if (bytes[i] == c) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 1999 - 2017 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.powersurgepub.psfiles;
+
+  import java.util.concurrent.*;
+  import org.openjdk.jmh.annotations.*;
+
+/**
+ Measures the loading of a history of 10,000 entries, as decoded from saved
+ preferences, with each folder value read into its own new String and then
+ replaced by the pooled copy, along with the pooling of those folder values
+ alone. Run with the gc profiler to see the memory allocated along the way.
+
+ @author Herb Bowie
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+public class AttributePoolBenchmark {
+
+  private static final int    HISTORY_SIZE    = 10000;
+
+  private String[] fileInfo;
+
+  @Setup
+  public void setUp () {
+    fileInfo = new String[HISTORY_SIZE];
+    for (int i = 0; i < HISTORY_SIZE; i++) {
+      fileInfo[i] = AttributePoolTest.fileInfo(i);
+    }
+  }
+
+  @Benchmark
+  public FileSpec[] loadHistory () {
+    FileSpec[] specs = new FileSpec[HISTORY_SIZE];
+    for (int i = 0; i < HISTORY_SIZE; i++) {
+      specs[i] = new FileSpec();
+      specs[i].setFileInfo(fileInfo[i]);
+    }
+    return specs;
+  }
+
+  @Benchmark
+  public String[] internFolders () {
+    String[] folders = new String[HISTORY_SIZE * 4];
+    for (int i = 0; i < HISTORY_SIZE; i++) {
+      int folder = i % AttributePoolTest.FOLDERS;
+      folders[i * 4] = AttributePool.intern
+          (new String("/Users/hbowie/Backups/Folder " + folder));
+      folders[i * 4 + 1] = AttributePool.intern
+          (new String("/Users/hbowie/Archive/Folder " + folder));
+      folders[i * 4 + 2] = AttributePool.intern
+          (new String("/Users/hbowie/Templates/Folder " + folder));
+      folders[i * 4 + 3] = AttributePool.intern
+          (new String("Folder " + folder));
+    }
+    return folders;
+  }
+
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 1999 - 2017 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.powersurgepub.psfiles;
+
+  import java.lang.ref.*;
+  import java.util.*;
+  import java.util.concurrent.*;
+  import org.junit.*;
+  import static org.junit.Assert.*;
+
+/**
+ Tests of the pool of folder attribute values shared between file specs.
+ The time and memory taken to load a history of 10,000 entries are measured
+ by AttributePoolBenchmark.
+
+ @author Herb Bowie
+ */
+public class AttributePoolTest {
+
+  private static final int    HISTORY_SIZE    = 10000;
+  static final int            FOLDERS         = 20;
+
+  @Test
+  public void equalValuesShareOneCopy () {
+    String first = new String("/Users/hbowie/Backups");
+    String second = new String("/Users/hbowie/Backups");
+    assertNotSame(first, second);
+    assertSame(AttributePool.intern(first), AttributePool.intern(second));
+  }
+
+  @Test
+  public void nullAndEmptyValuesPassThrough () {
+    assertNull(AttributePool.intern(null));
+    String empty = new String("");
+    assertSame(empty, AttributePool.intern(empty));
+  }
+
+  @Test
+  public void specsShareFolderValues () {
+    FileSpec first = new FileSpec();
+    first.setFileInfo("path=/a.txt;backup-folder=/Backups;"
+        + "archive-folder=/Archive;sync-prefix=Notes;");
+    FileSpec second = new FileSpec();
+    second.setFileInfo("path=/b.txt;backup-folder=/Backups;"
+        + "archive-folder=/Archive;sync-prefix=Notes;");
+    assertSame(first.getBackupFolder(), second.getBackupFolder());
+    assertSame(first.getArchiveFolder(), second.getArchiveFolder());
+    assertSame(first.getSyncPrefix(), second.getSyncPrefix());
+  }
+
+  @Test
+  public void unusedValuesMayBeCollected () throws InterruptedException {
+    String value = new String("/Users/hbowie/Temporary " + System.nanoTime());
+    WeakReference<String> ref
+        = new WeakReference<String>(AttributePool.intern(value));
+    value = null;
+    for (int i = 0; i < 50 && ref.get() != null; i++) {
+      System.gc();
+      Thread.sleep(10);
+    }
+    assertNull(ref.get());
+  }
+
+  @Test
+  public void concurrentInternsAgree () throws Exception {
+    final String value = "/Users/hbowie/Shared " + System.nanoTime();
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<String>> results = new ArrayList<Future<String>>();
+      for (int i = 0; i < 64; i++) {
+        results.add(executor.submit(new Callable<String>() {
+          public String call() {
+            return AttributePool.intern(new String(value));
+          }
+        }));
+      }
+      String pooled = results.get(0).get();
+      for (Future<String> result : results) {
+        assertSame(pooled, result.get());
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  /**
+   Load a history of 10,000 entries, as decoded from saved preferences,
+   with each value read into its own new String, and check that the
+   entries hold only one copy of each folder value.
+   */
+  @Test
+  public void tenThousandEntriesShareTheirFolders () {
+    IdentityHashMap<String, Boolean> distinct
+        = new IdentityHashMap<String, Boolean>();
+    for (int i = 0; i < HISTORY_SIZE; i++) {
+      FileSpec spec = new FileSpec();
+      spec.setFileInfo(fileInfo(i));
+      distinct.put(spec.getBackupFolder(), Boolean.TRUE);
+      distinct.put(spec.getArchiveFolder(), Boolean.TRUE);
+      distinct.put(spec.getSyncPrefix(), Boolean.TRUE);
+    }
+    assertEquals(FOLDERS * 3, distinct.size());
+  }
+
+  static String fileInfo (int i) {
+    int folder = i % FOLDERS;
+    return "path=/Users/hbowie/Documents/Notes " + i + "/notes.txt;"
+        + "type=file;format=notenik;"
+        + "backup-folder=/Users/hbowie/Backups/Folder " + folder + ";"
+        + "archive-folder=/Users/hbowie/Archive/Folder " + folder + ";"
+        + "templates-folder=/Users/hbowie/Templates/Folder " + folder + ";"
+        + "sync-prefix=Folder " + folder + ";";
+  }
+
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 1999 - 2017 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.powersurgepub.psfiles;
+
+  import java.util.concurrent.*;
+  import org.openjdk.jmh.annotations.*;
+
+/**
+ Compares the time taken to write and read a file spec in the key-value
+ text form and in the compact binary form. FileSpecCodecTest checks that
+ the compact form is the smaller of the two.
+
+ @author Herb Bowie
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+public class FileSpecCodecBenchmark {
+
+  private FileSpec spec;
+  private String   text;
+  private String   compactText;
+  private byte[]   bytes;
+
+  @Setup
+  public void setUp () {
+    spec = FileSpecCodecTest.fullSpec();
+    text = spec.getFileInfo();
+    compactText = spec.getCompactFileInfo();
+    bytes = FileSpecCodec.encode(spec);
+  }
+
+  @Benchmark
+  public String encodeText () {
+    return spec.getFileInfo();
+  }
+
+  @Benchmark
+  public String encodeCompactText () {
+    return spec.getCompactFileInfo();
+  }
+
+  @Benchmark
+  public byte[] encodeBytes () {
+    return FileSpecCodec.encode(spec);
+  }
+
+  @Benchmark
+  public FileSpec decodeText () {
+    FileSpec decoded = new FileSpec();
+    decoded.setFileInfo(text);
+    return decoded;
+  }
+
+  @Benchmark
+  public FileSpec decodeCompactText () {
+    FileSpec decoded = new FileSpec();
+    decoded.setFileInfo(compactText);
+    return decoded;
+  }
+
+  @Benchmark
+  public FileSpec decodeBytes () {
+    FileSpec decoded = new FileSpec();
+    FileSpecCodec.decode(bytes, 0, bytes.length, decoded);
+    return decoded;
+  }
+
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright 1999 - 2017 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.powersurgepub.psfiles;
+
+  import java.util.*;
+  import org.junit.*;
+  import static org.junit.Assert.*;
+
+/**
+ Tests of the compact binary encoding of a file spec.
+
+ @author Herb Bowie
+ */
+public class FileSpecCodecTest {
+
+  /**
+   Return a spec with every attribute set, including one not recognized
+   by this version.
+   */
+  static FileSpec fullSpec () {
+    FileSpec spec = new FileSpec("/Users/hbowie/Documents/Notes/notes.txt");
+    spec.setType("file");
+    spec.setFormat("notenik");
+    spec.setCollectionTitle("My Notes");
+    spec.setLastAccessDate(new Date(1483326245000L));
+    spec.setLastBackupDate(new Date(-1000L));
+    spec.setBackupFolder("/Users/hbowie/Backups");
+    spec.setArchiveFolder("/Users/hbowie/Archive");
+    spec.setTemplatesFolder("/Users/hbowie/Templates");
+    spec.setScriptsFolder("/Users/hbowie/Scripts");
+    spec.setHTMLFolder("/Users/hbowie/Sites");
+    spec.setEasyPlay("/Users/hbowie/EasyPlay");
+    spec.setSync(true);
+    spec.setSyncPrefix("Notes \u00e9t\u00e9");
+    spec.setLastTitle("Groceries");
+    spec.setNoteSortParm(-3);
+    spec.setAttribute("future-key", "42");
+    return spec;
+  }
+
+  @Test
+  public void roundTripKeepsEveryAttribute () {
+    FileSpec spec = fullSpec();
+    FileSpec copy = new FileSpec();
+    assertTrue(FileSpecCodec.decodeText(spec.getCompactFileInfo(), copy));
+    assertEquals(spec.getFileInfo(), copy.getFileInfo());
+    assertEquals(-3, copy.getNoteSortParm());
+    assertEquals("42", copy.getUnknownAttribute("future-key"));
+  }
+
+  @Test
+  public void roundTripOfEmptySpec () {
+    FileSpec spec = new FileSpec();
+    spec.setLastAccessDate(new Date(0));
+    spec.setLastBackupDate(new Date(0));
+    FileSpec copy = new FileSpec();
+    copy.setFileInfo(spec.getCompactFileInfo());
+    assertEquals(spec.getFileInfo(), copy.getFileInfo());
+  }
+
+  @Test
+  public void setFileInfoAcceptsBothForms () {
+    FileSpec spec = fullSpec();
+    FileSpec fromText = new FileSpec();
+    fromText.setFileInfo(spec.getFileInfo());
+    FileSpec fromCompact = new FileSpec();
+    fromCompact.setFileInfo(spec.getCompactFileInfo());
+    assertEquals(fromText.getFileInfo(), fromCompact.getFileInfo());
+  }
+
+  @Test
+  public void damagedEncodingLeavesSpecUnchanged () {
+    byte[] bytes = FileSpecCodec.encode(fullSpec());
+    for (int length = 1; length < bytes.length; length++) {
+      FileSpec target = new FileSpec("/tmp/original.txt");
+      target.setLastAccessDate(new Date(0));
+      target.setLastBackupDate(new Date(0));
+      String before = target.getFileInfo();
+      int modCount = target.getModCount();
+      if (! FileSpecCodec.decode(bytes, 0, length, target)) {
+        assertEquals(before, target.getFileInfo());
+        assertEquals(modCount, target.getModCount());
+      }
+    }
+  }
+
+  @Test
+  public void damagedTextIsNotParsedAsKeyValuePairs () {
+    FileSpec spec = new FileSpec("/tmp/original.txt");
+    String before = spec.getFileInfo();
+    spec.setFileInfo("~not base64;type=file;");
+    assertEquals(before, spec.getFileInfo());
+    spec.setFileInfo("~AQ");
+    assertEquals(before, spec.getFileInfo());
+  }
+
+  @Test
+  public void unsupportedVersionIsRejected () {
+    byte[] bytes = FileSpecCodec.encode(fullSpec());
+    bytes[0] = FileSpecCodec.VERSION + 1;
+    assertFalse(FileSpecCodec.decode(bytes, 0, bytes.length, new FileSpec()));
+  }
+
+  @Test
+  public void unknownFieldsAreSkipped () {
+    FileSpecCodec.Writer out = new FileSpecCodec.Writer();
+    out.writeByte(FileSpecCodec.VERSION);
+    out.writeString(99, "from a later version");
+    out.writeSigned(98, 12345);
+    out.writeString(FileSpecCodec.TYPE_FIELD, "url");
+    byte[] bytes = out.toByteArray();
+    FileSpec spec = new FileSpec("/tmp/a.txt");
+    assertTrue(FileSpecCodec.decode(bytes, 0, bytes.length, spec));
+    assertEquals("url", spec.getType());
+    assertEquals("/tmp/a.txt", spec.getPath());
+  }
+
+  @Test
+  public void missingFieldsAreLeftAsTheyWere () {
+    FileSpecCodec.Writer out = new FileSpecCodec.Writer();
+    out.writeByte(FileSpecCodec.VERSION);
+    out.writeString(FileSpecCodec.FORMAT_FIELD, "csv");
+    byte[] bytes = out.toByteArray();
+    FileSpec spec = fullSpec();
+    assertTrue(FileSpecCodec.decode(bytes, 0, bytes.length, spec));
+    assertEquals("csv", spec.getFormat());
+    assertEquals("file", spec.getType());
+    assertEquals("My Notes", spec.getCollectionTitle());
+  }
+
+  @Test
+  public void decodePathReadsOnlyThePath () {
+    byte[] bytes = FileSpecCodec.encode(fullSpec());
+    assertEquals("/Users/hbowie/Documents/Notes/notes.txt",
+        FileSpecCodec.decodePath(bytes, 0, bytes.length));
+    assertNull(FileSpecCodec.decodePath(bytes, 0, 3));
+  }
+
+  @Test
+  public void compactFormIsSmallerThanText () {
+    FileSpec spec = fullSpec();
+    int textLength = spec.getFileInfo().length();
+    int compactLength = spec.getCompactFileInfo().length();
+    assertTrue(compactLength < textLength);
+    assertTrue(FileSpecCodec.encode(spec).length < textLength);
+  }
+
+}
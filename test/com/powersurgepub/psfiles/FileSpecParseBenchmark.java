@@ -0,0 +1,64 @@
+/*
+ * Copyright 1999 - 2017 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.powersurgepub.psfiles;
+
+  import java.util.concurrent.*;
+  import org.openjdk.jmh.annotations.*;
+  import org.openjdk.jmh.infra.*;
+
+/**
+ Compares the time taken, and the memory allocated, by the single-pass
+ FileSpec parser and by the original substring-based parser. Run with the
+ JMH gc profiler (-prof gc) to see the bytes allocated per parse.
+
+ @author Herb Bowie
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+public class FileSpecParseBenchmark {
+
+  private static final String FILE_INFO
+      = "path=/Users/hbowie/Documents/Notes/notes.txt;type=file;"
+      + "format=notenik;collection-title=My%20Notes;"
+      + "last-access=2017-01-02T03:04:05Z;last-backup=2016-12-31T23:59:59Z;"
+      + "backup-folder=/Users/hbowie/Backups;sync=true;"
+      + "sync-prefix=Notes;last-title=Groceries;note-sort-parm=2;";
+
+  private FileSpec spec;
+
+  @Setup(Level.Invocation)
+  public void setUp () {
+    spec = new FileSpec();
+  }
+
+  @Benchmark
+  public FileSpec singlePass () {
+    spec.setFileInfo(FILE_INFO);
+    return spec;
+  }
+
+  @Benchmark
+  public FileSpec legacy () {
+    FileSpecParserTest.legacySetFileInfo(spec, FILE_INFO);
+    return spec;
+  }
+
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright 1999 - 2017 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.powersurgepub.psfiles;
+
+  import java.util.*;
+  import org.junit.*;
+  import static org.junit.Assert.*;
+
+/**
+ Tests of the single-pass parser behind FileSpec.setFileInfo, checking that
+ it treats every input exactly as the original substring-based parser did.
+
+ @author Herb Bowie
+ */
+public class FileSpecParserTest {
+
+  private static final Date FIXED_DATE = new Date(1000000000000L);
+
+  private static final String[] SAMPLES = {
+    "",
+    "   ",
+    "no equals sign here",
+    "=leading-equals;path=/tmp/a.txt;",
+    "path=/tmp/a.txt",
+    "path=/tmp/a.txt;",
+    "path=/tmp/a.txt;;;type=file;",
+    "PATH=/tmp/a.txt;Type=file;FORMAT=tab-delimited;",
+    "  path=/tmp/a.txt;   type=file;",
+    "path=/tmp/a=b.txt;type=;format=x;",
+    "path=/tmp/a.txt;collection-title=My%20Notes;",
+    "path=/tmp/a.txt;last-access=2017-01-02T03:04:05Z;"
+        + "last-backup=2016-12-31T23:59:59Z;",
+    "path=/tmp/a.txt;backup-folder=/tmp/backups;archive-folder=/tmp/arch;"
+        + "templates-folder=/tmp/tpl;scripts-folder=/tmp/scripts;"
+        + "html-folder=/tmp/html;easyplay=/tmp/ep;",
+    "path=/tmp/a.txt;sync=true;sync-prefix=pre;last-title=Last;"
+        + "note-sort-parm=3;",
+    "path=/tmp/a.txt;some-future-key=value;another=1;",
+    "path=/tmp/a.txt;paths=/not/a/path;pathx=nope;typ=short;",
+    "path=/tmp/a.txt;note-sort-parm=not-a-number;",
+    "path=/tmp/a.txt;trailing junk without equals",
+    "path=/tmp/a.txt;bad;name=value;",
+  };
+
+  @Test
+  public void samplesMatchLegacyParser () {
+    for (String sample : SAMPLES) {
+      assertSameAsLegacy(sample);
+    }
+  }
+
+  /**
+   Dates are left out of the random inputs, since a date that cannot be
+   parsed is taken as the current time.
+   */
+  @Test
+  public void randomInputsMatchLegacyParser () {
+    String[] pieces = {
+      "path", "PATH", "type", "format", "collection-title", "backup-folder", "sync", "sync-prefix", "last-title",
+      "note-sort-parm", "unknown", "x", "=", ";", " ", "/tmp/f", "a=b",
+      "true", "7", ""
+    };
+    Random random = new Random(1999);
+    for (int n = 0; n < 5000; n++) {
+      StringBuilder fileInfo = new StringBuilder();
+      int count = random.nextInt(12);
+      for (int j = 0; j < count; j++) {
+        fileInfo.append(pieces[random.nextInt(pieces.length)]);
+      }
+      assertSameAsLegacy(fileInfo.toString());
+    }
+  }
+
+  @Test(timeout = 1000)
+  public void textWithoutEqualsSignEndsParsing () {
+    FileSpec spec = newSpec();
+    spec.setFileInfo("type=file;no equals sign;format=csv;");
+    assertEquals("file", spec.getType());
+    assertEquals("", spec.getFormat());
+    spec = newSpec();
+    spec.setFileInfo("=x;type=file;");
+    assertEquals("", spec.getType());
+  }
+
+  @Test
+  public void attributeNamesIgnoreCase () {
+    FileSpec spec = newSpec();
+    spec.setFileInfo("Collection-Title=Notes;FoRmAt=csv;");
+    assertEquals("Notes", spec.getCollectionTitle());
+    assertEquals("csv", spec.getFormat());
+  }
+
+  @Test
+  public void unknownAttributesRoundTrip () {
+    FileSpec spec = newSpec();
+    spec.setFileInfo("path=/tmp/a.txt;future-key=42;");
+    assertEquals("42", spec.getUnknownAttribute("future-key"));
+    FileSpec copy = newSpec();
+    copy.setFileInfo(spec.getFileInfo());
+    assertEquals("42", copy.getUnknownAttribute("future-key"));
+  }
+
+  @Test
+  public void lookupAttributeRecognizesEveryName () {
+    String[] names = {
+      FileSpec.PATH, FileSpec.TYPE, FileSpec.FORMAT,
+      FileSpec.COLLECTION_TITLE, FileSpec.LAST_ACCESS, FileSpec.LAST_BACKUP,
+      FileSpec.BACKUP_FOLDER, FileSpec.ARCHIVE_FOLDER,
+      FileSpec.TEMPLATES_FOLDER, FileSpec.SCRIPTS_FOLDER,
+      FileSpec.HTML_FOLDER, FileSpec.EASYPLAY, FileSpec.SYNC,
+      FileSpec.SYNC_PREFIX, FileSpec.LAST_TITLE, FileSpec.NOTE_SORT_PARM
+    };
+    Set<Integer> codes = new HashSet<Integer>();
+    for (String name : names) {
+      String padded = "[" + name.toUpperCase() + "]";
+      int code = FileSpec.lookupAttribute(padded, 1, padded.length() - 1);
+      assertTrue(name, code != FileSpec.UNKNOWN_ATTRIBUTE);
+      codes.add(code);
+    }
+    assertEquals(names.length, codes.size());
+  }
+
+  /**
+   Parse the given info with both parsers and compare the results.
+   */
+  private static void assertSameAsLegacy (String fileInfo) {
+    FileSpec current = newSpec();
+    current.setFileInfo((CharSequence)fileInfo);
+    FileSpec legacy = newSpec();
+    legacySetFileInfo(legacy, fileInfo);
+    assertEquals(fileInfo, legacy.getFileInfo(), current.getFileInfo());
+  }
+
+  /**
+   Return a new spec whose dates do not depend on the time of the test.
+   */
+  static FileSpec newSpec () {
+    FileSpec spec = new FileSpec();
+    spec.setLastAccessDate(FIXED_DATE);
+    spec.setLastBackupDate(FIXED_DATE);
+    return spec;
+  }
+
+  /**
+   The original parser, which cut out a name and a value for every
+   attribute, kept here to check the current one against. The original
+   started over from the beginning, without end, when it found text with
+   no equals sign, or an equals sign at the very start; this copy stops
+   there instead, as the current parser does.
+   */
+  static void legacySetFileInfo (FileSpec spec, String fileInfo) {
+    int i = 0;
+    int equalsIndex;
+    int delimIndex;
+    while (i >= 0 && i < fileInfo.length()) {
+      while (i < fileInfo.length()
+          && Character.isWhitespace(fileInfo.charAt(i))) {
+        i++;
+      }
+      equalsIndex = fileInfo.indexOf(FileSpec.EQUALS, i);
+      delimIndex = fileInfo.length();
+      if (equalsIndex > 0) {
+        delimIndex = fileInfo.indexOf(FileSpec.DELIMITER, equalsIndex);
+        if (delimIndex < 0) {
+          delimIndex = fileInfo.length();
+        }
+        String name = fileInfo.substring(i, equalsIndex);
+        String data = fileInfo.substring(equalsIndex + 1, delimIndex);
+        spec.setAttribute (name, data);
+      }
+      i = delimIndex;
+      if (i < fileInfo.length()) {
+        i++;
+      }
+    }
+  }
+
+}
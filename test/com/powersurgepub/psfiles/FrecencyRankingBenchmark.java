@@ -0,0 +1,79 @@
+/*
+ * Copyright 1999 - 2017 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.powersurgepub.psfiles;
+
+  import java.io.*;
+  import java.util.*;
+  import java.util.concurrent.*;
+  import org.openjdk.jmh.annotations.*;
+
+/**
+ Measures how the cost of re-ranking a file on each access grows with the
+ length of a list ranked by frecency, with and without a read of the list
+ as published following each access. Saves are held back for the length
+ of a run, so that only the ranking and the list are measured.
+
+ @author Herb Bowie
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+public class FrecencyRankingBenchmark {
+
+  @Param({"50", "500", "5000", "50000"})
+  private int size;
+
+  private RecentFileHistory history;
+  private String[]          paths;
+  private Random            random = new Random(14);
+
+  @Setup
+  public void setUp () {
+    history = new RecentFileHistory("frecency-benchmark-" + size + "-");
+    history.setRecentFilesMax(size);
+    history.setFrecencyRanking(true);
+    history.setWriteBehindDelay(Integer.MAX_VALUE);
+    paths = new String[size];
+    for (int i = 0; i < size; i++) {
+      paths[i] = new File("/benchmark/ranked", "file" + i + ".txt")
+          .getAbsolutePath();
+      history.addRecentFile(new FileSpec(new File(paths[i])));
+    }
+  }
+
+  @TearDown
+  public void tearDown () {
+    history.setWriteBehindDelay(0);
+  }
+
+  @Benchmark
+  public FileSpec rankedAccess () {
+    return history.addRecentFile
+        (new FileSpec(new File(paths[random.nextInt(size)])));
+  }
+
+  @Benchmark
+  public FileSpec rankedAccessAndRead () {
+    history.addRecentFile
+        (new FileSpec(new File(paths[random.nextInt(size)])));
+    return history.get(history.size() - 1);
+  }
+
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 1999 - 2017 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.powersurgepub.psfiles;
+
+  import java.io.*;
+  import java.util.*;
+  import org.junit.*;
+  import static org.junit.Assert.*;
+
+/**
+ Tests of the frecency ranking, and of a recent file history ranked by it.
+
+ @author Herb Bowie
+ */
+public class FrecencyRankingTest {
+
+  private static int          testCount = 0;
+
+  private RecentFileHistory   history;
+  private FrecencyRanking     ranking;
+
+  @Before
+  public void setUp () {
+    testCount++;
+    history = new RecentFileHistory("frecency-test-" + testCount + "-");
+    history.setFrecencyRanking(true);
+    ranking = new FrecencyRanking(FrecencyRanking.DEFAULT_HALF_LIFE);
+  }
+
+  @Test
+  public void frequentlyUsedFileOutlastsOneOffs () {
+    history.setRecentFilesMax(5);
+    for (int i = 0; i < 5; i++) {
+      history.addRecentFile(newSpec("often"));
+    }
+    for (int i = 0; i < 10; i++) {
+      history.addRecentFile(newSpec("once" + i));
+    }
+    assertEquals(5, history.size());
+    assertEquals(newSpec("often").getPath(), history.get(0).getPath());
+    assertEquals(5, ranking.getCount(history.get(0)));
+    assertEquals(newSpec("once9").getPath(), history.get(1).getPath());
+  }
+
+  @Test
+  public void fileJustAddedIsNeverDropped () {
+    history.setRecentFilesMax(3);
+    for (int i = 0; i < 3; i++) {
+      for (int j = 0; j < 3; j++) {
+        history.addRecentFile(newSpec("often" + i));
+      }
+    }
+    FileSpec added = history.addRecentFile(newSpec("once"));
+    assertEquals(3, history.size());
+    assertSame(added, history.get(2));
+  }
+
+  @Test
+  public void randomAccessesKeepTheListInOrderOfScore () {
+    history.setRecentFilesMax(200);
+    Random random = new Random(17);
+    for (int i = 0; i < 5000; i++) {
+      history.addRecentFile(newSpec("file" + random.nextInt(300)));
+    }
+    assertEquals(200, history.size());
+    Set<String> paths = new HashSet<String>();
+    for (int i = 0; i < history.size(); i++) {
+      assertTrue(paths.add(history.get(i).getPath()));
+      if (i > 0) {
+        assertTrue("Out of order at " + i,
+            ranking.getScore(history.get(i - 1))
+            >= ranking.getScore(history.get(i)));
+      }
+    }
+  }
+
+  @Test
+  public void scoreHalvesEachHalfLife () {
+    FileSpec spec = newSpec("decay");
+    long halfLife = FrecencyRanking.DEFAULT_HALF_LIFE;
+    ranking.recordAccess(spec, 0);
+    ranking.recordAccess(spec, 0);
+    assertEquals(2.0, ranking.getScore(spec, 0), 1e-9);
+    assertEquals(1.0, ranking.getScore(spec, halfLife), 1e-9);
+    assertEquals(0.5, ranking.getScore(spec, 2 * halfLife), 1e-9);
+  }
+
+  private FileSpec newSpec (String name) {
+    return new FileSpec(new File("/frecency/" + name + ".txt"));
+  }
+
+}
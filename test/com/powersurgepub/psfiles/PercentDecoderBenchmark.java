@@ -0,0 +1,76 @@
+/*
+ * Copyright 1999 - 2017 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.powersurgepub.psfiles;
+
+  import java.io.*;
+  import java.net.*;
+  import java.util.concurrent.*;
+  import org.openjdk.jmh.annotations.*;
+
+/**
+ Compares the percent decoder with the "%20" replacement it took over from,
+ which decoded nothing else, and with URLDecoder, on paths with no escapes,
+ with only encoded spaces, and with multi-byte sequences.
+
+ @author Herb Bowie
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+public class PercentDecoderBenchmark {
+
+  @Param({
+    "/Users/hbowie/Documents/Notes/notes.txt",
+    "/Users/hbowie/My%20Documents/Shared%20Notes/Grocery%20List.txt",
+    "/Users/hbowie/Documents/Caf%C3%A9%20Notes/%E2%82%AC%20Budget.txt"
+  })
+  private String path;
+
+  @Benchmark
+  public String percentDecoder () {
+    return PercentDecoder.decode(path);
+  }
+
+  @Benchmark
+  public int decodedLength () {
+    return PercentDecoder.decodedLength(path, 0, path.length());
+  }
+
+  @Benchmark
+  public String spaceReplacement () {
+    StringBuffer work = new StringBuffer (path);
+    int i = 0;
+    while (i >= 0) {
+      i = work.indexOf("%20", i);
+      if (i >= 0) {
+        work.delete (i, i + 3);
+        work.insert (i, " ");
+        i++;
+      }
+    }
+    return work.toString();
+  }
+
+  @Benchmark
+  public String urlDecoder () throws UnsupportedEncodingException {
+    return URLDecoder.decode(path, "UTF-8");
+  }
+
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright 1999 - 2017 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.powersurgepub.psfiles;
+
+  import java.io.*;
+  import java.net.*;
+  import java.util.*;
+  import org.junit.*;
+  import static org.junit.Assert.*;
+
+/**
+ Tests of the single-pass percent decoder, including the escapes it must
+ leave exactly as they appear.
+
+ @author Herb Bowie
+ */
+public class PercentDecoderTest {
+
+  @Test
+  public void textWithoutEscapesIsReturnedAsIs () {
+    String str = "/Users/hbowie/Notes";
+    assertSame(str, PercentDecoder.decode(str));
+    assertEquals("", PercentDecoder.decode(""));
+  }
+
+  @Test
+  public void singleByteEscapes () {
+    assertEquals("My Notes", PercentDecoder.decode("My%20Notes"));
+    assertEquals("a/b#c", PercentDecoder.decode("a%2Fb%23c"));
+    assertEquals("a/b", PercentDecoder.decode("a%2fb"));
+    assertEquals("100%", PercentDecoder.decode("100%25"));
+    assertEquals("%20", PercentDecoder.decode("%2520"));
+  }
+
+  @Test
+  public void plusIsNotASpace () {
+    assertEquals("a+b", PercentDecoder.decode("a+b"));
+  }
+
+  @Test
+  public void multiByteSequences () {
+    assertEquals("caf\u00e9", PercentDecoder.decode("caf%C3%A9"));
+    assertEquals("\u20ac5", PercentDecoder.decode("%E2%82%AC5"));
+    assertEquals("\ud83d\ude00", PercentDecoder.decode("%F0%9F%98%80"));
+    assertEquals("\u00e9\u00e9", PercentDecoder.decode("%c3%a9%C3%A9"));
+  }
+
+  @Test
+  public void incompleteEscapesAreLeftAsIs () {
+    assertEquals("%", PercentDecoder.decode("%"));
+    assertEquals("a%", PercentDecoder.decode("a%"));
+    assertEquals("a%2", PercentDecoder.decode("a%2"));
+    assertEquals("%G0 ", PercentDecoder.decode("%G0%20"));
+    assertEquals("%2G", PercentDecoder.decode("%2G"));
+    assertEquals("%%20", PercentDecoder.decode("%%2520"));
+  }
+
+  @Test
+  public void invalidUtf8IsLeftAsIs () {
+    // Lone continuation byte
+    assertEquals("%80", PercentDecoder.decode("%80"));
+    // Overlong form of a slash
+    assertEquals("%C0%AF", PercentDecoder.decode("%C0%AF"));
+    assertEquals("%E0%80%AF", PercentDecoder.decode("%E0%80%AF"));
+    // Sequence cut short, then followed by an ordinary escape
+    assertEquals("%E2%82 ", PercentDecoder.decode("%E2%82%20"));
+    assertEquals("%E2%82", PercentDecoder.decode("%E2%82"));
+    // Surrogate code point
+    assertEquals("%ED%A0%80", PercentDecoder.decode("%ED%A0%80"));
+    // Beyond the last code point
+    assertEquals("%F4%90%80%80", PercentDecoder.decode("%F4%90%80%80"));
+    // Bytes that can never start a sequence
+    assertEquals("%F5%80%80%80", PercentDecoder.decode("%F5%80%80%80"));
+    assertEquals("%FF", PercentDecoder.decode("%FF"));
+  }
+
+  @Test
+  public void escapeCutByEndOfRegionIsLeftAsIs () {
+    StringBuilder out = new StringBuilder();
+    int length = PercentDecoder.decode("ab%20cd", 0, 4, out);
+    assertEquals("ab%2", out.toString());
+    assertEquals(4, length);
+    out.setLength(0);
+    PercentDecoder.decode("x%C3%A9", 0, 6, out);
+    assertEquals("x%C3%A", out.toString());
+  }
+
+  @Test
+  public void decodedLengthMatchesDecoding () {
+    Random random = new Random(2017);
+    for (int n = 0; n < 2000; n++) {
+      String str = randomEncoded(random, true);
+      assertEquals(str, PercentDecoder.decode(str).length(),
+          PercentDecoder.decodedLength(str, 0, str.length()));
+    }
+  }
+
+  @Test
+  public void validEscapesMatchUrlDecoder ()
+      throws UnsupportedEncodingException {
+    Random random = new Random(1999);
+    for (int n = 0; n < 2000; n++) {
+      String str = randomEncoded(random, false);
+      assertEquals(str, URLDecoder.decode(str, "UTF-8"),
+          PercentDecoder.decode(str));
+    }
+  }
+
+  /**
+   Build a random string of plain characters and escapes, and optionally
+   damaged escapes as well. Plus signs are left out, since URLDecoder
+   takes them as spaces.
+   */
+  static String randomEncoded (Random random, boolean damaged) {
+    String[] pieces = {
+      "a", "Z", "/", " ", "%20", "%2F", "%25", "%c3%a9", "%E2%82%AC",
+      "%F0%9F%98%80", "\u00e9"
+    };
+    String[] damage = {
+      "%", "%2", "%G1", "%80", "%C0%AF", "%E2%82", "%ED%A0%80", "%FF"
+    };
+    StringBuilder str = new StringBuilder();
+    int count = random.nextInt(10);
+    for (int i = 0; i < count; i++) {
+      if (damaged && random.nextInt(4) == 0) {
+        str.append(damage[random.nextInt(damage.length)]);
+      } else {
+        str.append(pieces[random.nextInt(pieces.length)]);
+      }
+    }
+    return str.toString();
+  }
+
+}
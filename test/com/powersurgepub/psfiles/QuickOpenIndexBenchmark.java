@@ -0,0 +1,56 @@
+/*
+ * Copyright 1999 - 2017 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.powersurgepub.psfiles;
+
+  import java.util.*;
+  import java.util.concurrent.*;
+  import org.openjdk.jmh.annotations.*;
+
+/**
+ Measures "Open Quickly" searches of 50,000 files, which should each take
+ well under a millisecond: a single letter, which looks at every file, short
+ and longer prefixes, two words, a query with a typo, a title and number,
+ part of a word and a number, and a query matching nothing.
+
+ @author Herb Bowie
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+public class QuickOpenIndexBenchmark {
+
+  @Param({"b", "bud", "budget tr", "budget trav", "budgte", "notes 123",
+      "rec 4999", "xyz"})
+  private String query;
+
+  private QuickOpenIndex index;
+
+  @Setup
+  public void setUp () {
+    index = new QuickOpenIndex();
+    QuickOpenIndexTest.fill(index, 50000);
+  }
+
+  @Benchmark
+  public List<FileSpecSnapshot> search () {
+    return index.search(query, 10);
+  }
+
+}
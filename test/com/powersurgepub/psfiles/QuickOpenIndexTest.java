@@ -0,0 +1,142 @@
+/*
+ * Copyright 1999 - 2017 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.powersurgepub.psfiles;
+
+  import java.util.*;
+  import org.junit.*;
+  import static org.junit.Assert.*;
+
+/**
+ Tests of the trigram index behind the "Open Quickly" box.
+
+ @author Herb Bowie
+ */
+public class QuickOpenIndexTest {
+
+  static final String[] WORDS = {
+    "notes", "budget", "travel", "recipes", "work", "home", "photos",
+    "music", "projects", "archive", "letters", "taxes"
+  };
+
+  private QuickOpenIndex index;
+
+  @Before
+  public void setUp () {
+    index = new QuickOpenIndex();
+  }
+
+  @Test
+  public void titleStartingWithQueryComesFirst () {
+    index.add(newSnapshot("/qo/a1", "Travel Budget"));
+    index.add(newSnapshot("/qo/a2", "Budget 2017"));
+    index.add(newSnapshot("/qo/a3", "Notes"));
+    List<FileSpecSnapshot> results = index.search("bud", 10);
+    assertEquals(2, results.size());
+    assertEquals("Budget 2017", results.get(0).getCollectionTitle());
+    assertEquals("Travel Budget", results.get(1).getCollectionTitle());
+  }
+
+  @Test
+  public void singleLetterMatchesStartOfWord () {
+    index.add(newSnapshot("/qo/a1", "Music"));
+    index.add(newSnapshot("/qo/a2", "Home Movies"));
+    List<FileSpecSnapshot> results = index.search("m", 10);
+    assertEquals(2, results.size());
+    assertEquals("Music", results.get(0).getCollectionTitle());
+  }
+
+  @Test
+  public void addingSamePathReplacesEntry () {
+    index.add(newSnapshot("/qo/a1", "Recipes"));
+    index.add(newSnapshot("/qo/a1", "Letters"));
+    assertEquals(1, index.size());
+    assertTrue(index.search("recipes", 10).isEmpty());
+    assertEquals(1, index.search("letters", 10).size());
+  }
+
+  @Test
+  public void removedFilesAreNotFound () {
+    for (int i = 0; i < 3000; i++) {
+      index.add(newSnapshot("/qo/f" + i, "Archive " + i));
+    }
+    for (int i = 0; i < 3000; i++) {
+      if (i % 3 != 0) {
+        assertTrue(index.remove("/qo/f" + i));
+      }
+    }
+    assertFalse(index.remove("/qo/f1"));
+    assertEquals(1000, index.size());
+    List<FileSpecSnapshot> results = index.search("archive", 3000);
+    assertEquals(1000, results.size());
+    for (FileSpecSnapshot found : results) {
+      int i = Integer.parseInt(found.getCollectionTitle().substring(8));
+      assertEquals(0, i % 3);
+    }
+    assertEquals("Archive 2997",
+        index.search("archive 2997", 1).get(0).getCollectionTitle());
+  }
+
+  @Test
+  public void limitIsRespected () {
+    for (int i = 0; i < 100; i++) {
+      index.add(newSnapshot("/qo/f" + i, "Photos " + i));
+    }
+    assertEquals(7, index.search("photo", 7).size());
+    assertTrue(index.search("photo", 0).isEmpty());
+    assertTrue(index.search("   ", 7).isEmpty());
+  }
+
+  @Test
+  public void fiftyThousandFilesSearched () {
+    fill(index, 50000);
+    assertEquals(10, index.search("budget", 10).size());
+    List<FileSpecSnapshot> found = index.search("budget tr", 10);
+    assertEquals(10, found.size());
+    for (FileSpecSnapshot spec : found) {
+      assertTrue(spec.getCollectionTitle().startsWith("budget travel"));
+    }
+    found = index.search("notes 123", 10);
+    assertEquals(10, found.size());
+    for (FileSpecSnapshot spec : found) {
+      assertTrue(spec.getCollectionTitle().contains("notes 123"));
+    }
+    assertTrue(index.search("xyz", 10).isEmpty());
+  }
+
+  /**
+   Fill an index with the given number of files, with titles made up of
+   two random words and a number.
+   */
+  static void fill (QuickOpenIndex index, int count) {
+    Random random = new Random(1);
+    for (int i = 0; i < count; i++) {
+      String title = WORDS[random.nextInt(WORDS.length)] + " "
+          + WORDS[random.nextInt(WORDS.length)] + " " + i;
+      index.add(newSnapshot("/Users/me/Documents/" + title.replace(' ', '-'),
+          title));
+    }
+  }
+
+  static FileSpecSnapshot newSnapshot (String path, String title) {
+    FileSpec spec = new FileSpec();
+    spec.setType("file");
+    spec.setPath(path);
+    spec.setCollectionTitle(title);
+    return spec.snapshot();
+  }
+
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 1999 - 2017 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.powersurgepub.psfiles;
+
+  import java.io.*;
+  import java.util.concurrent.*;
+  import org.openjdk.jmh.annotations.*;
+
+/**
+ Measures how the cost of looking up, promoting and adding recent files
+ grows with the size of the list, from 5 entries to 50,000, including
+ promotion followed by a read of the list as published, as a menu or combo
+ box would read it. Saves are held back for the length of a run, so that
+ only the list itself is measured.
+
+ @author Herb Bowie
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+public class RecentFileHistoryScalingBenchmark {
+
+  @Param({"5", "50", "500", "5000", "50000"})
+  private int size;
+
+  private RecentFileHistory history;
+  private String[]          paths;
+  private int               next = 0;
+  private int               added = 0;
+
+  @Setup
+  public void setUp () {
+    history = new RecentFileHistory("scaling-benchmark-" + size + "-");
+    history.setRecentFilesMax(size);
+    history.setWriteBehindDelay(Integer.MAX_VALUE);
+    paths = new String[size];
+    for (int i = 0; i < size; i++) {
+      paths[i] = new File("/benchmark/recent", "file" + i + ".txt")
+          .getAbsolutePath();
+      history.addRecentFile(new FileSpec(new File(paths[i])));
+    }
+  }
+
+  @TearDown
+  public void tearDown () {
+    history.setWriteBehindDelay(0);
+  }
+
+  @Benchmark
+  public FileSpec lookup () {
+    return history.get(nextPath());
+  }
+
+  @Benchmark
+  public FileSpec promote () {
+    return history.addRecentFile(new FileSpec(new File(nextPath())));
+  }
+
+  @Benchmark
+  public FileSpec promoteAndRead () {
+    history.addRecentFile(new FileSpec(new File(nextPath())));
+    return history.get(history.size() - 1);
+  }
+
+  @Benchmark
+  public FileSpec addNew () {
+    added++;
+    return history.addRecentFile(new FileSpec
+        (new File("/benchmark/new", "file" + added + ".txt")));
+  }
+
+  @Benchmark
+  public FileSpec addNotSoRecent () {
+    return history.addNotSoRecentFile(new FileSpec(new File(nextPath())));
+  }
+
+  private String nextPath () {
+    next = (next + 7919) % size;
+    return paths[next];
+  }
+
+}
@@ -0,0 +1,325 @@
+/*
+ * Copyright 1999 - 2017 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.powersurgepub.psfiles;
+
+  import com.powersurgepub.psutils.*;
+  import java.io.*;
+  import java.nio.file.*;
+  import java.util.*;
+  import org.junit.*;
+  import static org.junit.Assert.*;
+
+/**
+ Tests of the headless recent file history. Each test uses its own prefs
+ qualifier, so that tests do not see each other's preferences.
+
+ @author Herb Bowie
+ */
+public class RecentFileHistoryTest {
+
+  private static int     testCount = 0;
+
+  private File           folder;
+  private RecentFileHistory history;
+
+  @Before
+  public void setUp () throws IOException {
+    folder = Files.createTempDirectory("psfiles-test").toFile();
+    testCount++;
+    history = new RecentFileHistory("history-test-" + testCount + "-");
+    history.setRecentFilesMax(10);
+    CanonicalPathCache.getShared().clear();
+  }
+
+  @After
+  public void tearDown () {
+    deleteAll(folder);
+  }
+
+  @Test
+  public void addedFileIsFoundByAbsolutePathRightAway () throws IOException {
+    File file = newFile("a.txt");
+    FileSpec spec = new FileSpec(file);
+    history.addRecentFile(spec);
+    assertSame(spec, history.get(file.getAbsolutePath()));
+    assertSame(spec, history.get(0));
+  }
+
+  @Test
+  public void sameFileAddedThroughLinkIsMergedOnceResolved ()
+      throws IOException, InterruptedException {
+    File file = newFile("real.txt");
+    File link = new File(folder, "link.txt");
+    try {
+      Files.createSymbolicLink(link.toPath(), file.toPath());
+    } catch (UnsupportedOperationException e) {
+      return;
+    }
+    FileSpec older = new FileSpec(file);
+    older.setBackupFolder("/tmp/backups");
+    history.addRecentFile(older);
+    awaitResolution();
+    FileSpec newer = new FileSpec(link);
+    history.addRecentFile(newer);
+    awaitResolution();
+    assertEquals(1, history.size());
+    assertSame(newer, history.get(0));
+    assertEquals(file.getCanonicalPath(), newer.getPath());
+    assertSame(newer, history.get(file.getCanonicalPath()));
+    assertEquals("/tmp/backups", newer.getBackupFolder());
+  }
+
+  @Test
+  public void journalFollowsPathOnceResolved ()
+      throws IOException, InterruptedException {
+    File file = newFile("real.txt");
+    File link = new File(folder, "link.txt");
+    try {
+      Files.createSymbolicLink(link.toPath(), file.toPath());
+    } catch (UnsupportedOperationException e) {
+      return;
+    }
+    history.setJournal(new RecentFilesJournal(new File(folder, "recent")));
+    history.loadFromPrefs();
+    history.addRecentFile(new FileSpec(newFile("other.txt")));
+    history.addRecentFile(new FileSpec(link));
+    awaitResolution();
+    history.savePrefs();
+    history.getJournal().close();
+
+    RecentFileHistory reloaded = new RecentFileHistory("reloaded-");
+    reloaded.setJournal(new RecentFilesJournal(new File(folder, "recent")));
+    reloaded.loadFromPrefs();
+    assertEquals(2, reloaded.size());
+    assertEquals(file.getCanonicalPath(), reloaded.get(0).getPath());
+    reloaded.getJournal().close();
+  }
+
+  /**
+   Make changes from many threads, some of them within blocks synchronized
+   on the list, by threads that end before making another change, and check
+   that a copy of the list kept up to date from the changes announced, in
+   the order announced, ends up matching the list itself.
+   */
+  @Test
+  public void changesAreAnnouncedInOrderMade () throws Exception {
+    final List<FileSpec> shown = new ArrayList<FileSpec>();
+    history = new RecentFileHistory("history-test-order-" + testCount + "-") {
+      protected void fileAdded (FileSpec fileSpec, int i) {
+        shown.add(i, fileSpec);
+      }
+      protected void fileRemoved (int i) {
+        shown.remove(i);
+      }
+    };
+    history.setRecentFilesMax(10);
+    final File[] files = new File[20];
+    for (int i = 0; i < files.length; i++) {
+      files[i] = newFile("file" + i + ".txt");
+    }
+    Thread[] threads = new Thread[8];
+    for (int t = 0; t < threads.length; t++) {
+      final Random random = new Random(t);
+      final boolean quiet = (t % 2 == 0);
+      threads[t] = new Thread(new Runnable() {
+        public void run() {
+          for (int n = 0; n < 200; n++) {
+            File file = files[random.nextInt(files.length)];
+            if (quiet && n == 199) {
+              synchronized (history) {
+                history.addRecentFile(file);
+              }
+            } else {
+              history.addRecentFile(file);
+            }
+          }
+        }
+      });
+    }
+    for (Thread thread : threads) {
+      thread.start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    history.addRecentFile(files[0]);
+    awaitResolution();
+
+    assertEquals(history.size(), shown.size());
+    for (int i = 0; i < shown.size(); i++) {
+      assertSame(history.get(i), shown.get(i));
+    }
+  }
+
+  @Test
+  public void notSoRecentFileAnnouncesOnlyWhatChanges () throws IOException {
+    final List<String> events = new ArrayList<String>();
+    history = new RecentFileHistory("history-test-events-" + testCount + "-") {
+      protected void fileAdded (FileSpec fileSpec, int i) {
+        events.add("added " + i);
+      }
+      protected void fileRemoved (int i) {
+        events.add("removed " + i);
+      }
+    };
+    history.setRecentFilesMax(10);
+    history.addRecentFile(new FileSpec(newFile("a.txt")));
+    history.addRecentFile(new FileSpec(newFile("b.txt")));
+    FileSpec top = history.addRecentFile(new FileSpec(newFile("c.txt")));
+    events.clear();
+
+    assertSame(top, history.addNotSoRecentFile
+        (new FileSpec(newFile("d.txt"))));
+    assertEquals(3, history.size());
+    assertTrue(events.toString(), events.isEmpty());
+
+    FileSpec notSoRecent = new FileSpec(new File(folder, "b.txt"));
+    assertSame(top, history.addNotSoRecentFile(notSoRecent));
+    assertEquals(2, history.size());
+    assertEquals(Arrays.asList("removed 1"), events);
+    assertNull(history.get(notSoRecent.getPath()));
+  }
+
+  @Test
+  public void titleChangedDirectlyIsFoundUnderNewTitle () throws IOException {
+    FileSpec first = new FileSpec(newFile("a.txt"));
+    first.setCollectionTitle("Old");
+    history.addRecentFile(first);
+    FileSpec second = new FileSpec(newFile("b.txt"));
+    second.setCollectionTitle("Other");
+    history.addRecentFile(second);
+    history.removeRecentFile("Missing");
+    assertEquals(2, history.size());
+
+    first.setCollectionTitle("New");
+    history.modRecentFile("new", "Newer");
+    assertEquals("Newer", first.getCollectionTitle());
+    history.removeRecentFile("Old");
+    assertEquals(2, history.size());
+
+    second.setCollectionTitle("Latest");
+    history.removeRecentFile("LATEST");
+    assertEquals(1, history.size());
+    assertSame(first, history.get(0));
+    history.removeRecentFile("Newer");
+    assertEquals(0, history.size());
+  }
+
+  /**
+   Add a file whose canonical path is slow to resolve, with the list saved 
+   after each change to the user's preferences, in either encoding, and to 
+   a journal, and check that the path is only ever resolved in the 
+   background, and that the entry is saved again, with the title derived 
+   from its path, once it has been. 
+   */
+  @Test
+  public void addingNeverWaitsOnTheCanonicalPath () throws Exception {
+    File file = newFile("slow.txt");
+    history.addRecentFile(new FileSpec(new SlowFile(file)));
+    history.setCompactEncoding(true);
+    history.addRecentFile(new FileSpec(new SlowFile(file)));
+    RecentFileHistory journaled = new RecentFileHistory
+        ("history-test-journaled-" + testCount + "-");
+    journaled.setJournal(new RecentFilesJournal(new File(folder, "recent")));
+    journaled.loadFromPrefs();
+    journaled.addRecentFile(new FileSpec(new SlowFile(file)));
+    assertFalse(SlowFile.resolvers.contains(Thread.currentThread()));
+
+    awaitResolution();
+    history.setCompactEncoding(false);
+    history.savePrefs();
+    FileSpec saved = new FileSpec();
+    saved.setFileInfo(UserPrefs.getShared().getPref
+        (FileSpec.recentFileKey(history.getPrefsQualifier(), 0), ""));
+    assertEquals(file.getCanonicalPath(), saved.getPath());
+    assertEquals(history.get(0).getCollectionTitle(), 
+        saved.getCollectionTitle());
+    journaled.getJournal().close();
+  }
+
+  /**
+   A file that takes a while to resolve its canonical path, noting each 
+   thread on which it does so. 
+   */
+  private static class SlowFile extends File {
+
+    private static final long serialVersionUID = 1L;
+
+    static final Set<Thread> resolvers
+        = Collections.synchronizedSet(new HashSet<Thread>());
+
+    SlowFile (File file) {
+      super(file.getPath());
+    }
+
+    public String getCanonicalPath () throws IOException {
+      resolvers.add(Thread.currentThread());
+      try {
+        Thread.sleep(200);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      return super.getCanonicalPath();
+    }
+  }
+
+  /**
+   Create an empty file in the test folder.
+   */
+  File newFile (String name) throws IOException {
+    File file = new File(folder, name);
+    new FileOutputStream(file).close();
+    return file;
+  }
+
+  /**
+   Wait for the canonical paths of any files added to be resolved, and
+   for the history to index them.
+   */
+  void awaitResolution () throws InterruptedException {
+    long giveUp = System.currentTimeMillis() + 5000;
+    boolean resolved = false;
+    while (! resolved) {
+      synchronized (history) {
+        resolved = true;
+        for (int i = 0; i < history.size(); i++) {
+          FileSpec spec = history.get(i);
+          if (! spec.isCanonicalPathKnown()
+              || history.get(spec.getPath()) != spec) {
+            resolved = false;
+          }
+        }
+      }
+      if (! resolved) {
+        assertTrue("Paths not resolved in time",
+            System.currentTimeMillis() < giveUp);
+        Thread.sleep(10);
+      }
+    }
+  }
+
+  static void deleteAll (File file) {
+    File[] children = file.listFiles();
+    if (children != null) {
+      for (File child : children) {
+        deleteAll(child);
+      }
+    }
+    file.delete();
+  }
+
+}
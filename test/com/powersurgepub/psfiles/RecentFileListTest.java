@@ -0,0 +1,224 @@
+/*
+ * Copyright 1999 - 2017 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.powersurgepub.psfiles;
+
+  import java.io.*;
+  import java.util.*;
+  import org.junit.*;
+  import static org.junit.Assert.*;
+
+/**
+ Tests of the linked list behind the recent file history, checking that
+ positions found from the order keys, and the lists published, always
+ agree with a plain list put through the same changes.
+
+ @author Herb Bowie
+ */
+public class RecentFileListTest {
+
+  private RecentFileList          files;
+  private ArrayList<FileSpec>     expected;
+  private int                     fileCount = 0;
+
+  @Before
+  public void setUp () {
+    files = new RecentFileList();
+    expected = new ArrayList<FileSpec>();
+  }
+
+  @Test
+  public void emptyListHasNoFirst () {
+    assertNull(files.first());
+    assertNull(files.get(0));
+    assertEquals(-1, files.indexOf(new FileSpec(new File("/none"))));
+  }
+
+  @Test
+  public void repeatedAdditionsAtTheTopKeepOrder () {
+    for (int i = 0; i < 1000; i++) {
+      FileSpec fileSpec = newSpec();
+      files.addFirst(fileSpec);
+      expected.add(0, fileSpec);
+      assertSame(fileSpec, files.first());
+    }
+    assertSameOrder();
+  }
+
+  @Test
+  public void repeatedInsertionsInOnePlaceKeepOrder () {
+    for (int i = 0; i < 10; i++) {
+      add(expected.size(), newSpec());
+    }
+    for (int i = 0; i < 1000; i++) {
+      add(5, newSpec());
+    }
+    assertSameOrder();
+  }
+
+  @Test
+  public void insertionsCrowdedNearTheTopKeepOrder () {
+    Random random = new Random(1999);
+    for (int i = 0; i < 2000; i++) {
+      add(expected.size(), newSpec());
+    }
+    for (int i = 0; i < 20000; i++) {
+      add(1 + random.nextInt(Math.min(20, expected.size())), newSpec());
+      if (i % 4 == 0) {
+        assertSame(expected.remove(expected.size() - 1),
+            files.remove(files.size() - 1));
+      }
+    }
+    assertSameOrder();
+  }
+
+  @Test
+  public void randomChangesKeepPositions () {
+    Random random = new Random(2017);
+    for (int op = 0; op < 100000; op++) {
+      int choice = random.nextInt(6);
+      if (choice == 0 || expected.isEmpty()) {
+        FileSpec fileSpec = newSpec();
+        files.addFirst(fileSpec);
+        expected.add(0, fileSpec);
+      }
+      else
+      if (choice == 1) {
+        FileSpec fileSpec = newSpec();
+        files.addLast(fileSpec);
+        expected.add(fileSpec);
+      }
+      else
+      if (choice == 2) {
+        add(random.nextInt(expected.size() + 1), newSpec());
+      }
+      else
+      if (choice == 3) {
+        int i = random.nextInt(expected.size());
+        assertSame(expected.remove(i), files.remove(i));
+      }
+      else
+      if (choice == 4) {
+        assertTrue(files.remove(expected.remove
+            (random.nextInt(expected.size()))));
+      } else {
+        int i = random.nextInt(expected.size());
+        assertSame(expected.get(i), files.get(i));
+        assertEquals(i, files.indexOf(expected.get(i)));
+      }
+      if (expected.size() > 2000) {
+        files.truncate(500);
+        expected.subList(500, expected.size()).clear();
+      }
+      assertEquals(expected.size(), files.size());
+      assertSame(expected.isEmpty() ? null : expected.get(0), files.first());
+    }
+    assertSameOrder();
+  }
+
+  /**
+   Publish the list after each of a series of random changes, and check that
+   each list published shows the list as it stood then, and still does once
+   the list has changed again.
+   */
+  @Test
+  public void publishedListsKeepTheirOrder () {
+    Random random = new Random(2025);
+    PublishedList<RecentFileList.Entry> earlier = files.publish();
+    ArrayList<FileSpec> earlierExpected = new ArrayList<FileSpec>();
+    for (int op = 0; op < 20000; op++) {
+      int choice = random.nextInt(4);
+      if (choice < 2 || expected.isEmpty()) {
+        add(random.nextInt(expected.size() + 1), newSpec());
+      }
+      else
+      if (choice == 2) {
+        int i = random.nextInt(expected.size());
+        assertSame(expected.remove(i), files.remove(i));
+      } else {
+        files.truncate(expected.size() / 2);
+        expected.subList(expected.size() / 2, expected.size()).clear();
+      }
+      if (op % 100 == 0) {
+        assertPublished(earlierExpected, earlier);
+        earlier = files.publish();
+        earlierExpected = new ArrayList<FileSpec>(expected);
+      }
+      assertPublished(expected, files.publish());
+    }
+  }
+
+  /**
+   Change the title of a file spec held by two lists, each of which has
+   indexed it by title, and check that both find it under its new title,
+   and then that, once it has been removed from one, a further change to its
+   title is still noticed by the other.
+   */
+  @Test
+  public void titleChangesReachEachListHoldingTheSpec () {
+    RecentFileList others = new RecentFileList();
+    FileSpec shared = newSpec();
+    shared.setCollectionTitle("Before");
+    for (int i = 0; i < 100; i++) {
+      FileSpec fileSpec = newSpec();
+      fileSpec.setCollectionTitle("Title " + i);
+      files.addLast(fileSpec);
+    }
+    files.addFirst(shared);
+    others.addFirst(shared);
+    assertSame(shared, files.getByTitle("before"));
+    assertSame(shared, others.getByTitle("before"));
+
+    shared.setCollectionTitle("After");
+    assertNull(files.getByTitle("before"));
+    assertSame(shared, files.getByTitle("after"));
+    assertSame(shared, others.getByTitle("AFTER"));
+
+    assertTrue(files.remove(shared));
+    shared.setCollectionTitle("Last");
+    assertNull(files.getByTitle("last"));
+    assertSame(shared, others.getByTitle("last"));
+    assertNull(others.getByTitle("after"));
+  }
+
+  private void assertPublished (List<FileSpec> specs,
+      PublishedList<RecentFileList.Entry> published) {
+    assertEquals(specs.size(), published.size());
+    for (int i = 0; i < specs.size(); i++) {
+      assertSame(specs.get(i), published.get(i).getDecoded());
+    }
+  }
+
+  private void add (int i, FileSpec fileSpec) {
+    files.add(i, fileSpec);
+    expected.add(i, fileSpec);
+  }
+
+  private FileSpec newSpec () {
+    fileCount++;
+    return new FileSpec(new File("/recent/file" + fileCount + ".txt"));
+  }
+
+  private void assertSameOrder () {
+    assertEquals(expected.size(), files.size());
+    for (int i = 0; i < expected.size(); i++) {
+      assertSame(expected.get(i), files.get(i));
+      assertEquals(i, files.indexOf(expected.get(i)));
+    }
+    assertArrayEquals(expected.toArray(), files.toArray());
+  }
+
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright 1999 - 2017 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.powersurgepub.psfiles;
+
+  import java.io.*;
+  import java.nio.file.*;
+  import org.junit.*;
+  import static org.junit.Assert.*;
+
+/**
+ Tests of the recent files journal, and of the compaction of the journal
+ into a fresh snapshot.
+
+ @author Herb Bowie
+ */
+public class RecentFilesJournalTest {
+
+  private File                folder;
+  private File                snapshotFile;
+  private File                journalFile;
+
+  @Before
+  public void setUp () throws IOException {
+    folder = Files.createTempDirectory("psfiles-journal").toFile();
+    snapshotFile = new File(folder, "recent");
+    journalFile = new File(folder, "recent.journal");
+  }
+
+  @After
+  public void tearDown () {
+    RecentFileHistoryTest.deleteAll(folder);
+  }
+
+  @Test
+  public void compactionKeepsEntriesStillInTheLoadedSnapshot ()
+      throws IOException, InterruptedException {
+    RecentFilesJournal journal = new RecentFilesJournal(snapshotFile);
+    RecentFileList files = journal.load();
+    for (int i = 0; i < 100; i++) {
+      files.addLast(newSpec(i));
+    }
+    journal.reset(files);
+    journal.close();
+
+    // Entries loaded from the snapshot stay encoded until compaction
+    journal = new RecentFilesJournal(snapshotFile);
+    journal.setCompactionThreshold(256);
+    files = journal.load();
+    assertEquals(100, files.size());
+    for (int i = 100; i < 105; i++) {
+      files.addFirst(newSpec(i));
+    }
+    journal.sync(files);
+    assertTrue(journalFile.length() > 256);
+    awaitCompaction();
+    assertEquals(newSpec(50).getPath(), files.get(55).getPath());
+    journal.close();
+
+    journal = new RecentFilesJournal(snapshotFile);
+    files = journal.load();
+    assertEquals(105, files.size());
+    assertEquals(newSpec(104).getPath(), files.get(0).getPath());
+    assertEquals(newSpec(99).getPath(), files.get(104).getPath());
+    journal.close();
+  }
+
+  /**
+   Overwrite the snapshot in place once it has been loaded, and check that
+   the entries not yet decoded are still decoded as they were loaded, since
+   the snapshot is read into memory rather than mapped.
+   */
+  @Test
+  public void snapshotMayBeOverwrittenOnceLoaded () throws IOException {
+    RecentFilesJournal journal = new RecentFilesJournal(snapshotFile);
+    RecentFileList files = journal.load();
+    for (int i = 0; i < 100; i++) {
+      files.addLast(newSpec(i));
+    }
+    journal.reset(files);
+    journal.close();
+
+    journal = new RecentFilesJournal(snapshotFile);
+    files = journal.load();
+    FileOutputStream out = new FileOutputStream(snapshotFile);
+    try {
+      out.write(new byte[16]);
+    } finally {
+      out.close();
+    }
+    assertEquals(100, files.size());
+    for (int i = 0; i < 100; i++) {
+      assertEquals(newSpec(i).getPath(), files.get(i).getPath());
+    }
+    journal.close();
+  }
+
+  @Test
+  public void failedCompactionKeepsTheJournal ()
+      throws IOException, InterruptedException {
+    // A snapshot file that is in fact a folder cannot be replaced
+    File blocker = new File(snapshotFile, "blocker");
+    assertTrue(blocker.mkdirs());
+    RecentFilesJournal journal = new RecentFilesJournal(snapshotFile);
+    journal.setCompactionThreshold(256);
+    RecentFileList files = new RecentFileList();
+    files.setJournal(journal);
+    for (int i = 0; i < 20; i++) {
+      files.addFirst(newSpec(i));
+    }
+    journal.sync(files);
+    long length = journalFile.length();
+    Thread.sleep(200);
+    files.addFirst(newSpec(20));
+    journal.sync(files);
+    assertTrue(journalFile.length() > length);
+    journal.close();
+
+    blocker.delete();
+    snapshotFile.delete();
+    journal = new RecentFilesJournal(snapshotFile);
+    files = journal.load();
+    assertEquals(21, files.size());
+    assertEquals(newSpec(20).getPath(), files.get(0).getPath());
+    journal.close();
+  }
+
+  private FileSpec newSpec (int i) {
+    return new FileSpec(new File(folder, "file" + i + ".txt"));
+  }
+
+  /**
+   Wait for a compaction under way on the background thread to cut the
+   journal back.
+   */
+  private void awaitCompaction () throws InterruptedException {
+    long giveUp = System.currentTimeMillis() + 5000;
+    while (journalFile.length() > 256) {
+      assertTrue("Journal not compacted in time",
+          System.currentTimeMillis() < giveUp);
+      Thread.sleep(10);
+    }
+  }
+
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright 1999 - 2017 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.powersurgepub.psfiles;
+
+  import java.util.concurrent.*;
+  import javax.swing.*;
+  import org.openjdk.jmh.annotations.*;
+
+/**
+ Measures the loading of a history of 10,000 entries from the user's
+ preferences on the event dispatch thread, with the file prefs attached, as
+ an application would load it at startup. Each load starts from a new list.
+ Run with the gc profiler to see the memory allocated by each load.
+
+ @author Herb Bowie
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class RecentFilesStartupBenchmark {
+
+  private static final int    HISTORY_SIZE    = 10000;
+  private static final String PREFS_QUALIFIER = "startup-benchmark-";
+
+  private RecentFiles recentFiles;
+
+  @Setup(Level.Trial)
+  public void savePrefs () {
+    RecentFilesTest.savePrefs(PREFS_QUALIFIER, HISTORY_SIZE);
+  }
+
+  @Setup(Level.Iteration)
+  public void setUp () {
+    recentFiles = new RecentFiles(PREFS_QUALIFIER);
+    FilePrefs filePrefs = new FilePrefs(null);
+    filePrefs.setRecentFiles(recentFiles);
+    recentFiles.setRecentFilesMax(HISTORY_SIZE);
+  }
+
+  @Benchmark
+  public int loadAtStartup () throws Exception {
+    SwingUtilities.invokeAndWait(new Runnable() {
+      public void run() {
+        recentFiles.loadFromPrefs();
+      }
+    });
+    return recentFiles.size();
+  }
+
+}
@@ -0,0 +1,351 @@
+/*
+ * Copyright 1999 - 2017 Herb Bowie
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.powersurgepub.psfiles;
+
+  import com.powersurgepub.psutils.*;
+  import java.io.*;
+  import java.nio.file.*;
+  import java.util.*;
+  import java.util.concurrent.*;
+  import javax.swing.*;
+  import org.junit.*;
+  import static org.junit.Assert.*;
+
+/**
+ Tests of RecentFiles, run headless, with the file prefs attached but never
+ shown, including files added from many threads at once, and long histories
+ loaded at startup, from the user's preferences and from a journal. The time
+ taken to load a history at startup is measured by
+ RecentFilesStartupBenchmark.
+
+ @author Herb Bowie
+ */
+public class RecentFilesTest {
+
+  private static final int  HISTORY_SIZE  = 10000;
+
+  private static final int  THREADS       = 8;
+  private static final int  ADDS          = 300;
+  private static final int  FILES         = 40;
+  private static final int  MAX           = 15;
+
+  private static int        testCount     = 0;
+
+  private File              folder;
+  private String            prefsQualifier;
+
+  @Before
+  public void setUp () throws IOException {
+    folder = Files.createTempDirectory("psfiles-test").toFile();
+    testCount++;
+    prefsQualifier = "recent-files-test-" + testCount + "-";
+  }
+
+  @After
+  public void tearDown () {
+    RecentFileHistoryTest.deleteAll(folder);
+  }
+
+  /**
+   Load a history of 10,000 entries from the user's preferences on the
+   event dispatch thread, as an application would at startup, and check
+   that each entry is appended in turn.
+   */
+  @Test
+  public void tenThousandEntryStartup () throws Exception {
+    savePrefs(prefsQualifier, HISTORY_SIZE);
+    final int[] appended = new int[1];
+    final RecentFiles recentFiles = new RecentFiles(prefsQualifier) {
+      protected void fileAppended (FileSpec fileSpec, int i) {
+        assertEquals(appended[0], i);
+        appended[0]++;
+        super.fileAppended(fileSpec, i);
+      }
+    };
+    FilePrefs filePrefs = new FilePrefs(null);
+    filePrefs.setRecentFiles(recentFiles);
+    recentFiles.setRecentFilesMax(HISTORY_SIZE);
+
+    SwingUtilities.invokeAndWait(new Runnable() {
+      public void run() {
+        recentFiles.loadFromPrefs();
+      }
+    });
+    assertEquals(HISTORY_SIZE, recentFiles.size());
+    assertEquals(HISTORY_SIZE, appended[0]);
+    assertEquals("/Users/hbowie/Documents/Notes 0/notes.txt",
+        recentFiles.get(0).getPath());
+  }
+
+  /**
+   Load a history of 10,000 entries from a journal on the event dispatch 
+   thread, with the file prefs attached, and with the startup and essential
+   files near the bottom of the list, and check that both are selected 
+   without the entries above them being decoded. 
+   */
+  @Test
+  public void journalLoadOnlyDecodesWhatIsRead () throws Exception {
+    File snapshotFile = new File(folder, "recent");
+    RecentFilesJournal journal = new RecentFilesJournal(snapshotFile);
+    RecentFileList list = journal.load();
+    for (int i = 0; i < HISTORY_SIZE; i++) {
+      list.addLast(new FileSpec(new File(folder, "file" + i + ".txt")));
+    }
+    journal.reset(list);
+    journal.close();
+    String startupPath = list.get(HISTORY_SIZE - 2).getPath();
+    String essentialPath = list.get(HISTORY_SIZE - 1).getPath();
+    UserPrefs.getShared().setPref(FilePrefs.LAUNCH_AT_STARTUP, startupPath);
+    UserPrefs.getShared().setPref(FilePrefs.ESSENTIAL_PATH, essentialPath);
+
+    final RecentFiles recentFiles = new RecentFiles(prefsQualifier);
+    final FilePrefs filePrefs = new FilePrefs(null);
+    try {
+      filePrefs.loadFromPrefs();
+      filePrefs.setRecentFiles(recentFiles);
+      recentFiles.setRecentFilesMax(HISTORY_SIZE);
+      recentFiles.setJournal(new RecentFilesJournal(snapshotFile));
+      SwingUtilities.invokeAndWait(new Runnable() {
+        public void run() {
+          recentFiles.loadFromPrefs();
+        }
+      });
+      SwingUtilities.invokeAndWait(new Runnable() {
+        public void run() {
+        }
+      });
+    } finally {
+      UserPrefs.getShared().setPref
+          (FilePrefs.LAUNCH_AT_STARTUP, FilePrefs.LAST_FILE_OPENED);
+      UserPrefs.getShared().setPref(FilePrefs.ESSENTIAL_PATH, "");
+    }
+
+    assertEquals(HISTORY_SIZE, recentFiles.size());
+    assertSame(recentFiles.get(HISTORY_SIZE - 2),
+        filePrefs.getStartupModel().getSelectedItem());
+    assertSame(recentFiles.get(HISTORY_SIZE - 1),
+        filePrefs.getEssentialModel().getSelectedItem());
+    assertTrue(recentFiles.getDecodedCount() <= 2);
+    recentFiles.getJournal().close();
+  }
+
+  /**
+   Add files from many threads at once, one of them adding its files on
+   the event dispatch thread, and check that, once the changes have all
+   been applied there, no file appears twice, the list is no longer than
+   its maximum, and the menu and the combo box models show the list as it
+   stands.
+   */
+  @Test
+  public void filesAddedFromManyThreads () throws Exception {
+    final RecentFiles recentFiles = new RecentFiles(prefsQualifier);
+    final FilePrefs filePrefs = new FilePrefs(null);
+    filePrefs.setRecentFiles(recentFiles);
+    recentFiles.setRecentFilesMax(MAX);
+    final JMenu menu = new JMenu("Open Recent");
+    recentFiles.registerMenu(menu, null);
+    final File[] files = new File[FILES];
+    for (int i = 0; i < FILES; i++) {
+      files[i] = newFile("file" + i + ".txt");
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+    final CountDownLatch start = new CountDownLatch(1);
+    ArrayList<Future<Void>> futures = new ArrayList<Future<Void>>();
+    for (int t = 0; t < THREADS; t++) {
+      final int thread = t;
+      futures.add(executor.submit(new Callable<Void>() {
+        public Void call() throws Exception {
+          Random random = new Random(thread);
+          start.await();
+          for (int n = 0; n < ADDS; n++) {
+            final File file = files[random.nextInt(FILES)];
+            if (thread == 0) {
+              SwingUtilities.invokeAndWait(new Runnable() {
+                public void run() {
+                  recentFiles.addRecentFile(file);
+                }
+              });
+            } else {
+              recentFiles.addRecentFile(file);
+            }
+          }
+          return null;
+        }
+      }));
+    }
+    start.countDown();
+    for (Future<Void> future : futures) {
+      future.get();
+    }
+    executor.shutdown();
+    awaitQuiet(recentFiles);
+
+    SwingUtilities.invokeAndWait(new Runnable() {
+      public void run() {
+        int size = recentFiles.size();
+        assertTrue(size > 0);
+        assertTrue(size <= MAX);
+        HashSet<String> paths = new HashSet<String>();
+        for (int i = 0; i < size; i++) {
+          assertTrue(paths.add(recentFiles.get(i).getPath()));
+        }
+        assertShows(filePrefs.getStartupModel(),
+            FilePrefs.STARTUP_COMBO_BOX_LITERALS, recentFiles);
+        assertShows(filePrefs.getEssentialModel(),
+            FilePrefs.ESSENTIAL_COMBO_BOX_LITERALS, recentFiles);
+
+        menu.setSelected(true);
+        menu.setSelected(false);
+        assertEquals(size + 2, menu.getMenuComponentCount());
+        for (int i = 0; i < size; i++) {
+          assertEquals(recentFiles.get(i).getPath(),
+              ((JMenuItem)menu.getMenuComponent(i)).getActionCommand());
+        }
+      }
+    });
+  }
+
+  /**
+   Select a file in the startup combo box, and then add another file from a 
+   background thread, so that the model is refreshed as a whole, and 
+   then move the selected file to the top, and check that the same file 
+   stays selected throughout. 
+   */
+  @Test
+  public void selectionFollowsItsFile () throws Exception {
+    final RecentFiles recentFiles = new RecentFiles(prefsQualifier);
+    final FilePrefs filePrefs = new FilePrefs(null);
+    filePrefs.setRecentFiles(recentFiles);
+    final File[] files = new File[4];
+    for (int i = 0; i < files.length; i++) {
+      files[i] = newFile("file" + i + ".txt");
+    }
+    SwingUtilities.invokeAndWait(new Runnable() {
+      public void run() {
+        for (int i = 0; i < 3; i++) {
+          recentFiles.addRecentFile(files[i]);
+        }
+      }
+    });
+    awaitQuiet(recentFiles);
+    final String selected = files[1].getCanonicalPath();
+    SwingUtilities.invokeAndWait(new Runnable() {
+      public void run() {
+        filePrefs.getStartupModel().setSelectedItem
+            (recentFiles.get(selected));
+      }
+    });
+
+    Thread adder = new Thread(new Runnable() {
+      public void run() {
+        recentFiles.addRecentFile(files[3]);
+      }
+    });
+    adder.start();
+    adder.join();
+    awaitQuiet(recentFiles);
+    assertSelected(selected, filePrefs);
+
+    SwingUtilities.invokeAndWait(new Runnable() {
+      public void run() {
+        recentFiles.addRecentFile(files[1]);
+      }
+    });
+    awaitQuiet(recentFiles);
+    assertSelected(selected, filePrefs);
+  }
+
+  private static void assertSelected (final String path,
+      final FilePrefs filePrefs) throws Exception {
+    SwingUtilities.invokeAndWait(new Runnable() {
+      public void run() {
+        assertEquals(path, ((FileSpec)filePrefs.getStartupModel()
+            .getSelectedItem()).getPath());
+      }
+    });
+  }
+
+  /**
+   Check that a combo box model shows its fixed rows followed by the given
+   recent files.
+   */
+  private static void assertShows (RecentFilesComboBoxModel model,
+      int literals, RecentFiles recentFiles) {
+    assertEquals(literals + recentFiles.size(), model.getSize());
+    for (int i = 0; i < recentFiles.size(); i++) {
+      assertSame(recentFiles.get(i), model.getElementAt(literals + i));
+    }
+  }
+
+  /**
+   Wait for the canonical paths of the files added to be resolved, and then
+   for any changes waiting on the event dispatch thread to be applied.
+   */
+  private static void awaitQuiet (RecentFiles recentFiles) throws Exception {
+    long giveUp = System.currentTimeMillis() + 5000;
+    boolean resolved = false;
+    while (! resolved) {
+      resolved = true;
+      for (int i = 0; i < recentFiles.size(); i++) {
+        FileSpec spec = recentFiles.get(i);
+        if (spec == null 
+            || ! spec.isCanonicalPathKnown()
+            || recentFiles.get(spec.getPath()) != spec) {
+          resolved = false;
+        }
+      }
+      if (! resolved) {
+        assertTrue("Paths not resolved in time",
+            System.currentTimeMillis() < giveUp);
+      }
+      Thread.sleep(50);
+    }
+    for (int i = 0; i < 2; i++) {
+      SwingUtilities.invokeAndWait(new Runnable() {
+        public void run() {
+        }
+      });
+    }
+  }
+
+  /**
+   Create an empty file in the test folder.
+   */
+  private File newFile (String name) throws IOException {
+    File file = new File(folder, name);
+    new FileOutputStream(file).close();
+    return file;
+  }
+
+  /**
+   Store the given number of recent files in the user's preferences, in
+   their current form.
+   */
+  static void savePrefs (String prefsQualifier, int count) {
+    for (int i = 0; i < count; i++) {
+      UserPrefs.getShared().setPref(FileSpec.recentFileKey(prefsQualifier, i),
+          "path=/Users/hbowie/Documents/Notes " + i + "/notes.txt;"
+          + "type=file;format=notenik;collection-title=Notes " + i + ";");
+    }
+    UserPrefs.getShared().setPref
+        (prefsQualifier + FileSpec.RECENT_FILE_COUNT, count);
+    UserPrefs.getShared().setPref(prefsQualifier + FileSpec.RECENT_FILE_SCHEMA,
+        RecentFileHistory.PREFS_SCHEMA_VERSION);
+  }
+
+}